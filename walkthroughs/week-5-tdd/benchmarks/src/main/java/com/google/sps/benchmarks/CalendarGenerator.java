@@ -0,0 +1,168 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.Event;
+import com.google.sps.MeetingRequest;
+import com.google.sps.TimeRange;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates synthetic but realistic calendars. The same seed always produces the same calendar, so
+ * benchmark runs can be compared with each other.
+ *
+ * <p>Attendees are drawn from a Zipf distribution, so a few people are in a lot of meetings and
+ * most people are in a few. Events cluster around the middle of the morning and the middle of the
+ * afternoon of a working day, start on a quarter hour and mostly last 30 or 60 minutes.
+ */
+public final class CalendarGenerator {
+  private static final int MINUTES_PER_DAY = TimeRange.WHOLE_DAY.duration();
+  private static final int GRANULARITY = 15;
+
+  private static final int MORNING_PEAK = TimeRange.getTimeInMinutes(10, 0);
+  private static final int AFTERNOON_PEAK = TimeRange.getTimeInMinutes(14, 30);
+  private static final double PEAK_DEVIATION = 90;
+  // The share of events that ignore working hours and can start at any time of the day.
+  private static final double OFF_HOURS_SHARE = 0.1;
+
+  private static final int[] DURATIONS = {15, 30, 45, 60, 90, 120};
+  private static final int[] DURATION_WEIGHTS = {2, 8, 1, 6, 1, 1};
+
+  private final Random random;
+  private final String[] people;
+  // cumulativeWeights[i] is the probability of picking one of the first i + 1 people.
+  private final double[] cumulativeWeights;
+  private final int totalDurationWeight;
+
+  /**
+   * Creates a generator.
+   *
+   * @param seed The seed for the random numbers.
+   * @param numPeople The number of different people that can attend events.
+   * @param zipfExponent How skewed attendance is. 0 means everyone is equally popular; values
+   *     around 1 are typical of real organizations.
+   */
+  public CalendarGenerator(long seed, int numPeople, double zipfExponent) {
+    if (numPeople <= 0) {
+      throw new IllegalArgumentException("numPeople must be positive");
+    }
+
+    this.random = new Random(seed);
+    this.people = new String[numPeople];
+    this.cumulativeWeights = new double[numPeople];
+
+    double total = 0;
+    for (int i = 0; i < numPeople; i++) {
+      people[i] = "Person " + i;
+      total += 1 / Math.pow(i + 1, zipfExponent);
+      cumulativeWeights[i] = total;
+    }
+    for (int i = 0; i < numPeople; i++) {
+      cumulativeWeights[i] /= total;
+    }
+
+    int durationWeight = 0;
+    for (int weight : DURATION_WEIGHTS) {
+      durationWeight += weight;
+    }
+    this.totalDurationWeight = durationWeight;
+  }
+
+  /** Returns a person, with popular people being picked more often. */
+  public String randomPerson() {
+    int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble());
+    // binarySearch returns (-(insertion point) - 1) when the value is not an exact match.
+    if (index < 0) {
+      index = -index - 1;
+    }
+    return people[Math.min(index, people.length - 1)];
+  }
+
+  /** Returns {@code count} events, each with up to {@code attendeesPerEvent} different people. */
+  public List<Event> events(int count, int attendeesPerEvent) {
+    List<Event> events = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int duration = randomDuration();
+      int start = Math.min(randomStart(), MINUTES_PER_DAY - duration);
+      events.add(
+          new Event(
+              "Event " + i,
+              TimeRange.fromStartDuration(start, duration),
+              randomPeople(attendeesPerEvent)));
+    }
+    return events;
+  }
+
+  /**
+   * Returns a request for {@code numRequired} required and {@code numOptional} optional people. The
+   * two groups never share anyone.
+   */
+  public MeetingRequest request(int numRequired, int numOptional, int duration) {
+    Set<String> everyone = randomPeople(numRequired + numOptional);
+    List<String> required = new ArrayList<>();
+    List<String> optional = new ArrayList<>();
+    for (String person : everyone) {
+      if (required.size() < numRequired) {
+        required.add(person);
+      } else {
+        optional.add(person);
+      }
+    }
+
+    MeetingRequest request = new MeetingRequest(required, duration);
+    for (String person : optional) {
+      request.addOptionalAttendee(person);
+    }
+    return request;
+  }
+
+  // Picks distinct people. Gives up on duplicates after a while, so very small populations can
+  // produce fewer people than asked for.
+  private Set<String> randomPeople(int count) {
+    Set<String> chosen = new LinkedHashSet<>();
+    for (int attempt = 0; chosen.size() < count && attempt < count * 10; attempt++) {
+      chosen.add(randomPerson());
+    }
+    return chosen;
+  }
+
+  private int randomStart() {
+    double minute;
+    if (random.nextDouble() < OFF_HOURS_SHARE) {
+      minute = random.nextInt(MINUTES_PER_DAY);
+    } else {
+      int peak = random.nextBoolean() ? MORNING_PEAK : AFTERNOON_PEAK;
+      minute = peak + random.nextGaussian() * PEAK_DEVIATION;
+    }
+    int slot = (int) Math.round(minute / GRANULARITY) * GRANULARITY;
+    return Math.max(0, Math.min(slot, MINUTES_PER_DAY - GRANULARITY));
+  }
+
+  private int randomDuration() {
+    int pick = random.nextInt(totalDurationWeight);
+    for (int i = 0; i < DURATIONS.length; i++) {
+      pick -= DURATION_WEIGHTS[i];
+      if (pick < 0) {
+        return DURATIONS[i];
+      }
+    }
+    return DURATIONS[DURATIONS.length - 1];
+  }
+}
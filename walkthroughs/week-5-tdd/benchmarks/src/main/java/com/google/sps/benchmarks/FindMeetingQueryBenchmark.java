@@ -0,0 +1,106 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.Event;
+import com.google.sps.EventSnapshot;
+import com.google.sps.FindMeetingQuery;
+import com.google.sps.MeetingRequest;
+import com.google.sps.TimeRange;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code FindMeetingQuery.query()} over generated calendars of different shapes. Each
+ * invocation answers the next of a fixed set of requests, so the results are not skewed by one
+ * lucky or unlucky request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class FindMeetingQueryBenchmark {
+  private static final long SEED = 20200101L;
+  private static final int NUM_REQUESTS = 64;
+  // On average, every person is at this many events a day.
+  private static final int EVENTS_PER_PERSON = 8;
+  private static final double ZIPF_EXPONENT = 1.0;
+
+  @Param({"100", "1000", "10000", "100000", "1000000"})
+  public int eventCount;
+
+  @Param({"2", "6"})
+  public int attendeesPerEvent;
+
+  /** The number of required and optional attendees of each request, as "required/optional". */
+  @Param({"3/0", "3/5", "0/8"})
+  public String requiredOptional;
+
+  @Param({"30", "60"})
+  public int duration;
+
+  private final FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
+  private List<Event> events;
+  private EventSnapshot snapshot;
+  private MeetingRequest[] requests;
+  private int nextRequest;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    String[] split = requiredOptional.split("/");
+    int numRequired = Integer.parseInt(split[0]);
+    int numOptional = Integer.parseInt(split[1]);
+    int numPeople = Math.max(16, eventCount * attendeesPerEvent / EVENTS_PER_PERSON);
+
+    CalendarGenerator generator = new CalendarGenerator(SEED, numPeople, ZIPF_EXPONENT);
+    events = generator.events(eventCount, attendeesPerEvent);
+    snapshot = new EventSnapshot(events);
+    requests = new MeetingRequest[NUM_REQUESTS];
+    for (int i = 0; i < NUM_REQUESTS; i++) {
+      requests[i] = generator.request(numRequired, numOptional, duration);
+    }
+  }
+
+  @Benchmark
+  public Collection<TimeRange> queryEvents() {
+    return findMeetingQuery.query(events, nextRequest());
+  }
+
+  @Benchmark
+  public Collection<TimeRange> querySnapshot() {
+    return findMeetingQuery.query(snapshot, nextRequest());
+  }
+
+  private MeetingRequest nextRequest() {
+    MeetingRequest request = requests[nextRequest];
+    nextRequest = (nextRequest + 1) % NUM_REQUESTS;
+    return request;
+  }
+}
@@ -0,0 +1,109 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns attendee names to small, dense integer IDs. The first name registered gets ID 0, the
+ * next gets ID 1, and so on, which lets the scheduler keep per-attendee state in plain arrays and
+ * bitsets instead of hashing strings. IDs are never reused or removed. This class is thread-safe.
+ */
+public final class AttendeeRegistry {
+  private static final AttendeeRegistry SHARED = new AttendeeRegistry();
+
+  private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+  // Guarded by this. The array is replaced rather than mutated in place once it is published, so
+  // that name() can read it without locking.
+  private volatile String[] names = new String[16];
+  private volatile int size;
+
+  /** Returns the registry used by every {@code Event}. */
+  public static AttendeeRegistry shared() {
+    return SHARED;
+  }
+
+  /** Returns the ID for {@code name}, registering it if this is the first time it is seen. */
+  public int intern(String name) {
+    if (name == null) {
+      throw new IllegalArgumentException("name cannot be null");
+    }
+
+    Integer id = ids.get(name);
+    return id != null ? id : register(name);
+  }
+
+  /** Returns the ID for {@code name}, or -1 if it has never been registered. */
+  public int lookup(String name) {
+    Integer id = name == null ? null : ids.get(name);
+    return id != null ? id : -1;
+  }
+
+  /** Returns the name that was registered with {@code id}. */
+  public String name(int id) {
+    if (id < 0 || id >= size) {
+      throw new IllegalArgumentException("Unknown attendee id: " + id);
+    }
+    return names[id];
+  }
+
+  /** Returns the number of registered names. Every ID is less than this value. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the IDs of {@code attendees} in ascending order without duplicates, registering any
+   * names that have not been seen before.
+   */
+  public int[] internAll(Collection<String> attendees) {
+    int[] result = new int[attendees.size()];
+    int count = 0;
+    for (String attendee : attendees) {
+      result[count++] = intern(attendee);
+    }
+    Arrays.sort(result);
+
+    // Remove duplicates in place, in case the collection was not a set.
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || result[unique - 1] != result[i]) {
+        result[unique++] = result[i];
+      }
+    }
+    return unique == result.length ? result : Arrays.copyOf(result, unique);
+  }
+
+  private synchronized int register(String name) {
+    Integer existing = ids.get(name);
+    if (existing != null) {
+      return existing;
+    }
+
+    int id = size;
+    String[] current = names;
+    if (id == current.length) {
+      current = Arrays.copyOf(current, current.length * 2);
+    }
+    current[id] = name;
+    names = current;
+    size = id + 1;
+    ids.put(name, id);
+    return id;
+  }
+}
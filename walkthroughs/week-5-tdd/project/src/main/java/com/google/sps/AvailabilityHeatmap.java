@@ -0,0 +1,96 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Counts how many of a group of people are busy in each part of the day, for showing the day as a
+ * heatmap. The day is cut into buckets of a fixed number of minutes, and a person counts as busy
+ * in a bucket if they are at an event during any minute of it.
+ *
+ * <p>Each busy stretch adds one at its first bucket and takes one away after its last in a
+ * difference array, and a running sum over the array then gives the counts. So the work is linear
+ * in the number of busy intervals plus the number of buckets, however long the intervals are.
+ */
+public final class AvailabilityHeatmap {
+  private AvailabilityHeatmap() {}
+
+  /**
+   * Returns the number of {@code attendees} who are busy in each bucket of {@code bucketMinutes}
+   * minutes, given the events in {@code index}. Bucket {@code i} starts at minute {@code i *
+   * bucketMinutes}, and the last one is cut short at the end of the day if the day does not
+   * divide evenly. People listed twice are counted once.
+   */
+  public static int[] busyCounts(
+      EventIndex index, Collection<String> attendees, int bucketMinutes) {
+    if (bucketMinutes <= 0 || bucketMinutes > EpochRange.MINUTES_PER_DAY) {
+      throw new IllegalArgumentException("bucketMinutes must be between 1 and a day");
+    }
+
+    int numBuckets = (EpochRange.MINUTES_PER_DAY + bucketMinutes - 1) / bucketMinutes;
+    // One more entry for the decrements after the last bucket.
+    int[] counts = new int[numBuckets + 1];
+    IntervalCursor intervals = null;
+    for (int id : attendeeIds(attendees)) {
+      // The intervals come in order of start, so the buckets marked for this person only ever
+      // move forward, and a bucket is never counted twice for them.
+      int nextBucket = 0;
+      intervals = index.byStart(id, intervals);
+      while (intervals.next()) {
+        int start = Math.max(0, intervals.start());
+        int end = Math.min(EpochRange.MINUTES_PER_DAY, intervals.end());
+        if (end <= start) {
+          continue;
+        }
+        int first = Math.max(nextBucket, start / bucketMinutes);
+        int last = (end - 1) / bucketMinutes;
+        if (first <= last) {
+          counts[first]++;
+          counts[last + 1]--;
+          nextBucket = last + 1;
+        }
+      }
+    }
+
+    for (int i = 1; i < numBuckets; i++) {
+      counts[i] += counts[i - 1];
+    }
+    return Arrays.copyOf(counts, numBuckets);
+  }
+
+  // Returns the IDs of the people in ascending order without duplicates, leaving out the ones
+  // that were never registered, as they cannot be at any event.
+  private static int[] attendeeIds(Collection<String> attendees) {
+    AttendeeRegistry registry = AttendeeRegistry.shared();
+    int[] ids = new int[attendees.size()];
+    int count = 0;
+    for (String attendee : attendees) {
+      int id = registry.lookup(attendee);
+      if (id >= 0) {
+        ids[count++] = id;
+      }
+    }
+    Arrays.sort(ids, 0, count);
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || ids[unique - 1] != ids[i]) {
+        ids[unique++] = ids[i];
+      }
+    }
+    return Arrays.copyOf(ids, unique);
+  }
+}
@@ -0,0 +1,156 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The busy minutes of a single day, one bit per minute. A whole day fits in 23 {@code long}s, so
+ * combining the schedules of several people is a handful of OR operations and finding free time is
+ * a scan for runs of zero bits.
+ */
+public final class BusyBitmap {
+  /** The number of minutes (and therefore bits) in a day. */
+  public static final int MINUTES_PER_DAY = TimeRange.WHOLE_DAY.duration();
+
+  static final int WORDS = (MINUTES_PER_DAY + 63) >>> 6;
+
+  private final long[] words = new long[WORDS];
+
+  /**
+   * Marks the minutes in {@code [start, end)} as busy. Minutes outside of the day are ignored.
+   */
+  public void markBusy(int start, int end) {
+    start = Math.max(start, 0);
+    end = Math.min(end, MINUTES_PER_DAY);
+    if (start >= end) {
+      return;
+    }
+
+    int first = start >>> 6;
+    int last = (end - 1) >>> 6;
+    // Shifts only use the low six bits, so these masks cover bits [start % 64, 63] and
+    // [0, (end - 1) % 64] of their words.
+    long firstMask = -1L << start;
+    long lastMask = -1L >>> -end;
+    if (first == last) {
+      words[first] |= firstMask & lastMask;
+      return;
+    }
+    words[first] |= firstMask;
+    for (int i = first + 1; i < last; i++) {
+      words[i] = -1L;
+    }
+    words[last] |= lastMask;
+  }
+
+  /** Marks the minutes of {@code range} as busy. */
+  public void markBusy(TimeRange range) {
+    markBusy(range.start(), range.end());
+  }
+
+  /** Marks every minute that is busy in {@code other} as busy in this bitmap too. */
+  public void or(BusyBitmap other) {
+    for (int i = 0; i < WORDS; i++) {
+      words[i] |= other.words[i];
+    }
+  }
+
+  /** Marks every minute as free. */
+  public void clear() {
+    Arrays.fill(words, 0L);
+  }
+
+  /** Returns true if {@code minute} is busy. */
+  public boolean isBusy(int minute) {
+    if (minute < 0 || minute >= MINUTES_PER_DAY) {
+      return false;
+    }
+    return (words[minute >>> 6] & (1L << minute)) != 0;
+  }
+
+  /** Returns true if no minute of the day is busy. */
+  public boolean isEmpty() {
+    for (long word : words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the free stretches of the day that are at least {@code minDuration} minutes long, in
+   * order. Each range is as long as possible, so no two returned ranges touch or overlap.
+   */
+  public List<TimeRange> freeRanges(long minDuration) {
+    return freeTime().filterByMinDuration(minDuration).toTimeRanges();
+  }
+
+  /** Returns every free minute of the day. */
+  public TimeRangeSet freeTime() {
+    TimeRangeSet.Builder free = new TimeRangeSet.Builder();
+    addFreeTime(0, free);
+    return free.build();
+  }
+
+  /**
+   * Adds the free stretches of the day that are at least {@code minDuration} minutes long to
+   * {@code free}, in order, without creating any objects of its own.
+   */
+  void addFreeTime(long minDuration, TimeRangeSet.Builder free) {
+    int start = nextFree(0);
+    while (start < MINUTES_PER_DAY) {
+      int end = nextBusy(start);
+      if (end - start >= minDuration) {
+        free.add(start, end);
+      }
+      start = nextFree(end);
+    }
+  }
+
+  // Returns the first busy minute at or after {@code from}, or the end of the day if there is none.
+  private int nextBusy(int from) {
+    int i = from >>> 6;
+    if (i >= WORDS) {
+      return MINUTES_PER_DAY;
+    }
+    long word = words[i] & (-1L << from);
+    while (word == 0) {
+      if (++i == WORDS) {
+        return MINUTES_PER_DAY;
+      }
+      word = words[i];
+    }
+    return Math.min((i << 6) + Long.numberOfTrailingZeros(word), MINUTES_PER_DAY);
+  }
+
+  // Returns the first free minute at or after {@code from}, or the end of the day if there is none.
+  private int nextFree(int from) {
+    int i = from >>> 6;
+    if (i >= WORDS) {
+      return MINUTES_PER_DAY;
+    }
+    long word = ~words[i] & (-1L << from);
+    while (word == 0) {
+      if (++i == WORDS) {
+        return MINUTES_PER_DAY;
+      }
+      word = ~words[i];
+    }
+    return Math.min((i << 6) + Long.numberOfTrailingZeros(word), MINUTES_PER_DAY);
+  }
+}
@@ -0,0 +1,763 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * An {@code EventStore} that keeps its events in a directory, so that they survive a restart.
+ *
+ * <p>Every change is applied to an {@code InMemoryEventStore}, which answers all reads, and
+ * appended to a write-ahead log as a record with a CRC-32 checksum. A change returns once its
+ * record has been forced to disk. Writers that arrive while the log is being forced wait for that
+ * force to finish and then share the next one, so many concurrent changes cost a single {@code
+ * fsync} between them.
+ *
+ * <p>Once the log grows past a threshold, the store is compacted on a background thread: the log is
+ * rotated to a new file, the events as they were at the rotation are written to a snapshot file
+ * sorted by ID, and the old logs are deleted. The directory itself is forced after each new log
+ * and before any old file is deleted, so that a crash cannot lose a file whose name was never made
+ * durable along with the data it replaced. A compaction that fails leaves the logs as they were,
+ * so it never costs a change that already returned, and it is tried again after the next change.
+ * Opening a store loads the snapshot and replays the logs written since. A record that was only
+ * partly written when the process stopped is dropped along with anything after it in the same log,
+ * since its change never returned.
+ *
+ * <p>A change can be seen through {@link #snapshot()} a moment before it is durable. If writing
+ * the log fails, the change stays in memory but the store refuses every later change, since memory
+ * and disk no longer agree.
+ */
+public final class DurableEventStore implements EventStore, Closeable {
+  /** How many bytes of log the store collects before it compacts itself, unless told otherwise. */
+  public static final long DEFAULT_COMPACTION_THRESHOLD = 64L << 20;
+
+  private static final String SNAPSHOT = "snapshot";
+  private static final String LOG_PREFIX = "log-";
+  private static final int SNAPSHOT_MAGIC = 0x45565350;
+  private static final int VERSION = 1;
+  // Longer records can only come from a damaged length.
+  private static final int MAX_RECORD_BYTES = 16 << 20;
+
+  private static final byte ADD = 1;
+  private static final byte REMOVE = 2;
+  private static final byte UPDATE = 3;
+
+  private final Path directory;
+  private final long compactionThreshold;
+  private final InMemoryEventStore events;
+
+  // Guards the changes to events, the records that are waiting to be written, and the sequence
+  // numbers, so that the log has the changes in the order they were applied.
+  private final Object appendLock = new Object();
+  private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+  private final DataOutputStream recordOut = new DataOutputStream(record);
+  private final CRC32 checksum = new CRC32();
+  private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+  private long appendedSeq;
+
+  // Guards syncing, which is set while one thread writes the pending records to the log and
+  // forces it. The other writers wait on it and are all woken at once when the force is done.
+  private final Object syncMonitor = new Object();
+  private boolean syncing;
+  private volatile long durableSeq;
+  private FileChannel log;
+  private long logGeneration;
+  private volatile long logBytes;
+
+  // Compactions run one at a time on their own thread, so that no writer waits for one.
+  private final Object compactionLock = new Object();
+  private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+  private final ExecutorService compactor =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "event-store-compaction");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private volatile IOException failure;
+  private volatile boolean closed;
+
+  private DurableEventStore(
+      Path directory,
+      long compactionThreshold,
+      InMemoryEventStore events,
+      FileChannel log,
+      long logGeneration) {
+    this.directory = directory;
+    this.compactionThreshold = compactionThreshold;
+    this.events = events;
+    this.log = log;
+    this.logGeneration = logGeneration;
+  }
+
+  /**
+   * Opens the store in {@code directory}, creating it if needed, and compacts it once its log
+   * passes {@link #DEFAULT_COMPACTION_THRESHOLD} bytes.
+   */
+  public static DurableEventStore open(Path directory) throws IOException {
+    return open(directory, DEFAULT_COMPACTION_THRESHOLD);
+  }
+
+  /**
+   * Opens the store in {@code directory}, creating it if needed, and compacts it once its log
+   * passes {@code compactionThreshold} bytes.
+   */
+  public static DurableEventStore open(Path directory, long compactionThreshold)
+      throws IOException {
+    if (compactionThreshold <= 0) {
+      throw new IllegalArgumentException("compactionThreshold must be positive");
+    }
+
+    Files.createDirectories(directory);
+    Files.deleteIfExists(directory.resolve(SNAPSHOT + ".tmp"));
+    Map<Long, Event> eventsById = new TreeMap<>();
+    long[] nextEventId = {0};
+    long firstGeneration = 0;
+    Path snapshot = directory.resolve(SNAPSHOT);
+    if (Files.exists(snapshot)) {
+      firstGeneration = readSnapshot(snapshot, eventsById, nextEventId);
+      // The compaction that renamed the snapshot may have stopped before it forced the directory,
+      // and the logs it replaces are deleted below.
+      syncDirectory(directory);
+    }
+
+    List<Long> generations = logGenerations(directory);
+    long lastGeneration = firstGeneration - 1;
+    for (int i = 0; i < generations.size(); i++) {
+      long generation = generations.get(i);
+      Path path = logPath(directory, generation);
+      if (generation < firstGeneration) {
+        // Already in the snapshot; left behind by a compaction that stopped part way.
+        Files.delete(path);
+        continue;
+      }
+      boolean isLast = i == generations.size() - 1;
+      replayLog(path, isLast, eventsById, nextEventId);
+      lastGeneration = generation;
+    }
+
+    long generation = lastGeneration + 1;
+    FileChannel log = openLog(directory, generation);
+    return new DurableEventStore(
+        directory,
+        compactionThreshold,
+        new InMemoryEventStore(eventsById, nextEventId[0]),
+        log,
+        generation);
+  }
+
+  @Override
+  public long add(Event event) {
+    if (event == null) {
+      throw new IllegalArgumentException("event cannot be null");
+    }
+
+    long eventId;
+    long seq;
+    synchronized (appendLock) {
+      checkWritable();
+      eventId = events.add(event);
+      seq = append(ADD, eventId, event);
+    }
+    awaitDurable(seq);
+    return eventId;
+  }
+
+  /** Adds the events together, so that the whole batch waits for one force of the log. */
+  @Override
+  public List<Long> addAll(Collection<Event> batch) {
+    for (Event event : batch) {
+      if (event == null) {
+        throw new IllegalArgumentException("events cannot contain null");
+      }
+    }
+
+    List<Long> eventIds = new ArrayList<>(batch.size());
+    long seq;
+    synchronized (appendLock) {
+      checkWritable();
+      seq = appendedSeq;
+      for (Event event : batch) {
+        long eventId = events.add(event);
+        eventIds.add(eventId);
+        seq = append(ADD, eventId, event);
+      }
+    }
+    awaitDurable(seq);
+    return eventIds;
+  }
+
+  @Override
+  public boolean remove(long eventId) {
+    long seq;
+    synchronized (appendLock) {
+      checkWritable();
+      if (!events.remove(eventId)) {
+        return false;
+      }
+      seq = append(REMOVE, eventId, null);
+    }
+    awaitDurable(seq);
+    return true;
+  }
+
+  @Override
+  public boolean update(long eventId, Event event) {
+    if (event == null) {
+      throw new IllegalArgumentException("event cannot be null");
+    }
+
+    long seq;
+    synchronized (appendLock) {
+      checkWritable();
+      if (!events.update(eventId, event)) {
+        return false;
+      }
+      seq = append(UPDATE, eventId, event);
+    }
+    awaitDurable(seq);
+    return true;
+  }
+
+  @Override
+  public Map<Long, Event> getEventsById() {
+    return events.getEventsById();
+  }
+
+  @Override
+  public EventIndex snapshot() {
+    return events.snapshot();
+  }
+
+  /**
+   * Writes the events to a new snapshot file and deletes the logs that it replaces, after waiting
+   * for any compaction that is already running. Changes can go on while the snapshot is written,
+   * apart from a short pause while the log is rotated.
+   */
+  public void compact() throws IOException {
+    synchronized (compactionLock) {
+      InMemoryEventStore.Snapshot state;
+      long generation;
+      claimLog();
+      try {
+        synchronized (appendLock) {
+          checkWritable();
+          // If the new log cannot be opened, the old one stays in use and nothing is lost.
+          generation = logGeneration + 1;
+          FileChannel newLog = openLog(directory, generation);
+          // Everything up to here goes in the snapshot, and everything after in the new log.
+          try {
+            writePending();
+            log.force(false);
+          } catch (IOException e) {
+            // Changes that were applied are not on disk, so memory and disk no longer agree.
+            failure = e;
+            try {
+              newLog.close();
+            } catch (IOException suppressed) {
+              e.addSuppressed(suppressed);
+            }
+            throw e;
+          }
+          durableSeq = appendedSeq;
+          state = events.snapshot();
+          FileChannel oldLog = log;
+          log = newLog;
+          logGeneration = generation;
+          logBytes = 0;
+          try {
+            oldLog.close();
+          } catch (IOException e) {
+            // Everything in it was forced above.
+          }
+        }
+      } finally {
+        releaseLog();
+      }
+
+      Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+      try {
+        writeSnapshot(temporary, state, generation);
+        Files.move(
+            temporary,
+            directory.resolve(SNAPSHOT),
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+        // The old logs are deleted next, so the new snapshot has to be in the directory for good
+        // first.
+        syncDirectory(directory);
+      } catch (IOException | RuntimeException e) {
+        // The old snapshot and logs still hold everything, so only the half-written file goes.
+        try {
+          Files.deleteIfExists(temporary);
+        } catch (IOException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+        throw e;
+      }
+      for (long old : logGenerations(directory)) {
+        if (old < generation) {
+          Files.delete(logPath(directory, old));
+        }
+      }
+    }
+  }
+
+  /** Closes the log. Every change that returned is already on disk. */
+  @Override
+  public void close() throws IOException {
+    claimLog();
+    try {
+      synchronized (appendLock) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        // Changes that were applied but are still waiting for their force.
+        writePending();
+        log.force(false);
+        durableSeq = appendedSeq;
+        log.close();
+      }
+    } finally {
+      releaseLog();
+    }
+
+    // A compaction that is part way through finishes before the store counts as closed.
+    compactor.shutdown();
+    boolean interrupted = false;
+    while (true) {
+      try {
+        if (compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+          break;
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void checkWritable() {
+    if (closed) {
+      throw new IllegalStateException("The store is closed");
+    }
+    if (failure != null) {
+      throw new UncheckedIOException("An earlier write to the log failed", failure);
+    }
+  }
+
+  // Adds the record of a change to the pending records, and returns its sequence number.
+  private long append(byte op, long eventId, Event event) {
+    try {
+      record.reset();
+      recordOut.writeByte(op);
+      recordOut.writeLong(eventId);
+      if (event != null) {
+        writeEvent(recordOut, event);
+      }
+      checksum.reset();
+      checksum.update(record.toByteArray(), 0, record.size());
+      DataOutputStream out = new DataOutputStream(pending);
+      out.writeInt(record.size());
+      out.writeInt((int) checksum.getValue());
+      record.writeTo(out);
+    } catch (IOException e) {
+      // Writing to memory cannot fail.
+      throw new UncheckedIOException(e);
+    }
+    return ++appendedSeq;
+  }
+
+  // Returns once the record with the given sequence number is on disk. A writer that finds no
+  // other thread writing the log writes and forces every pending record. The writers that arrive
+  // while it does so wait, and either find their records forced with it or have the next one of
+  // them force all of theirs together.
+  private void awaitDurable(long seq) {
+    boolean lead = false;
+    boolean interrupted = false;
+    synchronized (syncMonitor) {
+      while (durableSeq < seq && syncing) {
+        try {
+          syncMonitor.wait();
+        } catch (InterruptedException e) {
+          // The change is already applied, so it has to be made durable anyway.
+          interrupted = true;
+        }
+      }
+      if (durableSeq < seq) {
+        syncing = true;
+        lead = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (lead) {
+      try {
+        if (failure != null) {
+          throw new UncheckedIOException("An earlier write to the log failed", failure);
+        }
+        // Only the records are taken while writers are held up; they are written after.
+        long upTo;
+        ByteArrayOutputStream batch;
+        synchronized (appendLock) {
+          upTo = appendedSeq;
+          batch = pending;
+          pending = new ByteArrayOutputStream();
+        }
+        write(batch);
+        log.force(false);
+        durableSeq = upTo;
+      } catch (IOException e) {
+        failure = e;
+        throw new UncheckedIOException(e);
+      } finally {
+        releaseLog();
+      }
+    }
+
+    if (logBytes > compactionThreshold) {
+      scheduleCompaction();
+    }
+  }
+
+  // Has the compaction thread compact the store, unless a compaction is already waiting to run.
+  // The changes that led to it are durable in the log already, so whatever happens to the
+  // compaction is kept from their writers, and the next change past the threshold tries again.
+  private void scheduleCompaction() {
+    if (closed || !compactionScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      compactor.execute(
+          () -> {
+            compactionScheduled.set(false);
+            // Checked again once it is this compaction's turn, since one that ran in the
+            // meantime may already have emptied the log.
+            synchronized (compactionLock) {
+              if (closed || logBytes <= compactionThreshold) {
+                return;
+              }
+              try {
+                compact();
+              } catch (IOException | RuntimeException e) {
+                // Left for the next change to try again.
+              }
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      // The store was closed in the meantime.
+      compactionScheduled.set(false);
+    }
+  }
+
+  // Waits until no other thread is writing the log, and then takes it over.
+  private void claimLog() {
+    boolean interrupted = false;
+    synchronized (syncMonitor) {
+      while (syncing) {
+        try {
+          syncMonitor.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      syncing = true;
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void releaseLog() {
+    synchronized (syncMonitor) {
+      syncing = false;
+      syncMonitor.notifyAll();
+    }
+  }
+
+  // Writes the pending records to the log without forcing it. Needs the log and appendLock.
+  private void writePending() throws IOException {
+    write(pending);
+    pending = new ByteArrayOutputStream();
+  }
+
+  // Writes records to the log without forcing it. Needs the log.
+  private void write(ByteArrayOutputStream records) throws IOException {
+    ByteBuffer bytes = ByteBuffer.wrap(records.toByteArray());
+    while (bytes.hasRemaining()) {
+      logBytes += log.write(bytes);
+    }
+  }
+
+  private static FileChannel openLog(Path directory, long generation) throws IOException {
+    Path path = logPath(directory, generation);
+    FileChannel log =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    // Forcing the log only makes its contents durable, not its name in the directory, so changes
+    // written to it could be lost with the whole file after a crash.
+    try {
+      syncDirectory(directory);
+    } catch (IOException e) {
+      try {
+        log.close();
+        Files.deleteIfExists(path);
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+    return log;
+  }
+
+  // Makes the files created, renamed or deleted in the directory so far survive a crash. Until
+  // its directory is forced, a file that was written and forced can still go missing.
+  private static void syncDirectory(Path directory) throws IOException {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+  }
+
+  private static Path logPath(Path directory, long generation) {
+    return directory.resolve(String.format("%s%019d", LOG_PREFIX, generation));
+  }
+
+  // Returns the generations of the logs in the directory, oldest first.
+  private static List<Long> logGenerations(Path directory) throws IOException {
+    List<Long> generations = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOG_PREFIX + "*")) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        try {
+          generations.add(Long.parseLong(name.substring(LOG_PREFIX.length())));
+        } catch (NumberFormatException e) {
+          // Not one of ours.
+        }
+      }
+    }
+    Collections.sort(generations);
+    return generations;
+  }
+
+  // Applies the records of a log to the events. A damaged record at the end of the last log was
+  // being written when the process stopped, so it and anything after it are cut off. Anywhere else
+  // it means the log itself is damaged.
+  private static void replayLog(
+      Path path, boolean isLast, Map<Long, Event> eventsById, long[] nextEventId)
+      throws IOException {
+    long goodBytes = 0;
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      CRC32 checksum = new CRC32();
+      while (true) {
+        int length;
+        try {
+          length = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        byte[] payload;
+        int expected;
+        try {
+          expected = in.readInt();
+          if (length <= 0 || length > MAX_RECORD_BYTES) {
+            throw new EOFException();
+          }
+          payload = new byte[length];
+          in.readFully(payload);
+        } catch (EOFException e) {
+          break;
+        }
+        checksum.reset();
+        checksum.update(payload, 0, payload.length);
+        if ((int) checksum.getValue() != expected) {
+          break;
+        }
+        apply(new DataInputStream(new ByteArrayInputStream(payload)), eventsById, nextEventId);
+        goodBytes += 8 + length;
+      }
+    }
+
+    if (goodBytes < Files.size(path)) {
+      if (!isLast) {
+        throw new IOException("The event log is damaged: " + path);
+      }
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+        channel.truncate(goodBytes);
+        channel.force(true);
+      }
+    }
+  }
+
+  private static void apply(DataInput in, Map<Long, Event> eventsById, long[] nextEventId)
+      throws IOException {
+    byte op = in.readByte();
+    long eventId = in.readLong();
+    switch (op) {
+      case ADD:
+        eventsById.put(eventId, readEvent(in));
+        nextEventId[0] = Math.max(nextEventId[0], eventId + 1);
+        break;
+      case REMOVE:
+        eventsById.remove(eventId);
+        break;
+      case UPDATE:
+        eventsById.put(eventId, readEvent(in));
+        break;
+      default:
+        throw new IOException("Unknown log record " + op);
+    }
+  }
+
+  // Writes the events of the state sorted by ID, followed by a checksum of everything before it.
+  private static void writeSnapshot(
+      Path path, InMemoryEventStore.Snapshot state, long firstGeneration) throws IOException {
+    Map<Long, Event> eventsById = state.getEventsById();
+    CheckedOutputStream checked =
+        new CheckedOutputStream(
+            new BufferedOutputStream(
+                Files.newOutputStream(
+                    path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)),
+            new CRC32());
+    try (DataOutputStream out = new DataOutputStream(checked)) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(firstGeneration);
+      out.writeLong(state.getNextEventId());
+      out.writeInt(eventsById.size());
+      for (Map.Entry<Long, Event> entry : eventsById.entrySet()) {
+        out.writeLong(entry.getKey());
+        writeEvent(out, entry.getValue());
+      }
+      out.flush();
+      out.writeInt((int) checked.getChecksum().getValue());
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+  }
+
+  // Reads a snapshot into eventsById and nextEventId, and returns the first log generation that
+  // is not in it.
+  private static long readSnapshot(Path path, Map<Long, Event> eventsById, long[] nextEventId)
+      throws IOException {
+    try (InputStream file = new BufferedInputStream(Files.newInputStream(path))) {
+      CheckedInputStream checked = new CheckedInputStream(file, new CRC32());
+      DataInputStream in = new DataInputStream(checked);
+      if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not an event snapshot: " + path);
+      }
+      long firstGeneration = in.readLong();
+      nextEventId[0] = in.readLong();
+      int numEvents = in.readInt();
+      for (int i = 0; i < numEvents; i++) {
+        long eventId = in.readLong();
+        eventsById.put(eventId, readEvent(in));
+      }
+      int expected = (int) checked.getChecksum().getValue();
+      if (new DataInputStream(file).readInt() != expected) {
+        throw new IOException("The event snapshot is damaged: " + path);
+      }
+      return firstGeneration;
+    }
+  }
+
+  private static void writeEvent(DataOutput out, Event event) throws IOException {
+    writeString(out, event.getTitle());
+    out.writeInt(event.getWhen().start());
+    out.writeInt(event.getWhen().duration());
+    out.writeInt(event.getAttendees().size());
+    for (String attendee : event.getAttendees()) {
+      writeString(out, attendee);
+    }
+  }
+
+  private static Event readEvent(DataInput in) throws IOException {
+    String title = readString(in);
+    int start = in.readInt();
+    int duration = in.readInt();
+    int numAttendees = in.readInt();
+    if (numAttendees < 0) {
+      throw new IOException("Negative number of attendees");
+    }
+    List<String> attendees = new ArrayList<>();
+    for (int i = 0; i < numAttendees; i++) {
+      attendees.add(readString(in));
+    }
+    return new Event(title, TimeRange.fromStartDuration(start, duration), attendees);
+  }
+
+  // Unlike writeUTF, this has no limit on the length of the string.
+  private static void writeString(DataOutput out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0 || length > MAX_RECORD_BYTES) {
+      throw new IOException("Bad string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,93 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+/**
+ * A span of time on a calendar that is not limited to one day. Times are counted in minutes since
+ * midnight at the start of 1970-01-01, and days in whole days since then, so minute {@code m} falls
+ * on day {@code dayOf(m)} at {@code m - startOfDay(dayOf(m))} minutes into that day.
+ */
+public final class EpochRange {
+  /** The number of minutes in a day. */
+  public static final int MINUTES_PER_DAY = TimeRange.WHOLE_DAY.duration();
+
+  private final long start;
+  private final long end;
+
+  private EpochRange(long start, long end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  /** Creates the range from {@code start} to {@code end}, not including {@code end}. */
+  public static EpochRange fromStartEnd(long start, long end) {
+    if (end < start) {
+      throw new IllegalArgumentException("A range cannot end before it starts");
+    }
+    return new EpochRange(start, end);
+  }
+
+  /** Creates the range of {@code days} whole days, starting at the start of {@code firstDay}. */
+  public static EpochRange ofDays(long firstDay, long days) {
+    return fromStartEnd(startOfDay(firstDay), startOfDay(firstDay + days));
+  }
+
+  /** Returns the day that {@code minute} falls on. */
+  public static long dayOf(long minute) {
+    return Math.floorDiv(minute, MINUTES_PER_DAY);
+  }
+
+  /** Returns the first minute of {@code day}. */
+  public static long startOfDay(long day) {
+    return day * MINUTES_PER_DAY;
+  }
+
+  /** Returns the start of the range. */
+  public long start() {
+    return start;
+  }
+
+  /** Returns the end of the range. This ending value is the closing exclusive bound. */
+  public long end() {
+    return end;
+  }
+
+  /** Returns the number of minutes between the start and end. */
+  public long duration() {
+    return end - start;
+  }
+
+  /** Returns true if {@code minute} is in the range. */
+  public boolean contains(long minute) {
+    return start <= minute && minute < end;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof EpochRange
+        && start == ((EpochRange) other).start
+        && end == ((EpochRange) other).end;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(start) ^ Long.hashCode(end);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Range: [%d, %d)", start, end);
+  }
+}
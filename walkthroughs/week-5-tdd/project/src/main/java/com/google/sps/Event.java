@@ -26,7 +26,11 @@ import java.util.Set;
 public final class Event {
   private final String title;
   private final TimeRange when;
-  private final Set<String> attendees = new HashSet<>();
+  private final Set<String> attendees;
+
+  // The attendees as IDs from the shared {@code AttendeeRegistry}, sorted in ascending order. This
+  // is derived from {@code attendees}, so it is left out of equality and of the JSON form.
+  private final transient int[] attendeeIds;
 
   /**
    * Creates a new event.
@@ -50,7 +54,20 @@ public final class Event {
 
     this.title = title;
     this.when = when;
-    this.attendees.addAll(attendees);
+    this.attendees = new HashSet<>(attendees);
+    this.attendeeIds = AttendeeRegistry.shared().internAll(this.attendees);
+  }
+
+  /**
+   * Creates an event that shares {@code attendees} and {@code attendeeIds} with the caller, who
+   * must never change them. This is how recurring events hand out their occurrences without
+   * copying and interning the attendees of each one.
+   */
+  Event(String title, TimeRange when, Set<String> attendees, int[] attendeeIds) {
+    this.title = title;
+    this.when = when;
+    this.attendees = attendees;
+    this.attendeeIds = attendeeIds;
   }
 
   /** Returns the human-readable name for this event. */
@@ -70,6 +87,14 @@ public final class Event {
     return Collections.unmodifiableSet(attendees);
   }
 
+  /**
+   * Returns the IDs of the attendees in ascending order. The array is shared with this event and
+   * must not be modified.
+   */
+  int[] getAttendeeIds() {
+    return attendeeIds;
+  }
+
   @Override
   public int hashCode() {
     // For the hash code, just use the title. Most events "should" have different names and will
@@ -0,0 +1,426 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A calendar stored in a file by column, read through a memory mapping. The events stay in the
+ * page cache instead of on the heap, and an {@code Event} is only created when it is asked for.
+ * Opening a file only reads its header, so it takes the same short time however many events there
+ * are. The offsets and the references to strings are checked as they are read, and a damaged file
+ * is reported with an {@code IllegalStateException} then; {@link #verify} checks them all at
+ * once up front instead.
+ *
+ * <p>Each name in the file is interned in the {@code AttendeeRegistry} the first time it is read,
+ * and its ID is kept for the file, so that the events and the {@link #index()} of a file share
+ * one ID per name however many events each is at.
+ *
+ * <p>Every title and name is stored once in a dictionary of UTF-8 strings, and the columns refer to
+ * them by their position in it. The file is a header followed by these sections, each an array of
+ * big-endian {@code int}s except for the last:
+ *
+ * <ol>
+ *   <li>the header: a magic number, the format version, the number of events, of attendee entries,
+ *       of strings and of string bytes;
+ *   <li>the title of each event;
+ *   <li>the start of each event;
+ *   <li>the duration of each event;
+ *   <li>where the attendees of each event begin in the next section, and one more entry for where
+ *       the last one ends;
+ *   <li>the attendees of every event, one after another;
+ *   <li>where each string begins in the next section, and one more entry for where the last one
+ *       ends;
+ *   <li>the bytes of every string, one after another.
+ * </ol>
+ *
+ * <p>A whole file has to be mapped at once, so it can be at most 2 GB long. Files are read-only and
+ * safe to read from several threads at once.
+ */
+public final class EventFile {
+  // "EVNT" in ASCII.
+  private static final int MAGIC = 0x45564e54;
+  private static final int VERSION = 1;
+  private static final int HEADER_INTS = 6;
+
+  private final Path path;
+  private final ByteBuffer buffer;
+  private final int numEvents;
+  private final int numAttendees;
+  private final int numStrings;
+  private final int numStringBytes;
+  // The byte offset of each section.
+  private final int titles;
+  private final int starts;
+  private final int durations;
+  private final int attendeeOffsets;
+  private final int attendees;
+  private final int stringOffsets;
+  private final int stringBytes;
+  // The registry ID of each string plus one, or zero if it has not been interned yet. Threads may
+  // race to fill in an entry, but they all write the same value.
+  private final int[] registryIds;
+  private volatile EventIndex index;
+
+  private EventFile(
+      Path path,
+      ByteBuffer buffer,
+      int numEvents,
+      int numAttendees,
+      int numStrings,
+      int numStringBytes) {
+    this.path = path;
+    this.buffer = buffer;
+    this.numEvents = numEvents;
+    this.numAttendees = numAttendees;
+    this.numStrings = numStrings;
+    this.numStringBytes = numStringBytes;
+    this.titles = 4 * HEADER_INTS;
+    this.starts = titles + 4 * numEvents;
+    this.durations = starts + 4 * numEvents;
+    this.attendeeOffsets = durations + 4 * numEvents;
+    this.attendees = attendeeOffsets + 4 * (numEvents + 1);
+    this.stringOffsets = attendees + 4 * numAttendees;
+    this.stringBytes = stringOffsets + 4 * (numStrings + 1);
+    this.registryIds = new int[numStrings];
+  }
+
+  /** Writes {@code events} to a new file at {@code path}, replacing any file that is there. */
+  public static void write(Path path, Collection<Event> events) throws IOException {
+    // Give every title and name its place in the dictionary.
+    Map<String, Integer> stringIds = new HashMap<>();
+    List<byte[]> strings = new ArrayList<>();
+    long numAttendees = 0;
+    long numStringBytes = 0;
+    for (Event event : events) {
+      numStringBytes += intern(event.getTitle(), stringIds, strings);
+      for (String attendee : event.getAttendees()) {
+        numStringBytes += intern(attendee, stringIds, strings);
+      }
+      numAttendees += event.getAttendees().size();
+    }
+    long length =
+        4L * (HEADER_INTS + 4 * events.size() + 1 + numAttendees + strings.size() + 1)
+            + numStringBytes;
+    if (length > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The events do not fit in one file");
+    }
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(events.size());
+      out.writeInt((int) numAttendees);
+      out.writeInt(strings.size());
+      out.writeInt((int) numStringBytes);
+      for (Event event : events) {
+        out.writeInt(stringIds.get(event.getTitle()));
+      }
+      for (Event event : events) {
+        out.writeInt(event.getWhen().start());
+      }
+      for (Event event : events) {
+        out.writeInt(event.getWhen().duration());
+      }
+      int offset = 0;
+      for (Event event : events) {
+        out.writeInt(offset);
+        offset += event.getAttendees().size();
+      }
+      out.writeInt(offset);
+      for (Event event : events) {
+        for (String attendee : event.getAttendees()) {
+          out.writeInt(stringIds.get(attendee));
+        }
+      }
+      offset = 0;
+      for (byte[] string : strings) {
+        out.writeInt(offset);
+        offset += string.length;
+      }
+      out.writeInt(offset);
+      for (byte[] string : strings) {
+        out.write(string);
+      }
+    }
+  }
+
+  // Adds the string to the dictionary if it is not there yet, and returns how many bytes that
+  // added.
+  private static int intern(String string, Map<String, Integer> stringIds, List<byte[]> strings) {
+    if (stringIds.containsKey(string)) {
+      return 0;
+    }
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    stringIds.put(string, strings.size());
+    strings.add(bytes);
+    return bytes.length;
+  }
+
+  /**
+   * Opens the file at {@code path}, which must have been written by {@link #write}. The mapping
+   * stays valid after this method returns, and is released once the returned object is no longer
+   * used.
+   */
+  public static EventFile open(Path path) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Not an event file: " + path);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.capacity() < 4 * HEADER_INTS
+        || buffer.getInt(0) != MAGIC
+        || buffer.getInt(4) != VERSION) {
+      throw new IOException("Not an event file: " + path);
+    }
+
+    int numEvents = buffer.getInt(8);
+    int numAttendees = buffer.getInt(12);
+    int numStrings = buffer.getInt(16);
+    int numStringBytes = buffer.getInt(20);
+    long length =
+        4L * (HEADER_INTS + 4L * numEvents + 1 + numAttendees + numStrings + 1) + numStringBytes;
+    if (numEvents < 0
+        || numAttendees < 0
+        || numStrings < 0
+        || numStringBytes < 0
+        || length != buffer.capacity()) {
+      throw new IOException("The event file is damaged: " + path);
+    }
+    return new EventFile(path, buffer, numEvents, numAttendees, numStrings, numStringBytes);
+  }
+
+  /**
+   * Checks every offset and every reference to a string in the file, in one pass over its
+   * columns, so that a damaged file is found before any of it is used rather than part way
+   * through a query.
+   *
+   * @throws IOException if the file is damaged
+   */
+  public void verify() throws IOException {
+    if (!isConsistent()) {
+      throw new IOException("The event file is damaged: " + path);
+    }
+  }
+
+  // Returns true if the offsets of each section are in order and within the next one, and every
+  // title and attendee is a string in the dictionary, so that reading never goes out of bounds.
+  private boolean isConsistent() {
+    if (!areOffsets(attendeeOffsets, numEvents, numAttendees)
+        || !areOffsets(stringOffsets, numStrings, numStringBytes)) {
+      return false;
+    }
+    for (int i = 0; i < numEvents; i++) {
+      if (!isString(intAt(titles, i))) {
+        return false;
+      }
+    }
+    for (int i = 0; i < numAttendees; i++) {
+      if (!isString(intAt(attendees, i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Returns true if the count + 1 offsets of the section start at 0, never go down, and end at
+  // last.
+  private boolean areOffsets(int section, int count, int last) {
+    if (intAt(section, 0) != 0 || intAt(section, count) != last) {
+      return false;
+    }
+    for (int i = 0; i < count; i++) {
+      if (intAt(section, i) > intAt(section, i + 1)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isString(int id) {
+    return id >= 0 && id < numStrings;
+  }
+
+  /** Returns the number of events in the file. */
+  public int size() {
+    return numEvents;
+  }
+
+  /** Returns the event at {@code index}, created from the file. */
+  public Event get(int index) {
+    if (index < 0 || index >= numEvents) {
+      throw new IndexOutOfBoundsException("No event " + index);
+    }
+    int from = attendeeOffset(index);
+    int to = from + numAttendeesOf(index);
+    AttendeeRegistry registry = AttendeeRegistry.shared();
+    int[] ids = new int[to - from];
+    Set<String> names = new HashSet<>();
+    for (int i = from; i < to; i++) {
+      ids[i - from] = registryId(intAt(attendees, i));
+      names.add(registry.name(ids[i - from]));
+    }
+    Arrays.sort(ids);
+    return new Event(
+        string(intAt(titles, index)),
+        TimeRange.fromStartDuration(intAt(starts, index), intAt(durations, index)),
+        Collections.unmodifiableSet(names),
+        ids);
+  }
+
+  /**
+   * Returns a read-only list of the events in the file, which creates each event when it is asked
+   * for. It can be passed to {@code FindMeetingQuery} like any other collection of events.
+   */
+  public List<Event> events() {
+    return new EventList();
+  }
+
+  /**
+   * Returns an index of the events in the file, whose posting lists are built straight from the
+   * columns without creating an {@code Event} for each one. It is built on the first call and
+   * shared by the later ones.
+   */
+  public EventIndex index() {
+    EventIndex result = index;
+    if (result == null) {
+      synchronized (this) {
+        result = index;
+        if (result == null) {
+          result = new EventSnapshot(events(), new FileColumns());
+          index = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  // Returns the registry ID of the string with the given ID, interning it the first time.
+  private int registryId(int stringId) {
+    if (!isString(stringId)) {
+      throw damaged();
+    }
+    int id = registryIds[stringId] - 1;
+    if (id < 0) {
+      id = AttendeeRegistry.shared().intern(string(stringId));
+      registryIds[stringId] = id + 1;
+    }
+    return id;
+  }
+
+  private int intAt(int section, int index) {
+    return buffer.getInt(section + 4 * index);
+  }
+
+  // Returns where the attendees of the event begin in their section.
+  private int attendeeOffset(int event) {
+    int offset = intAt(attendeeOffsets, event);
+    if (offset < 0 || offset > numAttendees) {
+      throw damaged();
+    }
+    return offset;
+  }
+
+  private int numAttendeesOf(int event) {
+    int count = attendeeOffset(event + 1) - attendeeOffset(event);
+    if (count < 0) {
+      throw damaged();
+    }
+    return count;
+  }
+
+  private String string(int id) {
+    if (!isString(id)) {
+      throw damaged();
+    }
+    int from = intAt(stringOffsets, id);
+    int to = intAt(stringOffsets, id + 1);
+    if (from < 0 || from > to || to > numStringBytes) {
+      throw damaged();
+    }
+    byte[] bytes = new byte[to - from];
+    ByteBuffer view = buffer.duplicate();
+    view.position(stringBytes + from);
+    view.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private IllegalStateException damaged() {
+    return new IllegalStateException("The event file is damaged: " + path);
+  }
+
+  /** The columns of the file, with the attendees as registry IDs. */
+  private final class FileColumns implements EventSnapshot.Columns {
+    @Override
+    public int size() {
+      return numEvents;
+    }
+
+    @Override
+    public int start(int event) {
+      return intAt(starts, event);
+    }
+
+    @Override
+    public int duration(int event) {
+      return intAt(durations, event);
+    }
+
+    @Override
+    public int numAttendees(int event) {
+      return numAttendeesOf(event);
+    }
+
+    @Override
+    public int attendeeId(int event, int k) {
+      return registryId(intAt(attendees, attendeeOffset(event) + k));
+    }
+  }
+
+  /** The events of the file as a list. */
+  private final class EventList extends AbstractList<Event> implements RandomAccess {
+    @Override
+    public Event get(int index) {
+      return EventFile.this.get(index);
+    }
+
+    @Override
+    public int size() {
+      return numEvents;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A set of events along with a posting list for every attendee: the busy intervals of that
+ * attendee, ordered by start and by end. {@code FindMeetingQuery} only merges the lists of the
+ * people a request names, so its cost depends on how busy they are and not on how many events
+ * there are in total.
+ *
+ * <p>Every version of every index has a version number that no other version of any index shares,
+ * so results computed from an index can be cached by version. Events that take no time never make
+ * anyone busy, so they are left out of the posting lists.
+ */
+public abstract class EventIndex {
+  private static final AtomicLong lastVersion = new AtomicLong();
+
+  // Only this package can provide the posting lists.
+  EventIndex() {}
+
+  /** Returns a version number that has not been used before. */
+  static long nextVersion() {
+    return lastVersion.incrementAndGet();
+  }
+
+  /** Returns the version of the events in this index. */
+  public abstract long getVersion();
+
+  /** Returns a read-only collection of the events in this index. */
+  public abstract Collection<Event> getEvents();
+
+  /**
+   * Returns a cursor over the busy intervals of the attendee with the given ID, in order of start.
+   * IDs that are not at any event have no intervals.
+   */
+  abstract IntervalCursor byStart(int attendeeId);
+
+  /** Returns a cursor over the busy intervals of the attendee, in order of end. */
+  abstract IntervalCursor byEnd(int attendeeId);
+
+  /**
+   * Like {@link #byStart(int)}, but may reset and return {@code reuse}, a cursor returned by an
+   * earlier call on any index, instead of creating a new one. {@code reuse} may be null.
+   */
+  IntervalCursor byStart(int attendeeId, IntervalCursor reuse) {
+    return byStart(attendeeId);
+  }
+
+  /** Like {@link #byEnd(int)}, but may reset and return {@code reuse} as {@link #byStart} does. */
+  IntervalCursor byEnd(int attendeeId, IntervalCursor reuse) {
+    return byEnd(attendeeId);
+  }
+
+  /** Returns the number of busy intervals of the attendee with the given ID. */
+  abstract int numIntervals(int attendeeId);
+
+  /** Returns the minutes when at least one of {@code attendees} is at an event. */
+  public TimeRangeSet busyTimeOf(Collection<String> attendees) {
+    AttendeeRegistry registry = AttendeeRegistry.shared();
+    int[] ids = new int[attendees.size()];
+    int numIds = 0;
+    for (String attendee : attendees) {
+      ids[numIds++] = registry.lookup(attendee);
+    }
+    return busyTimeOf(ids, numIds);
+  }
+
+  /**
+   * Returns the free stretches of the day that are at least {@code duration} minutes long for
+   * every one of {@code attendees}, in order.
+   */
+  public List<TimeRange> freeTimeOf(Collection<String> attendees, long duration) {
+    return TimeRangeSet.of(TimeRange.START_OF_DAY, TimeRange.END_OF_DAY + 1)
+        .subtract(busyTimeOf(attendees))
+        .filterByMinDuration(duration)
+        .toTimeRanges();
+  }
+
+  /**
+   * Returns the minutes when at least one of the first {@code numIds} attendees in {@code
+   * attendeeIds} is at an event, by merging their posting lists in order of start.
+   */
+  TimeRangeSet busyTimeOf(int[] attendeeIds, int numIds) {
+    IntervalCursor merged = new MergingCursor().reset(this, attendeeIds, numIds);
+    TimeRangeSet.Builder busy = new TimeRangeSet.Builder();
+    while (merged.next()) {
+      busy.add(merged.start(), merged.end());
+    }
+    return busy.build();
+  }
+
+  /**
+   * Walks the busy intervals of several attendees in order of start. The lists are merged as the
+   * cursor moves, so a caller that only needs the start of the day only pays for that part. A
+   * cursor can be reset to walk other lists, and it then reuses its heap and the cursors of the
+   * lists it walked before.
+   */
+  static final class MergingCursor implements IntervalCursor {
+    // Each heap entry is the start of the current interval of a cursor, with the position of the
+    // cursor in the low bits.
+    private final LongHeap heap = new LongHeap();
+    private IntervalCursor[] cursors = new IntervalCursor[0];
+    private IntervalCursor current;
+    private int currentIndex = -1;
+
+    /**
+     * Starts walking the lists of the first {@code numIds} attendees in {@code attendeeIds} in
+     * {@code index}, and returns this cursor.
+     */
+    MergingCursor reset(EventIndex index, int[] attendeeIds, int numIds) {
+      if (cursors.length < numIds) {
+        cursors = Arrays.copyOf(cursors, numIds);
+      }
+      heap.clear();
+      current = null;
+      currentIndex = -1;
+      for (int i = 0; i < numIds; i++) {
+        cursors[i] = index.byStart(attendeeIds[i], cursors[i]);
+        if (cursors[i].next()) {
+          heap.add(((long) cursors[i].start() << 32) | i);
+        }
+      }
+      return this;
+    }
+
+    @Override
+    public boolean next() {
+      // The cursor that was read last only moves on now, so that its interval stays readable.
+      if (currentIndex >= 0 && current.next()) {
+        heap.add(((long) current.start() << 32) | currentIndex);
+      }
+      if (heap.isEmpty()) {
+        currentIndex = -1;
+        return false;
+      }
+      currentIndex = (int) heap.poll();
+      current = cursors[currentIndex];
+      return true;
+    }
+
+    @Override
+    public int start() {
+      return current.start();
+    }
+
+    @Override
+    public int end() {
+      return current.end();
+    }
+
+    @Override
+    public void release() {
+      for (IntervalCursor cursor : cursors) {
+        if (cursor != null) {
+          cursor.release();
+        }
+      }
+      heap.clear();
+      current = null;
+      currentIndex = -1;
+    }
+  }
+}
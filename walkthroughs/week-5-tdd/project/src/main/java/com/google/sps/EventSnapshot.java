@@ -0,0 +1,277 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable {@code EventIndex} that is prepared once so that any number of queries can share
+ * the work. The posting lists of all attendees are stored back to back in primitive arrays, which
+ * makes the snapshot cheap to walk but means it has to be built again to change it.
+ */
+public final class EventSnapshot extends EventIndex {
+  private final long version;
+  private final List<Event> events;
+
+  // The posting lists of all attendees, stored back to back. The list of the attendee with ID id
+  // is at [listOffsets[id], listOffsets[id + 1]) in each of the other arrays.
+  private final int[] listOffsets;
+  // The intervals of each list, ordered by start.
+  private final int[] starts;
+  private final int[] endsByStart;
+  // The same intervals, ordered by end.
+  private final int[] startsByEnd;
+  private final int[] sortedEnds;
+
+  /**
+   * Builds a snapshot of {@code events}.
+   *
+   * @param events The events in the snapshot. Must be non-null. The snapshot keeps its own copy.
+   */
+  public EventSnapshot(Collection<Event> events) {
+    this(copyOf(events), null);
+  }
+
+  /**
+   * Builds a snapshot of {@code events}, whose posting lists are built from {@code columns}
+   * rather than from the events themselves if it is not null. The snapshot keeps {@code events}
+   * as it is, so it has to be read-only.
+   */
+  EventSnapshot(List<Event> events, Columns columns) {
+    this.events = events;
+    if (columns == null) {
+      columns = new EventColumns(events);
+    }
+    int numEvents = columns.size();
+
+    // Count the intervals of each attendee, then turn the counts into offsets.
+    int maxId = -1;
+    for (int event = 0; event < numEvents; event++) {
+      for (int k = 0, n = columns.numAttendees(event); k < n; k++) {
+        maxId = Math.max(maxId, columns.attendeeId(event, k));
+      }
+    }
+    listOffsets = new int[maxId + 2];
+    for (int event = 0; event < numEvents; event++) {
+      if (columns.duration(event) > 0) {
+        for (int k = 0, n = columns.numAttendees(event); k < n; k++) {
+          listOffsets[columns.attendeeId(event, k) + 1]++;
+        }
+      }
+    }
+    for (int id = 0; id <= maxId; id++) {
+      listOffsets[id + 1] += listOffsets[id];
+    }
+
+    // Pack each interval as (start, end) and as (end, start), so that sorting a list orders it by
+    // start or by end.
+    int numIntervals = listOffsets[maxId + 1];
+    long[] byStart = new long[numIntervals];
+    long[] byEnd = new long[numIntervals];
+    int[] next = Arrays.copyOf(listOffsets, maxId + 1);
+    for (int event = 0; event < numEvents; event++) {
+      int duration = columns.duration(event);
+      if (duration > 0) {
+        int start = columns.start(event);
+        int end = start + duration;
+        for (int k = 0, n = columns.numAttendees(event); k < n; k++) {
+          int id = columns.attendeeId(event, k);
+          byStart[next[id]] = pack(start, end);
+          byEnd[next[id]] = pack(end, start);
+          next[id]++;
+        }
+      }
+    }
+
+    starts = new int[numIntervals];
+    endsByStart = new int[numIntervals];
+    startsByEnd = new int[numIntervals];
+    sortedEnds = new int[numIntervals];
+    for (int id = 0; id <= maxId; id++) {
+      int from = listOffsets[id];
+      int to = listOffsets[id + 1];
+      Arrays.sort(byStart, from, to);
+      Arrays.sort(byEnd, from, to);
+      for (int i = from; i < to; i++) {
+        starts[i] = (int) (byStart[i] >> 32);
+        endsByStart[i] = (int) byStart[i];
+        sortedEnds[i] = (int) (byEnd[i] >> 32);
+        startsByEnd[i] = (int) byEnd[i];
+      }
+    }
+
+    this.version = nextVersion();
+  }
+
+  private static List<Event> copyOf(Collection<Event> events) {
+    if (events == null) {
+      throw new IllegalArgumentException("events cannot be null. Use empty collection instead.");
+    }
+    return Collections.unmodifiableList(new ArrayList<>(events));
+  }
+
+  private static long pack(int high, int low) {
+    return ((long) high << 32) | (low & 0xFFFFFFFFL);
+  }
+
+  @Override
+  public long getVersion() {
+    return version;
+  }
+
+  @Override
+  public List<Event> getEvents() {
+    return events;
+  }
+
+  @Override
+  IntervalCursor byStart(int attendeeId) {
+    return cursor(starts, endsByStart, attendeeId, null);
+  }
+
+  @Override
+  IntervalCursor byEnd(int attendeeId) {
+    return cursor(startsByEnd, sortedEnds, attendeeId, null);
+  }
+
+  @Override
+  IntervalCursor byStart(int attendeeId, IntervalCursor reuse) {
+    return cursor(starts, endsByStart, attendeeId, reuse);
+  }
+
+  @Override
+  IntervalCursor byEnd(int attendeeId, IntervalCursor reuse) {
+    return cursor(startsByEnd, sortedEnds, attendeeId, reuse);
+  }
+
+  @Override
+  int numIntervals(int attendeeId) {
+    if (attendeeId < 0 || attendeeId + 1 >= listOffsets.length) {
+      return 0;
+    }
+    return listOffsets[attendeeId + 1] - listOffsets[attendeeId];
+  }
+
+  private IntervalCursor cursor(int[] starts, int[] ends, int attendeeId, IntervalCursor reuse) {
+    boolean hasList = attendeeId >= 0 && attendeeId + 1 < listOffsets.length;
+    int from = hasList ? listOffsets[attendeeId] : 0;
+    int to = hasList ? listOffsets[attendeeId + 1] : 0;
+    if (reuse instanceof ArrayCursor) {
+      return ((ArrayCursor) reuse).reset(starts, ends, from, to);
+    }
+    return hasList ? new ArrayCursor(starts, ends, from, to) : IntervalCursor.EMPTY;
+  }
+
+  /**
+   * The events of a snapshot by position, as the parts that the posting lists are built from.
+   * This lets a snapshot be built from events that are stored some other way without making an
+   * {@code Event} for each of them.
+   */
+  interface Columns {
+    /** Returns the number of events. */
+    int size();
+
+    int start(int event);
+
+    int duration(int event);
+
+    int numAttendees(int event);
+
+    /** Returns the ID of attendee {@code k} of the event. No event has the same ID twice. */
+    int attendeeId(int event, int k);
+  }
+
+  /** The columns of a list of events. */
+  private static final class EventColumns implements Columns {
+    private final List<Event> events;
+
+    EventColumns(List<Event> events) {
+      this.events = events;
+    }
+
+    @Override
+    public int size() {
+      return events.size();
+    }
+
+    @Override
+    public int start(int event) {
+      return events.get(event).getWhen().start();
+    }
+
+    @Override
+    public int duration(int event) {
+      return events.get(event).getWhen().duration();
+    }
+
+    @Override
+    public int numAttendees(int event) {
+      return events.get(event).getAttendeeIds().length;
+    }
+
+    @Override
+    public int attendeeId(int event, int k) {
+      return events.get(event).getAttendeeIds()[k];
+    }
+  }
+
+  /** Walks the intervals at [from, to) of a pair of arrays. */
+  private static final class ArrayCursor implements IntervalCursor {
+    private int[] starts;
+    private int[] ends;
+    private int to;
+    private int current;
+
+    ArrayCursor(int[] starts, int[] ends, int from, int to) {
+      reset(starts, ends, from, to);
+    }
+
+    ArrayCursor reset(int[] starts, int[] ends, int from, int to) {
+      this.starts = starts;
+      this.ends = ends;
+      this.to = to;
+      this.current = from - 1;
+      return this;
+    }
+
+    @Override
+    public boolean next() {
+      if (current + 1 >= to) {
+        return false;
+      }
+      current++;
+      return true;
+    }
+
+    @Override
+    public int start() {
+      return starts[current];
+    }
+
+    @Override
+    public int end() {
+      return ends[current];
+    }
+
+    @Override
+    public void release() {
+      reset(null, null, 0, 0);
+    }
+  }
+}
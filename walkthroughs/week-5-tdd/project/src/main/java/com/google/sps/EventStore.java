@@ -0,0 +1,59 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A calendar whose events can be added, removed and changed while it is being queried. Each event
+ * in the store has an ID that is given out when it is added and never used again.
+ */
+public interface EventStore {
+  /** Adds {@code event} to the calendar and returns its ID. */
+  long add(Event event);
+
+  /**
+   * Adds each of {@code events} to the calendar, in order, and returns their IDs. Stores that pay
+   * a fixed cost for every change can override this to pay it once for the whole batch.
+   */
+  default List<Long> addAll(Collection<Event> events) {
+    List<Long> eventIds = new ArrayList<>(events.size());
+    for (Event event : events) {
+      eventIds.add(add(event));
+    }
+    return eventIds;
+  }
+
+  /** Removes the event with the given ID. Returns false if there is no such event. */
+  boolean remove(long eventId);
+
+  /**
+   * Replaces the event with the given ID by {@code event}, keeping the ID. Returns false if there
+   * is no such event.
+   */
+  boolean update(long eventId, Event event);
+
+  /** Returns a copy of the events in the calendar, by ID. */
+  Map<Long, Event> getEventsById();
+
+  /**
+   * Returns an index of the events as they are now. The index never changes, so later changes to
+   * the store are not seen through it, and it can be used for as long as needed.
+   */
+  EventIndex snapshot();
+}
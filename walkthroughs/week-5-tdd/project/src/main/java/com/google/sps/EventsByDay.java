@@ -0,0 +1,30 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+
+/**
+ * A calendar that spans many days and hands out its events one day at a time, so that a search
+ * over a long stretch of time only ever needs to hold one day of events.
+ */
+public interface EventsByDay {
+  /**
+   * Returns the events on {@code day}, as counted by {@link EpochRange#dayOf}. The times of the
+   * events are in minutes since the start of that day. An event that runs past midnight is
+   * returned for every day it is on, cut at the ends of each day.
+   */
+  Collection<Event> eventsOn(long day);
+}
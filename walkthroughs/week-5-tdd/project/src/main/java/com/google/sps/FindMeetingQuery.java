@@ -12,353 +12,1108 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 package com.google.sps;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Set;
-import java.util.Queue;
-import java.util.LinkedList;
-import java.lang.Math;
-import java.io.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the times at which a {@code MeetingRequest} could take place.
+ *
+ * <p>Every required attendee must be free for the whole meeting. Among the times that work for
+ * them, the query picks the ones where the meeting could be attended by as many optional attendees
+ * as possible. A returned range means that a meeting starting anywhere in it, and ending by the end
+ * of it, would have that many optional attendees. If no optional attendee can make it at any time,
+ * the free time of the required attendees is returned.
+ *
+ * <p>A request can instead ask for a quorum of optional attendees. Then every time at which at
+ * least that many of them could come is returned, however many could come at other times.
+ *
+ * <p>How long a query takes depends only on how many events and busy intervals it has to look at,
+ * never on how they overlap. Without an index, a query over n events, where p is the number of
+ * pairs of an event and an optional attendee of the request, takes O(n + p log p) time and at
+ * most 2n + 2p steps of work. With an index, where r is the number of busy intervals of the
+ * required attendees and q that of the optional attendees, it takes O(r log a + q log k) time for
+ * a required and k optional attendees and at most r + 2q steps. The tests hold the engine to these
+ * step counts on calendars built to be hard. A query can also be given a deadline, which it checks
+ * every thousand or so steps; if the deadline passes, it returns the best it has found so far.
+ *
+ * <p>When a query has to go through many events, or many busy intervals of its required
+ * attendees, it finds their busy time on a {@code ForkJoinPool} instead: the input is split into
+ * parts, each part marks its own bitmap of busy minutes, and the bitmaps are combined with OR in a
+ * tree. The answer is the same as on one thread.
+ *
+ * <p>The engine itself holds no per-query state, so a single instance can be created once and
+ * shared by every thread that needs it. The working state of a query lives in a {@code
+ * QueryContext}, and each thread keeps one context that it reuses from one query to the next.
+ * Once the buffers of a context have grown to fit, a query on a list of events or an {@code
+ * EventSnapshot} creates no objects apart from the times it returns.
+ */
 public final class FindMeetingQuery {
-  private final int END_OF_DAY = 24 * 60; // Total number of minutes in a day
-  private PotentialAttendeeList[] possibleGroupsOfOptionalAttendees;
-  private Collection<TimeRange> optimalTimesForMeeting;
-  private MeetingRequest request;
-  private Collection<TimeRange> timesForRequiredGuests;
-  private Event[] eventsOrderedByStart;
-  private Event[] eventsOrderedByEnd;
-  private Collection<Event> events; 
-  private int startPointer; 
-  private int endPointer; 
-  private int nextMeetingEndTime;
-  private int nextMeetingStartTime;
-  private HashMap<String, Integer> numCurrentMeetings;
-  ArrayList<PotentialAttendeeList> potentialAttendeeLists;
-  
-  // a representation of a group of potential optional attendees to the meeting
-  // and the time at which they could come
-  private static class PotentialAttendeeList {
-    public int startTime;
-    public int endTime;
-    public Set<String> people;
-    public PotentialAttendeeList(int startTime, Set people) {
-      this.startTime = startTime;
-      this.people = new HashSet(people);
-      endTime = startTime;
-    }
-    public PotentialAttendeeList(PotentialAttendeeList other) {
-      this.startTime = other.startTime;
-      this.people = new HashSet(other.people);
-      endTime = other.endTime;
-    }
-    public void setEndTime(int endTime) {
-      this.endTime = endTime;
-    }
-    public int getDuration() {
-      return endTime - startTime;
-    }
-    public String toString() {
-      return "Size: " + people.size() + " Start: " + startTime + " End: " +
-        endTime;
-    }
+  /** The order in which {@link #topK} ranks the times that work for the required attendees. */
+  public enum Ranking {
+    /** Earlier times first, however many optional attendees could come. */
+    EARLIEST_START,
+    /** Times that more optional attendees could make first, and earlier times among those. */
+    MOST_OPTIONAL_ATTENDEES
+  }
+
+  /**
+   * How many events, or busy intervals of the required attendees, a query has to go through before
+   * it uses more than one thread, unless told otherwise.
+   */
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 50_000;
+
+  private final ForkJoinPool pool;
+  private final int parallelThreshold;
+
+  private final ThreadLocal<QueryContext> contexts =
+      new ThreadLocal<QueryContext>() {
+        @Override
+        protected QueryContext initialValue() {
+          return new QueryContext(pool, parallelThreshold);
+        }
+      };
+
+  /**
+   * Creates an engine that uses the common {@code ForkJoinPool} for queries above {@link
+   * #DEFAULT_PARALLEL_THRESHOLD}.
+   */
+  public FindMeetingQuery() {
+    this(ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
   }
 
-  // Checks if anyone who must be at the requested meeting is at the given event
-  private boolean isEventImportant(Event event) {
-    for (String person: request.getAttendees()) {
-      if (event.getAttendees().contains(person)) return true;
+  /**
+   * Creates an engine.
+   *
+   * @param pool The pool that finds the busy time of the required attendees of large queries.
+   * @param parallelThreshold How many events, or busy intervals of the required attendees, a query
+   *     has to go through before it uses {@code pool}. Must not be negative.
+   */
+  public FindMeetingQuery(ForkJoinPool pool, int parallelThreshold) {
+    if (pool == null) {
+      throw new IllegalArgumentException("pool cannot be null");
     }
-    return false;
+
+    if (parallelThreshold < 0) {
+      throw new IllegalArgumentException("parallelThreshold cannot be negative");
+    }
+
+    this.pool = pool;
+    this.parallelThreshold = parallelThreshold;
   }
 
-  // Method for creating time range collection when there are only optional attendees 
-  private void onlyOptionalAttendees() {
-    int champ = 0;
-    for (int i = 0; i < possibleGroupsOfOptionalAttendees.length; i++) {
-      if (possibleGroupsOfOptionalAttendees[i].people.size() < champ) break;
-      if (possibleGroupsOfOptionalAttendees[i].people.size() > champ) {
-        optimalTimesForMeeting.clear();
-        champ = possibleGroupsOfOptionalAttendees[i].people.size();
+  /**
+   * The scratch state for a single query. A context is only ever used by one thread at a time. Its
+   * buffers are kept between queries so that they can be reused, but nothing that belongs to the
+   * caller (the events, the request or the returned times) is held on to once a query finishes.
+   *
+   * <p>Attendees are handled by their {@code AttendeeRegistry} IDs. The required and optional
+   * attendees of the request are kept as bitsets over those IDs, and each optional attendee also
+   * gets a dense slot number so that its state can live in plain arrays.
+   */
+  private static final class QueryContext {
+    // Layout of a packed sweep boundary: the position (biased so that it is never negative) in
+    // the high 32 bits, then the optional slot, then one bit that is set for the start of a busy
+    // interval. Sorting the packed values sorts the boundaries by position.
+    private static final int POSITION_BIAS = 1 << 20;
+    private static final long START_BIT = 1L;
+    // How many steps of work go by between two looks at the clock. A power of two.
+    private static final int STEPS_PER_CHECK = 1024;
+
+    private final AttendeeRegistry registry = AttendeeRegistry.shared();
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private MeetingRequest request;
+    private final BusyBitmap requiredBusy = new BusyBitmap();
+    private final TimeRangeSet.Builder timesForRequiredGuests = new TimeRangeSet.Builder();
+
+    // The free time of the required attendees, walked one stretch at a time. With a cursor over
+    // their merged posting lists, only as much of the day is merged as is walked. Otherwise the
+    // stretches come from timesForRequiredGuests.
+    private IntervalCursor requiredBusyCursor;
+    private boolean hasRequiredBusy;
+    private int requiredFreeFrom;
+    private int requiredIndex;
+    private final EventIndex.MergingCursor requiredMerge = new EventIndex.MergingCursor();
+    private int gapStart;
+    private int gapEnd;
+    // The start times that leave room for the whole meeting in the current free stretch.
+    private boolean hasRequiredRun;
+    private int requiredRunStart;
+    private int requiredRunEnd;
+
+    // Bitsets over attendee IDs.
+    private long[] requiredIds = new long[0];
+    // The IDs set in requiredIds, as a list.
+    private int[] requiredAttendeeIds = new int[0];
+    private int numRequired;
+    private long[] optionalIds = new long[0];
+    private int idWords;
+    // Maps an attendee ID to its optional slot plus one, so that zero means "not optional".
+    private int[] optionalSlotOf = new int[0];
+    // Indexed by optional slot.
+    private int[] optionalAttendeeIds = new int[0];
+    private int[] numCurrentMeetings = new int[0];
+    private int numOptional;
+
+    // The sweep over the optional attendees' busy intervals.
+    private long[] boundaries = new long[0];
+    private int numBoundaries;
+    private int numBusyOptional;
+    private int bestNumFree;
+    // How many optional attendees a start time needs, or zero to keep the best start times.
+    private int quorum;
+
+    // The work done by the current query, and when it has to stop. Once stopped is set, every
+    // loop gives up and the query returns what it has found so far.
+    private long steps;
+    private boolean hasDeadline;
+    private long deadline;
+    private boolean stopped;
+    // Set once the rest of the sweep cannot change the answer.
+    private boolean sweepDone;
+    // The start times that the most optional attendees could make so far.
+    private final TimeRangeSet.Builder bestStartTimes = new TimeRangeSet.Builder();
+
+    // The merges over the posting lists of an index.
+    private final LongHeap mergeHeap = new LongHeap();
+    // Indexed by optional slot: the next interval of the list in order of start, and of end.
+    private IntervalCursor[] startCursors = new IntervalCursor[0];
+    private IntervalCursor[] endCursors = new IntervalCursor[0];
+
+    // The runs of start times kept by a top-k query, or null for a plain query. Each run has the
+    // same number of free optional attendees at every start time in it.
+    private Ranking ranking;
+    private int maxRuns;
+    private int[] runStarts = new int[0];
+    private int[] runEnds = new int[0];
+    private int numRuns;
+    // The best runs so far, worst on top, packed as (free optional attendees, -run index) so that
+    // a later run loses a tie.
+    private final LongHeap bestRuns = new LongHeap();
+    // The last run seen, which is only ranked once it is clear that the next one does not extend
+    // it.
+    private boolean hasPendingRun;
+    private int pendingStart;
+    private int pendingEnd;
+    private int pendingScore;
+
+    QueryContext(ForkJoinPool pool, int parallelThreshold) {
+      this.pool = pool;
+      this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Answers {@code request} against {@code events}. If {@code index} is not null, it must
+     * hold {@code events}, and only the posting lists of the attendees of the request are looked
+     * at instead of every event. If {@code tree} is not null, it must be up to date with {@code
+     * index}, and it is asked for the optional attendees instead of sweeping their lists.
+     */
+    Collection<TimeRange> run(
+        Collection<Event> events,
+        EventIndex index,
+        OptionalAttendanceTree tree,
+        MeetingRequest request) {
+      this.request = request;
+      steps = 0;
+      stopped = false;
+      prepareAttendees();
+      quorum = request.getMinOptionalAttendees();
+      if (quorum > numOptional) {
+        return new ArrayList<>();
+      }
+
+      findPotentialTimesForRequiredAttendees(events, index);
+      if (stopped) {
+        // Without all of the required attendees' events, no time is known to work.
+        return new ArrayList<>();
+      }
+      if (numOptional == 0 || timesForRequiredGuests.isEmpty()) {
+        return toTimeRanges(timesForRequiredGuests, 0);
+      }
+
+      if (tree != null) {
+        findTimesForOptionalAttendees(tree);
+      } else {
+        findTimesForOptionalAttendees(events, index);
+      }
+      // If no time works for any optional attendee, just use required guests. This is also the
+      // best answer if the query was stopped before it found any time for optional attendees.
+      if (quorum == 0 && bestNumFree <= 0) {
+        return toTimeRanges(timesForRequiredGuests, 0);
       }
-      optimalTimesForMeeting.add(TimeRange.fromStartEnd(
-        possibleGroupsOfOptionalAttendees[i].startTime,
-        possibleGroupsOfOptionalAttendees[i].endTime, false));
-      champ = possibleGroupsOfOptionalAttendees[i].people.size();
+
+      // Turn each run of start times into the range that the meetings starting in it would cover.
+      // These ranges may overlap when two runs are close together, because the start times in
+      // between are not as good, or because they are different runs that both meet the quorum.
+      return toTimeRanges(bestStartTimes, meetingLength() - 1);
     }
-  }
 
-  private boolean newPossibleAttendees(Collection<String> eventAttendees) {
-    for (String attendee: eventAttendees) {
-      if (numCurrentMeetings.containsKey(attendee) && numCurrentMeetings.get(attendee) != 0) {
-        numCurrentMeetings.put(attendee, numCurrentMeetings.get(attendee) - 1);
-        if (numCurrentMeetings.get(attendee) == 0) return true; 
+    /** Sweeps the busy time of {@code attendees} once, and indexes every free stretch left. */
+    FreeGapIndex runFreeGaps(EventIndex index, Collection<String> attendees) {
+      this.request = new MeetingRequest(attendees, 0);
+      steps = 0;
+      stopped = false;
+      prepareAttendees();
+      findPotentialTimesForRequiredAttendees(index.getEvents(), index);
+      return stopped ? FreeGapIndex.PARTIAL : new FreeGapIndex(timesForRequiredGuests);
+    }
+
+    // Creates the result of a query: the ranges of the builder, each made longer by extra minutes.
+    // This is the only place where a query creates objects.
+    private static List<TimeRange> toTimeRanges(TimeRangeSet.Builder ranges, int extra) {
+      List<TimeRange> result = new ArrayList<>(ranges.size());
+      for (int i = 0; i < ranges.size(); i++) {
+        result.add(TimeRange.fromStartEnd(ranges.start(i), ranges.end(i) + extra, false));
       }
+      return result;
     }
-    return false; 
-  }
 
-  private boolean oldMeetingEndBeforeNewStart() {
-      nextMeetingEndTime = eventsOrderedByEnd[endPointer].getWhen().end();
-      if (startPointer < eventsOrderedByStart.length) {
-        nextMeetingStartTime = eventsOrderedByStart[startPointer].getWhen()
-          .start();
+    /**
+     * Finds the first {@code maxSlots} stretches of {@code horizon} during which every required
+     * attendee is free for the whole meeting, reading the events one day at a time and no further
+     * than needed.
+     */
+    List<EpochRange> runHorizon(
+        EventsByDay events, MeetingRequest request, EpochRange horizon, int maxSlots) {
+      this.request = request;
+      steps = 0;
+      stopped = false;
+      int knownIds = registry.size();
+      prepareAttendees();
+
+      List<EpochRange> slots = new ArrayList<>();
+      // The free stretch that reaches the end of the days read so far, if there is one. It is only
+      // added once it ends, because the next day may make it longer.
+      boolean open = false;
+      long openStart = 0;
+      long openEnd = 0;
+      for (long day = EpochRange.dayOf(horizon.start());
+          slots.size() < maxSlots && EpochRange.startOfDay(day) < horizon.end();
+          day++) {
+        long dayStart = EpochRange.startOfDay(day);
+        requiredBusy.clear();
+        for (Event event : events.eventsOn(day)) {
+          // The days are read as the search goes, and their events may bring in names that were
+          // never seen before, including required attendees who are free until then.
+          if (registry.size() != knownIds) {
+            knownIds = addNewRequiredIds();
+          }
+          if (isEventImportant(event)) {
+            requiredBusy.markBusy(event.getWhen());
+          }
+        }
+
+        int from = (int) Math.max(0, horizon.start() - dayStart);
+        int to = (int) Math.min(EpochRange.MINUTES_PER_DAY, horizon.end() - dayStart);
+        TimeRangeSet freeTime = requiredBusy.freeTime().intersect(TimeRangeSet.of(from, to));
+        for (int i = 0; i < freeTime.size() && slots.size() < maxSlots; i++) {
+          long start = dayStart + freeTime.start(i);
+          if (open && openEnd == start) {
+            openEnd = dayStart + freeTime.end(i);
+            continue;
+          }
+          if (open) {
+            addSlot(slots, openStart, openEnd);
+          }
+          open = true;
+          openStart = start;
+          openEnd = dayStart + freeTime.end(i);
+        }
+        if (open && openEnd < dayStart + EpochRange.MINUTES_PER_DAY && slots.size() < maxSlots) {
+          // The stretch ends before midnight, so the next day cannot make it longer.
+          addSlot(slots, openStart, openEnd);
+          open = false;
+        }
       }
-      return startPointer == eventsOrderedByStart.length || 
-        nextMeetingEndTime <= nextMeetingStartTime;
-  }
+      if (open && slots.size() < maxSlots) {
+        addSlot(slots, openStart, openEnd);
+      }
+      return slots;
+    }
 
-  private HashSet<String> addAllFreeAttendees() {
-    HashSet<String> availablePeople = new HashSet<>();   
-    for (String attendee: request.getOptionalAttendees()) {
-      if (numCurrentMeetings.get(attendee) == 0) availablePeople.add(
-        attendee);
+    private void addSlot(List<EpochRange> slots, long start, long end) {
+      if (end - start >= request.getDuration()) {
+        slots.add(EpochRange.fromStartEnd(start, end));
+      }
     }
-    return availablePeople; 
-  }
 
-  private Set<String> updateNumCurrentMeetings() {
-    Set<String> importantAttendees = new HashSet<>();
-    for (String attendee: eventsOrderedByStart[startPointer]
-      .getAttendees()) {
-      if (request.getOptionalAttendees().contains(attendee)) {
-        importantAttendees.add(attendee);
-        numCurrentMeetings.put(attendee, numCurrentMeetings.get(attendee) +
-            1);
+    /**
+     * Finds the {@code k} best runs of start times for {@code request} under {@code ranking},
+     * stopping as soon as no later time could be ranked above the ones already found.
+     */
+    List<TimeRange> runTopK(
+        Collection<Event> events,
+        EventIndex index,
+        MeetingRequest request,
+        int k,
+        Ranking ranking) {
+      this.request = request;
+      steps = 0;
+      stopped = false;
+      prepareAttendees();
+      quorum = request.getMinOptionalAttendees();
+      List<TimeRange> slots = new ArrayList<>();
+      if (k <= 0 || quorum > numOptional) {
+        return slots;
+      }
+
+      if (index != null) {
+        // Only merge the required attendees' lists as far as the answer needs.
+        requiredBusyCursor = requiredMerge.reset(index, requiredAttendeeIds, numRequired);
+        hasRequiredBusy = requiredBusyCursor.next();
+        requiredFreeFrom = 0;
+      } else {
+        findPotentialTimesForRequiredAttendees(events, null);
+        requiredIndex = 0;
+      }
+
+      if (ranking == Ranking.EARLIEST_START && quorum == 0) {
+        while (slots.size() < k && nextRequiredGap()) {
+          slots.add(TimeRange.fromStartEnd(gapStart, gapEnd, false));
+        }
+        return slots;
+      }
+
+      this.ranking = ranking;
+      maxRuns = k;
+      numRuns = 0;
+      bestRuns.clear();
+      hasPendingRun = false;
+      sweepOptionalAttendees(events, index);
+      if (hasPendingRun) {
+        rankRun(pendingStart, pendingEnd, pendingScore);
+      }
+
+      // The heap gives the runs worst first.
+      int duration = meetingLength();
+      TimeRange[] ranked = new TimeRange[bestRuns.size()];
+      for (int i = ranked.length - 1; i >= 0; i--) {
+        int run = Integer.MAX_VALUE - (int) bestRuns.poll();
+        ranked[i] = TimeRange.fromStartEnd(runStarts[run], runEnds[run] - 1 + duration, false);
+      }
+      slots.addAll(Arrays.asList(ranked));
+      return slots;
+    }
+
+    /**
+     * Makes the next query stop once {@code timeoutNanos} have passed or its thread is interrupted.
+     * A timeout too long to ever pass is the same as none.
+     */
+    void setDeadline(long timeoutNanos) {
+      hasDeadline = timeoutNanos < Long.MAX_VALUE / 2;
+      deadline = System.nanoTime() + Math.max(0, timeoutNanos);
+    }
+
+    // Counts a step of work: one event, busy interval or sweep boundary. Every STEPS_PER_CHECK
+    // steps, the query is stopped if its deadline has passed or its thread was interrupted.
+    private void step() {
+      if ((++steps & (STEPS_PER_CHECK - 1)) == 0
+          && hasDeadline
+          && (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted())) {
+        stopped = true;
       }
     }
-    return importantAttendees; 
-  }
 
-  private void addPotentialGroupsToArrayList(Set<PotentialAttendeeList> groups, 
-    ArrayList<PotentialAttendeeList> groupsToRemove, Set<String> importantAttendees) {
-    for (PotentialAttendeeList possibleGroup: groups) {
-        possibleGroup.setEndTime(nextMeetingStartTime);
-        PotentialAttendeeList pastVersion = new PotentialAttendeeList(
-          possibleGroup);
-        pastVersion.setEndTime(nextMeetingStartTime);
-        for (String attendee: importantAttendees) {
-          if (possibleGroup.people.contains(attendee)) possibleGroup.people
-            .remove(attendee);
+    /** Drops every reference to the caller's data so that the context can be reused. */
+    void release() {
+      hasDeadline = false;
+      request = null;
+      timesForRequiredGuests.clear();
+      requiredBusyCursor = null;
+      requiredMerge.release();
+      ranking = null;
+      quorum = 0;
+      bestRuns.clear();
+      Arrays.fill(requiredIds, 0, idWords, 0L);
+      Arrays.fill(optionalIds, 0, idWords, 0L);
+      for (int slot = 0; slot < numOptional; slot++) {
+        if (optionalAttendeeIds[slot] >= 0) {
+          optionalSlotOf[optionalAttendeeIds[slot]] = 0;
         }
-        if (pastVersion.people.size() > possibleGroup.people.size() &&
-          pastVersion.getDuration() >= request.getDuration()) {
-          potentialAttendeeLists.add(pastVersion);
+        if (slot < startCursors.length && startCursors[slot] != null) {
+          startCursors[slot].release();
+          endCursors[slot].release();
         }
-        if (possibleGroup.people.size() == 0) {
-          groupsToRemove.add(possibleGroup);
+      }
+      numOptional = 0;
+      numBoundaries = 0;
+      bestStartTimes.clear();
+    }
+
+    // Turns the names in the request into bitsets and slots. Names that have never been
+    // registered cannot be at any event, so they only need an optional slot.
+    private void prepareAttendees() {
+      int numIds = registry.size();
+      idWords = words(numIds);
+      if (requiredIds.length < idWords) {
+        requiredIds = new long[idWords];
+        optionalIds = new long[idWords];
+      }
+      if (optionalSlotOf.length < numIds) {
+        optionalSlotOf = new int[numIds];
+      }
+      if (requiredAttendeeIds.length < request.getAttendees().size()) {
+        requiredAttendeeIds = new int[request.getAttendees().size()];
+      }
+      numRequired = 0;
+      for (String person : request.getAttendees()) {
+        int id = registry.lookup(person);
+        if (id >= 0 && id < numIds && !isSet(requiredIds, id)) {
+          set(requiredIds, id);
+          requiredAttendeeIds[numRequired++] = id;
         }
       }
-  }
 
-  // Creates Potential Attendee Lists to find times with most optional
-  // guests. 
-  private void findPotentialGroupsOfOptionalAttendees() {
-    startPointer = 0;
-    endPointer = 0;
-    nextMeetingEndTime = 0;
-    nextMeetingStartTime = 0;
-    Set<PotentialAttendeeList> groups = new HashSet<>();
-    numCurrentMeetings = new HashMap<String, Integer>();
-    for (String person: request.getOptionalAttendees()) {
-      numCurrentMeetings.put(person, 0);
-    }
-    ArrayList<PotentialAttendeeList> groupsToRemove = new ArrayList<>();
-    groups.add(new PotentialAttendeeList(0, new HashSet(request
-      .getOptionalAttendees())));
-    while (endPointer < eventsOrderedByEnd.length) {
-      if (oldMeetingEndBeforeNewStart()) {
-        if (newPossibleAttendees(eventsOrderedByEnd[endPointer].getAttendees())) {
-          Set<String> availablePeople = addAllFreeAttendees();
-          PotentialAttendeeList newGroup = new PotentialAttendeeList(
-            nextMeetingEndTime, availablePeople);
-          groups.add(newGroup);
-        }
-        endPointer++;
-        continue;
-      }
-      addPotentialGroupsToArrayList(groups, groupsToRemove, updateNumCurrentMeetings()); 
-      groups.removeAll(groupsToRemove);
-      groupsToRemove.clear(); 
-      startPointer++;
-    }
-    if (!groups.isEmpty()) {
-      for (PotentialAttendeeList possibleGroup: groups) {
-        possibleGroup.setEndTime(END_OF_DAY);
-        if (possibleGroup.getDuration() > request.getDuration()) {
-          potentialAttendeeLists.add(possibleGroup);
+      int maxOptional = request.getOptionalAttendees().size();
+      if (optionalAttendeeIds.length < maxOptional) {
+        optionalAttendeeIds = new int[maxOptional];
+        numCurrentMeetings = new int[maxOptional];
+      }
+      for (String person : request.getOptionalAttendees()) {
+        int id = registry.lookup(person);
+        if (id >= numIds) {
+          id = -1;
         }
+        if (id >= 0) {
+          if (optionalSlotOf[id] != 0) {
+            continue;
+          }
+          optionalSlotOf[id] = numOptional + 1;
+          set(optionalIds, id);
+        }
+        optionalAttendeeIds[numOptional++] = id;
       }
     }
-  }
 
-  // Method for creating time range collection when there are a mix of attendees 
-  private void mixOfAttendees() {
-    int champ = 0;
-    // For every time range
-    for (TimeRange time: timesForRequiredGuests) {
-      for (int i = 0; i < possibleGroupsOfOptionalAttendees.length; i++) {
-        if (possibleGroupsOfOptionalAttendees[i].people.size() < champ) break;
-        TimeRange groupTimeRange = TimeRange.fromStartEnd(
-          possibleGroupsOfOptionalAttendees[i].startTime,
-          possibleGroupsOfOptionalAttendees[i].endTime, false);
-        if (groupTimeRange.overlaps(time)) {
-          int startPoint = Math.max(possibleGroupsOfOptionalAttendees[i]
-            .startTime, time.start());
-          int endPoint = Math.min(possibleGroupsOfOptionalAttendees[i]
-            .endTime, time.end());
-          if (endPoint - startPoint >= request.getDuration()) {
-            champ = possibleGroupsOfOptionalAttendees[i].people.size();
-            optimalTimesForMeeting.add(TimeRange.fromStartEnd(startPoint,
-              endPoint, false));
+    // Adds the required attendees who were registered since the attendees were prepared, and
+    // returns the number of IDs that this covers.
+    private int addNewRequiredIds() {
+      int numIds = registry.size();
+      int newWords = words(numIds);
+      if (newWords > idWords) {
+        if (requiredIds.length < newWords) {
+          requiredIds = Arrays.copyOf(requiredIds, newWords);
+          optionalIds = Arrays.copyOf(optionalIds, newWords);
+        }
+        idWords = newWords;
+      }
+      for (String person : request.getAttendees()) {
+        int id = registry.lookup(person);
+        if (id >= 0 && id < numIds && !isSet(requiredIds, id)) {
+          set(requiredIds, id);
+          requiredAttendeeIds[numRequired++] = id;
+        }
+      }
+      return numIds;
+    }
+
+    // The meeting length used to turn busy intervals into blocked start times. A meeting of zero
+    // minutes is treated like a one minute meeting, so that it cannot start while someone is busy.
+    private int meetingLength() {
+      return (int) Math.max(1, Math.min(request.getDuration(), BusyBitmap.MINUTES_PER_DAY + 1));
+    }
+
+    // Returns the optional slot of the attendee, or -1 if the attendee is not optional.
+    private int optionalSlot(int id) {
+      return isSet(optionalIds, id) ? optionalSlotOf[id] - 1 : -1;
+    }
+
+    // Checks if anyone who must be at the requested meeting is at the given event
+    private boolean isEventImportant(Event event) {
+      for (int id : event.getAttendeeIds()) {
+        if (isSet(requiredIds, id)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // Finds the free time of the required attendees. With an index, their posting lists are
+    // merged into their busy time. Otherwise their busy minutes are marked in a bitmap, which is
+    // then scanned for runs of free minutes. Above the threshold, the bitmap is marked in parallel
+    // either way.
+    private void findPotentialTimesForRequiredAttendees(
+        Collection<Event> events, EventIndex index) {
+      long minDuration = request.getDuration();
+      timesForRequiredGuests.clear();
+      ParallelBusyTime parallel = parallelBusyTime(events, index);
+      if (parallel != null) {
+        BusyBitmap busy = parallel.invokeOn(pool);
+        steps += parallel.steps();
+        if (busy == null || (hasDeadline && Thread.currentThread().isInterrupted())) {
+          stopped = true;
+          return;
+        }
+        busy.addFreeTime(minDuration, timesForRequiredGuests);
+      } else if (index != null) {
+        // The busy intervals come in order of start, so each gap between them is final as soon
+        // as the next interval starts after it.
+        IntervalCursor busy = requiredMerge.reset(index, requiredAttendeeIds, numRequired);
+        int freeFrom = 0;
+        while (!stopped && busy.next()) {
+          step();
+          addFreeTime(freeFrom, Math.min(busy.start(), BusyBitmap.MINUTES_PER_DAY), minDuration);
+          freeFrom = Math.max(freeFrom, busy.end());
+        }
+        addFreeTime(freeFrom, BusyBitmap.MINUTES_PER_DAY, minDuration);
+      } else {
+        requiredBusy.clear();
+        for (Event event : events) {
+          step();
+          if (stopped) {
+            break;
+          }
+          if (isEventImportant(event)) {
+            requiredBusy.markBusy(event.getWhen());
           }
         }
+        requiredBusy.addFreeTime(minDuration, timesForRequiredGuests);
+      }
+    }
+
+    private void addFreeTime(int start, int end, long minDuration) {
+      if (end > start && end - start >= minDuration) {
+        timesForRequiredGuests.add(start, end);
+      }
+    }
+
+    // Returns the task that finds the busy time of the required attendees in parallel, or null if
+    // the query is too small to be worth it.
+    private ParallelBusyTime parallelBusyTime(Collection<Event> events, EventIndex index) {
+      int parts = 4 * pool.getParallelism();
+      if (index != null) {
+        long numIntervals = 0;
+        for (int i = 0; i < numRequired; i++) {
+          numIntervals += index.numIntervals(requiredAttendeeIds[i]);
+        }
+        if (numIntervals <= parallelThreshold || numRequired < 2) {
+          return null;
+        }
+        return ParallelBusyTime.ofAttendees(
+            index,
+            requiredAttendeeIds,
+            numRequired,
+            Math.max(1, numRequired / parts),
+            hasDeadline,
+            deadline);
+      }
+      if (events.size() <= parallelThreshold || numRequired == 0) {
+        return null;
+      }
+      Event[] eventArray = events.toArray(new Event[0]);
+      return ParallelBusyTime.ofEvents(
+          eventArray,
+          requiredIds,
+          Math.max(1, eventArray.length / parts),
+          hasDeadline,
+          deadline);
+    }
+
+    /**
+     * Finds the meeting start times that the most optional attendees could make, or with a quorum
+     * every start time that enough of them could make, among the start times that work for every
+     * required attendee.
+     *
+     * <p>A busy interval {@code [a, b)} stops its attendee from coming to any meeting that starts
+     * in {@code [a - duration + 1, b)}. The sweep visits the boundaries of those blocked intervals
+     * in order, keeping a count of how many times each optional attendee is blocked and of how many
+     * optional attendees are blocked at all. Between two boundaries the number of optional
+     * attendees who could come is constant, so each stretch between boundaries is a run of start
+     * times that is either as good as the best seen so far, better, or worse, and that either
+     * meets the quorum or does not.
+     *
+     * <p>Every blocked interval is shifted from its busy interval by the same amount, so the
+     * posting lists of an index, which are already ordered by start and by end, give the
+     * boundaries of each optional attendee in order. A k-way merge of those lists takes O(n log k)
+     * time for n busy intervals of k optional attendees. Without an index the boundaries are
+     * collected from every event and sorted instead. Neither ever copies a set of attendees.
+     */
+    private void findTimesForOptionalAttendees(Collection<Event> events, EventIndex index) {
+      requiredIndex = 0;
+      bestNumFree = -1;
+      bestStartTimes.clear();
+      sweepOptionalAttendees(events, index);
+    }
+
+    // Finds the same start times as the sweep, from a tree that already knows how many optional
+    // attendees are free at every start time.
+    private void findTimesForOptionalAttendees(OptionalAttendanceTree tree) {
+      TimeRangeSet startTimes = timesForRequiredGuests.build().startTimes(meetingLength());
+      bestStartTimes.clear();
+      if (quorum > 0) {
+        tree.collectStartTimes(startTimes, quorum, Integer.MAX_VALUE, bestStartTimes);
+        return;
+      }
+      bestNumFree = tree.maxFree(startTimes);
+      if (bestNumFree > 0) {
+        tree.collectStartTimes(startTimes, bestNumFree, bestNumFree, bestStartTimes);
       }
     }
-  }
 
-  // Method for removing the overlapping times from our returned suggested times 
-  private void removeOverlaps() {
-    ArrayList<TimeRange> duplicatesToRemove = new ArrayList<>();
-    for (TimeRange time: optimalTimesForMeeting) {
-      for (TimeRange otherTime: optimalTimesForMeeting) {
-        if (time == otherTime) continue;
-        if (time.contains(otherTime)) {
-          duplicatesToRemove.add(otherTime);
+    // Sweeps the blocked intervals of the optional attendees against the free time of the
+    // required attendees, which must be ready to walk from the start of the day.
+    private void sweepOptionalAttendees(Collection<Event> events, EventIndex index) {
+      int duration = meetingLength();
+      Arrays.fill(numCurrentMeetings, 0, numOptional, 0);
+      numBusyOptional = 0;
+      sweepDone = false;
+      hasRequiredRun = nextRequiredRun();
+
+      if (index != null) {
+        sweepIndex(index, duration);
+      } else {
+        sweepEvents(events, duration);
+      }
+    }
+
+    // Moves to the next free stretch of the required attendees that is long enough for the
+    // meeting. Returns false if there are no more.
+    private boolean nextRequiredGap() {
+      if (requiredBusyCursor == null) {
+        if (requiredIndex == timesForRequiredGuests.size()) {
+          return false;
+        }
+        gapStart = timesForRequiredGuests.start(requiredIndex);
+        gapEnd = timesForRequiredGuests.end(requiredIndex);
+        requiredIndex++;
+        return true;
+      }
+
+      while (requiredFreeFrom < BusyBitmap.MINUTES_PER_DAY) {
+        // Skip the busy intervals that start before the free time does.
+        while (hasRequiredBusy && requiredBusyCursor.start() <= requiredFreeFrom) {
+          requiredFreeFrom = Math.max(requiredFreeFrom, requiredBusyCursor.end());
+          hasRequiredBusy = requiredBusyCursor.next();
+        }
+        int start = requiredFreeFrom;
+        int end = hasRequiredBusy ? requiredBusyCursor.start() : BusyBitmap.MINUTES_PER_DAY;
+        requiredFreeFrom = end;
+        if (end > start && end - start >= request.getDuration()) {
+          gapStart = start;
+          gapEnd = end;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // Moves to the start times of the next free stretch of the required attendees.
+    private boolean nextRequiredRun() {
+      if (!nextRequiredGap()) {
+        return false;
+      }
+      requiredRunStart = gapStart;
+      requiredRunEnd = gapEnd - meetingLength() + 1;
+      return true;
+    }
+
+    // Sweeps the blocked intervals of events that come in no particular order.
+    private void sweepEvents(Collection<Event> events, int duration) {
+      collectOptionalBoundaries(events, duration);
+      if (stopped) {
+        return;
+      }
+      Arrays.sort(boundaries, 0, numBoundaries);
+
+      int segmentStart = 0;
+      int i = 0;
+      while (i < numBoundaries && !sweepDone && !stopped) {
+        int position = positionOf(boundaries[i]);
+        if (position > segmentStart) {
+          considerStartTimes(segmentStart, position);
+          segmentStart = position;
+        }
+        // Apply every boundary at this position before looking at the next stretch.
+        for (; i < numBoundaries && positionOf(boundaries[i]) == position; i++) {
+          step();
+          applyBoundary((int) boundaries[i] >>> 1, (boundaries[i] & START_BIT) != 0);
+        }
+      }
+      if (!stopped) {
+        considerStartTimes(segmentStart, BusyBitmap.MINUTES_PER_DAY);
+      }
+    }
+
+    // Sweeps the blocked intervals by merging the posting lists of the optional attendees. The
+    // heap holds the next start and the next end of every list, as packed boundaries.
+    private void sweepIndex(EventIndex index, int duration) {
+      if (startCursors.length < numOptional) {
+        startCursors = new IntervalCursor[numOptional];
+        endCursors = new IntervalCursor[numOptional];
+      }
+      mergeHeap.clear();
+      for (int slot = 0; slot < numOptional; slot++) {
+        int id = optionalAttendeeIds[slot];
+        startCursors[slot] = index.byStart(id, startCursors[slot]);
+        endCursors[slot] = index.byEnd(id, endCursors[slot]);
+        if (startCursors[slot].next() && endCursors[slot].next()) {
+          mergeHeap.add(pack(startCursors[slot].start() - duration + 1, slot, true));
+          mergeHeap.add(pack(endCursors[slot].end(), slot, false));
+        }
+      }
+
+      int segmentStart = 0;
+      while (!mergeHeap.isEmpty() && !sweepDone && !stopped) {
+        int position = positionOf(mergeHeap.peek());
+        if (position > segmentStart) {
+          considerStartTimes(segmentStart, position);
+          segmentStart = position;
         }
+        // Apply every boundary at this position before looking at the next stretch.
+        while (!mergeHeap.isEmpty() && positionOf(mergeHeap.peek()) == position) {
+          step();
+          long boundary = mergeHeap.poll();
+          int slot = (int) boundary >>> 1;
+          if ((boundary & START_BIT) != 0) {
+            applyBoundary(slot, true);
+            if (startCursors[slot].next()) {
+              mergeHeap.add(pack(startCursors[slot].start() - duration + 1, slot, true));
+            }
+          } else {
+            applyBoundary(slot, false);
+            if (endCursors[slot].next()) {
+              mergeHeap.add(pack(endCursors[slot].end(), slot, false));
+            }
+          }
+        }
+      }
+      if (!stopped) {
+        considerStartTimes(segmentStart, BusyBitmap.MINUTES_PER_DAY);
+      }
+    }
+
+    private void applyBoundary(int slot, boolean start) {
+      if (start) {
+        if (numCurrentMeetings[slot]++ == 0) {
+          numBusyOptional++;
+        }
+      } else if (--numCurrentMeetings[slot] == 0) {
+        numBusyOptional--;
       }
     }
-    optimalTimesForMeeting.removeAll(duplicatesToRemove);
+
+    // Adds a blocked interval for every optional attendee at every event.
+    private void collectOptionalBoundaries(Collection<Event> events, int duration) {
+      numBoundaries = 0;
+      for (Event event : events) {
+        step();
+        if (stopped) {
+          return;
+        }
+        TimeRange when = event.getWhen();
+        if (when.duration() <= 0) {
+          continue;
+        }
+        for (int id : event.getAttendeeIds()) {
+          int slot = optionalSlot(id);
+          if (slot < 0) {
+            continue;
+          }
+          if (numBoundaries + 2 > boundaries.length) {
+            boundaries = Arrays.copyOf(boundaries, Math.max(16, boundaries.length * 2));
+          }
+          boundaries[numBoundaries++] = pack(when.start() - duration + 1, slot, true);
+          boundaries[numBoundaries++] = pack(when.end(), slot, false);
+        }
+      }
+    }
+
+    // Looks at the meeting start times in [from, to), during which the same number of optional
+    // attendees are blocked, and keeps the ones that also work for the required attendees.
+    private void considerStartTimes(int from, int to) {
+      int numFree = numOptional - numBusyOptional;
+      if (numFree < quorum) {
+        return;
+      }
+      if (ranking != null ? !couldRank(score(numFree)) : quorum == 0 && numFree < bestNumFree) {
+        return;
+      }
+      while (hasRequiredRun && !sweepDone) {
+        if (requiredRunEnd <= from) {
+          hasRequiredRun = nextRequiredRun();
+          continue;
+        }
+        if (requiredRunStart >= to) {
+          return;
+        }
+        keepStartTimes(Math.max(from, requiredRunStart), Math.min(to, requiredRunEnd), numFree);
+        // The rest of this run of start times may also be in the next stretch.
+        if (requiredRunEnd > to) {
+          return;
+        }
+        hasRequiredRun = nextRequiredRun();
+      }
+      // No start time is left that works for the required attendees.
+      sweepDone = true;
+    }
+
+    private void keepStartTimes(int from, int to, int numFree) {
+      if (ranking == null) {
+        if (quorum == 0 && numFree > bestNumFree) {
+          bestNumFree = numFree;
+          bestStartTimes.clear();
+        }
+        bestStartTimes.add(from, to);
+        return;
+      }
+
+      int score = score(numFree);
+      if (hasPendingRun && pendingEnd == from && pendingScore == score) {
+        pendingEnd = to;
+        return;
+      }
+      if (hasPendingRun) {
+        rankRun(pendingStart, pendingEnd, pendingScore);
+      }
+      hasPendingRun = true;
+      pendingStart = from;
+      pendingEnd = to;
+      pendingScore = score;
+    }
+
+    // What a top-k query ranks a run by, where larger is better. Earlier runs win ties.
+    private int score(int numFree) {
+      return ranking == Ranking.EARLIEST_START ? 0 : numFree;
+    }
+
+    // Returns false if a run with this score would not be kept.
+    private boolean couldRank(int score) {
+      return bestRuns.size() < maxRuns || score > (int) (bestRuns.peek() >> 32);
+    }
+
+    // Keeps a finished run if it is among the best maxRuns runs so far. Runs come in order of
+    // start, so once maxRuns runs with the best possible score are kept, no later run can beat
+    // them and the sweep is done.
+    private void rankRun(int start, int end, int score) {
+      if (!couldRank(score)) {
+        return;
+      }
+      if (bestRuns.size() == maxRuns) {
+        bestRuns.poll();
+      }
+      if (numRuns == runStarts.length) {
+        int capacity = Math.max(16, numRuns * 2);
+        runStarts = Arrays.copyOf(runStarts, capacity);
+        runEnds = Arrays.copyOf(runEnds, capacity);
+      }
+      runStarts[numRuns] = start;
+      runEnds[numRuns] = end;
+      bestRuns.add(((long) score << 32) | (Integer.MAX_VALUE - numRuns));
+      numRuns++;
+      if (bestRuns.size() == maxRuns && (int) (bestRuns.peek() >> 32) == score(numOptional)) {
+        sweepDone = true;
+      }
+    }
+
+    private static long pack(int position, int slot, boolean start) {
+      return ((long) (position + POSITION_BIAS) << 32) | ((long) slot << 1) | (start ? 1 : 0);
+    }
+
+    private static int positionOf(long boundary) {
+      return (int) (boundary >>> 32) - POSITION_BIAS;
+    }
+  }
+
+  private static int words(int bits) {
+    return (bits + 63) >>> 6;
+  }
+
+  private static void set(long[] bits, int index) {
+    bits[index >>> 6] |= 1L << index;
   }
-  private void findPotentialTimesForRequiredAttendees() {
-    int windowStart = 0;
-    int windowClose = 0;
-    startPointer = 0;
-    endPointer = 0;
-    nextMeetingEndTime = 0;
-    nextMeetingStartTime = 0;
-    // problemEvents keeps track of the events which have relevant guests
-    Set<Event> problemEvents = new HashSet<>(); 
-    while (endPointer < eventsOrderedByEnd.length) {
-      if (oldMeetingEndBeforeNewStart()) {
-        if (problemEvents.contains(eventsOrderedByEnd[endPointer])) {
-          windowStart = nextMeetingEndTime;
-          problemEvents.remove(eventsOrderedByEnd[endPointer]);
-        }
-        endPointer++;
-        continue;
-      }
-      if (isEventImportant(eventsOrderedByStart[startPointer])) {
-        windowClose = nextMeetingStartTime;
-        if (isEventImportant(eventsOrderedByStart[startPointer]) && 
-          problemEvents.isEmpty() && 
-          (nextMeetingStartTime - windowStart) >= request.getDuration()) {
-          timesForRequiredGuests.add(TimeRange.fromStartEnd(windowStart,
-            windowClose, false));
-        }
-        problemEvents.add(eventsOrderedByStart[startPointer]);
-      }
-      startPointer++;
-    }
-    if (windowStart < END_OF_DAY && (END_OF_DAY - windowStart) >= request
-      .getDuration()) {
-      timesForRequiredGuests.add(TimeRange.fromStartEnd(windowStart,
-        END_OF_DAY, false));
+
+  // Indexes past the end of the bitset count as unset, which covers attendees that were
+  // registered after the bitset was sized.
+  private static boolean isSet(long[] bits, int index) {
+    int word = index >>> 6;
+    return word < bits.length && (bits[word] & (1L << index)) != 0;
+  }
+
+  /**
+   * Returns the times at which {@code request} could take place given the existing {@code
+   * events}. This method is safe to call from several threads at once.
+   */
+  public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
+    QueryContext context = contexts.get();
+    try {
+      return context.run(events, null, null, request);
+    } finally {
+      context.release();
     }
   }
 
-  // While using request.getAttendees().isEmpty() to find if there were any 
-  // required attendees worked for the tests, it caused problems when used on 
-  // the development server, so I made this method to compensate. 
-  private boolean noRequiredAttendees() {
-    boolean noRequiredAttendees = false;
-    for (String person: request.getAttendees()) {
-      if (person.equals(null) || person.equals("")) noRequiredAttendees =
-        true;
-      break;
-    }
-    return noRequiredAttendees;
+  /**
+   * Returns the times at which {@code request} could take place given the events in {@code
+   * index}. Only the posting lists of the attendees of the request are looked at, so callers that
+   * query the same events many times should index them once and use this method.
+   */
+  public Collection<TimeRange> query(EventIndex index, MeetingRequest request) {
+    QueryContext context = contexts.get();
+    try {
+      return context.run(index.getEvents(), index, null, request);
+    } finally {
+      context.release();
+    }
   }
 
-  /** A comparator for sorting events by their start time in ascending order. */
-  private static final Comparator<Event> ORDER_EVENT_BY_START =
-    new Comparator<Event> () {
-      @Override
-      public int compare(Event a, Event b) {
-        return Long.compare(a.getWhen().start(), b.getWhen().start());
-      }
-    };
-
-  /** A comparator for sorting events by their end time in ascending order. */
-  private static final Comparator<Event> ORDER_EVENT_BY_END =
-    new Comparator<Event> () {
-      @Override
-      public int compare(Event a, Event b) {
-        return Long.compare(a.getWhen().end(), b.getWhen().end());
-      }
-    };
-
-  /** A comparator for sorting potential attendee lists by their size (largest first). */
-  private static final Comparator<PotentialAttendeeList> ORDER_BY_SIZE =
-    new Comparator<PotentialAttendeeList> () {
-      @Override
-      public int compare(PotentialAttendeeList a, PotentialAttendeeList b) {
-        return -Integer.compare(a.people.size(), b.people.size());
-      }
-    };
-
-  public Collection<TimeRange> query(Collection<Event> events,
-    MeetingRequest request) {
-    
-    this.request = request;
-    this.events = events; 
-    timesForRequiredGuests = new ArrayList<TimeRange>();
-    
-    Object[] objectArray = events.toArray();
-    eventsOrderedByStart = new Event[objectArray.length];
-    eventsOrderedByEnd = new Event[objectArray.length];
-    for (int i = 0; i < objectArray.length; i++) {
-      eventsOrderedByStart[i] = (Event) objectArray[i];
-      eventsOrderedByEnd[i] = (Event) objectArray[i];
-    }
-    Arrays.sort(eventsOrderedByStart,
-      ORDER_EVENT_BY_START); // Events ordered by start time
-    Arrays.sort(eventsOrderedByEnd,
-      ORDER_EVENT_BY_END); // Events ordered by end time
-    
-    findPotentialTimesForRequiredAttendees();
-    possibleGroupsOfOptionalAttendees = findPotentialOptionalAttendees();
-    optimalTimesForMeeting = new ArrayList<>();
-    if ((this.noRequiredAttendees() || request.getAttendees()
-      .isEmpty()) && !request.getOptionalAttendees().isEmpty()) { 
-      onlyOptionalAttendees();
-    } else {
-      mixOfAttendees();
-    }
-    // If no time works when considering optional attendees, just use required guests
-    if (optimalTimesForMeeting.isEmpty()) optimalTimesForMeeting =
-      timesForRequiredGuests;
-    removeOverlaps();
-    // return optimal times; 
-    return optimalTimesForMeeting;
+  /**
+   * Like {@link #query(Collection, MeetingRequest)}, but stops after about {@code timeout} or
+   * once the calling thread is interrupted, and then returns the best answer found so far marked
+   * as partial.
+   */
+  public QueryResult query(
+      Collection<Event> events, MeetingRequest request, long timeout, TimeUnit unit) {
+    QueryContext context = contexts.get();
+    context.setDeadline(unit.toNanos(timeout));
+    try {
+      Collection<TimeRange> times = context.run(events, null, null, request);
+      return new QueryResult(times, context.stopped);
+    } finally {
+      context.release();
+    }
   }
-  private PotentialAttendeeList[] findPotentialOptionalAttendees() {
-    potentialAttendeeLists = new ArrayList<>();
-    
-    findPotentialGroupsOfOptionalAttendees();
-    
-    Object[] resultObjectArray = potentialAttendeeLists.toArray();
-    PotentialAttendeeList[] result = new PotentialAttendeeList[
-      resultObjectArray.length];
-    for (int i = 0; i < resultObjectArray.length; i++) {
-      result[i] = (PotentialAttendeeList) resultObjectArray[i];
-    }
-    Arrays.sort(result, ORDER_BY_SIZE);
-    return result;
+
+  /**
+   * Like {@link #query(EventIndex, MeetingRequest)}, but stops after about {@code timeout} or
+   * once the calling thread is interrupted, and then returns the best answer found so far marked
+   * as partial.
+   */
+  public QueryResult query(
+      EventIndex index, MeetingRequest request, long timeout, TimeUnit unit) {
+    QueryContext context = contexts.get();
+    context.setDeadline(unit.toNanos(timeout));
+    try {
+      Collection<TimeRange> times = context.run(index.getEvents(), index, null, request);
+      return new QueryResult(times, context.stopped);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Returns the free time of {@code attendees} given the events in {@code index}, indexed by
+   * length. The times for a request with these required attendees and no optional ones are then
+   * {@code freeGaps(index, attendees).rangesAtLeast(request.getDuration())}, whatever its
+   * duration, so callers that ask the same attendees about meetings of several lengths only pay
+   * for one sweep.
+   */
+  public FreeGapIndex freeGaps(EventIndex index, Collection<String> attendees) {
+    QueryContext context = contexts.get();
+    try {
+      return context.runFreeGaps(index, attendees);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Like {@link #freeGaps(EventIndex, Collection)}, but stops after about {@code timeout} or once
+   * the calling thread is interrupted, and then returns an empty index marked as partial.
+   */
+  public FreeGapIndex freeGaps(
+      EventIndex index, Collection<String> attendees, long timeout, TimeUnit unit) {
+    QueryContext context = contexts.get();
+    context.setDeadline(unit.toNanos(timeout));
+    try {
+      return context.runFreeGaps(index, attendees);
+    } finally {
+      context.release();
+    }
+  }
+
+  /** Returns the steps of work done by the last query on the calling thread. */
+  long stepsOfLastQuery() {
+    return contexts.get().steps;
+  }
+
+  /**
+   * Returns the same times as {@link #query(EventIndex, MeetingRequest)}, but finds how many
+   * optional attendees could come at each time in {@code tree} instead of from their events. The
+   * tree must be for the optional attendees and length of {@code request}, and up to date with
+   * {@code index}.
+   */
+  public Collection<TimeRange> query(
+      EventIndex index, MeetingRequest request, OptionalAttendanceTree tree) {
+    if (!tree.answers(request)) {
+      throw new IllegalArgumentException("The tree is for other optional attendees or length");
+    }
+    if (tree.getVersion() != index.getVersion()) {
+      throw new IllegalArgumentException("The tree is not up to date with the index");
+    }
+
+    QueryContext context = contexts.get();
+    try {
+      return context.run(index.getEvents(), index, tree, request);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Returns the first {@code maxSlots} stretches of {@code horizon}, in order, during which every
+   * required attendee of {@code request} is free for at least the length of the meeting. Each
+   * stretch is as long as possible within the horizon, and may run over several days. Optional
+   * attendees are not taken into account.
+   *
+   * <p>The events are read one day at a time, and a day is only read if the slots found so far
+   * are not enough, so the memory used does not depend on the length of the horizon and the
+   * search stops as soon as it has found {@code maxSlots} slots. This method is safe to call from
+   * several threads at once.
+   */
+  public List<EpochRange> query(
+      EventsByDay events, MeetingRequest request, EpochRange horizon, int maxSlots) {
+    QueryContext context = contexts.get();
+    try {
+      return context.runHorizon(events, request, horizon, maxSlots);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Returns the earliest range in which a meeting for {@code request} could take place given the
+   * events in {@code index}, or null if there is none. This is the first range {@link #query}
+   * would return if there were no optional attendees, but the posting lists of the required
+   * attendees are only merged up to the end of it.
+   */
+  public TimeRange firstFit(EventIndex index, MeetingRequest request) {
+    List<TimeRange> slots = topK(index, request, 1, Ranking.EARLIEST_START);
+    return slots.isEmpty() ? null : slots.get(0);
+  }
+
+  /**
+   * Returns the {@code k} best ranges for a meeting for {@code request} given the events in
+   * {@code index}, best first. Every required attendee is free for any meeting that starts in a
+   * returned range and ends by the end of it. Under {@link Ranking#MOST_OPTIONAL_ATTENDEES} the
+   * same number of optional attendees could make every such meeting; under {@link
+   * Ranking#EARLIEST_START} the ranges are the free time of the required attendees. If the
+   * request has a quorum of optional attendees, only times that meet it are ranked.
+   *
+   * <p>The day is walked from the start and the walk stops as soon as no later range could be
+   * ranked above the ones already found: after {@code k} ranges for the earliest start, or after
+   * {@code k} ranges that every optional attendee could make.
+   */
+  public List<TimeRange> topK(EventIndex index, MeetingRequest request, int k, Ranking ranking) {
+    QueryContext context = contexts.get();
+    try {
+      return context.runTopK(index.getEvents(), index, request, k, ranking);
+    } finally {
+      context.release();
+    }
+  }
+
+  /** Like {@link #topK(EventIndex, MeetingRequest, int, Ranking)}, for events without an index. */
+  public List<TimeRange> topK(
+      Collection<Event> events, MeetingRequest request, int k, Ranking ranking) {
+    QueryContext context = contexts.get();
+    try {
+      return context.runTopK(events, null, request, k, ranking);
+    } finally {
+      context.release();
+    }
   }
 }
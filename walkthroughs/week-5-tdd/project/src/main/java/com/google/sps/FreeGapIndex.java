@@ -0,0 +1,101 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The free time of a set of attendees on one day, as the longest stretches in which none of them
+ * is busy, kept in order of their length. Once it is built, the times for a meeting of any length
+ * are found with a binary search for the first stretch that is long enough, followed by a sort of
+ * the {@code k} stretches from there on by their start, in {@code O(log n + k log k)} time. So a
+ * set of attendees only has to be swept once however many lengths of meeting are asked about.
+ *
+ * <p>An index never changes, so it is safe to share between threads.
+ */
+public final class FreeGapIndex {
+  /** The index of a search that was stopped before it finished. It has no stretches. */
+  static final FreeGapIndex PARTIAL = new FreeGapIndex(new TimeRangeSet.Builder(), true);
+
+  // The stretches, ordered by length and then by start.
+  private final int[] lengths;
+  private final int[] starts;
+  private final boolean partial;
+
+  /** Creates the index of the ranges in {@code freeTime}, which are the free stretches. */
+  FreeGapIndex(TimeRangeSet.Builder freeTime) {
+    this(freeTime, false);
+  }
+
+  private FreeGapIndex(TimeRangeSet.Builder freeTime, boolean partial) {
+    int size = freeTime.size();
+    // Pack each stretch as (length, start), so that sorting orders them by length.
+    long[] packed = new long[size];
+    for (int i = 0; i < size; i++) {
+      int start = freeTime.start(i);
+      packed[i] = ((long) (freeTime.end(i) - start) << 32) | start;
+    }
+    Arrays.sort(packed);
+    this.lengths = new int[size];
+    this.starts = new int[size];
+    for (int i = 0; i < size; i++) {
+      lengths[i] = (int) (packed[i] >>> 32);
+      starts[i] = (int) packed[i];
+    }
+    this.partial = partial;
+  }
+
+  /** Returns the number of free stretches. */
+  public int size() {
+    return lengths.length;
+  }
+
+  /** Returns true if this index was cut short by a deadline, in which case it is empty. */
+  public boolean isPartial() {
+    return partial;
+  }
+
+  /**
+   * Returns the free stretches that are at least {@code duration} minutes long, in order of their
+   * start. These are the times at which a meeting of that length could take place.
+   */
+  public List<TimeRange> rangesAtLeast(long duration) {
+    // The first stretch that is long enough.
+    int low = 0;
+    int high = lengths.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (lengths[mid] < duration) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    // Pack the stretches from there on as (start, length) to put them in order of their start.
+    long[] byStart = new long[lengths.length - low];
+    for (int i = low; i < lengths.length; i++) {
+      byStart[i - low] = ((long) starts[i] << 32) | lengths[i];
+    }
+    Arrays.sort(byStart);
+    List<TimeRange> result = new ArrayList<>(byStart.length);
+    for (long range : byStart) {
+      result.add(TimeRange.fromStartDuration((int) (range >>> 32), (int) range));
+    }
+    return result;
+  }
+}
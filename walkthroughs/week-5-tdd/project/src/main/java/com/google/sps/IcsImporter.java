@@ -0,0 +1,872 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.chrono.ChronoZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads the events of an iCalendar (.ics) file into an {@code EventStore}. The file is read one
+ * line at a time and each VEVENT is turned into an {@code Event} as soon as its END line is seen,
+ * so the memory used does not grow with the size of the file. Parsing happens on the calling
+ * thread, and the events are handed in batches to a task on an {@code Executor} that adds them to
+ * the store, through a queue that holds only a few batches. When the store falls behind, the
+ * parser waits.
+ *
+ * <p>The store holds a single day of minutes, so each import is for one day: events are moved
+ * into {@code zone}, cut at the ends of the day, and left out if they are not on it. Events that
+ * are cancelled or marked as transparent, and attendees who declined, do not make anyone busy
+ * and are left out too.
+ *
+ * <p>Recurring events are expanded onto the day. A rule can repeat daily or weekly, with an
+ * INTERVAL, a COUNT or an UNTIL, and on a list of week days with BYDAY when it is weekly.
+ * Occurrences keep the wall-clock time of their DTSTART in its zone, so they do not move when the
+ * clocks change. RDATE adds occurrences, EXDATE leaves them out, and a VEVENT with a RECURRENCE-ID
+ * replaces the occurrence it names, wherever it is in the file. The occurrences of a series with
+ * a UID are held back until the end of the file for this reason, which takes memory for the ones
+ * on the day only. Likewise only the replacements that could be for an occurrence on the day are
+ * remembered: one that comes before its series in the file counts only if the occurrence it
+ * replaces starts at most {@link #LONGEST_REPLACED_DAYS} days before the day. A rule that needs
+ * anything else is reported as an {@code IOException}, rather than read as something it is not.
+ *
+ * <p>Attendees are only added to the {@code AttendeeRegistry}, which never forgets a name, once
+ * an event of theirs is added to the store, so that a large file of other days leaves no trace.
+ */
+public final class IcsImporter {
+  /** The number of events added to the store at a time, unless another number is given. */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /** The number of batches that can wait for the store, unless another number is given. */
+  public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+  /**
+   * The most days before the day that an occurrence can start at and still have a replacement that
+   * comes before its series in the file.
+   */
+  public static final int LONGEST_REPLACED_DAYS = 7;
+
+  private static final DateTimeFormatter DATE_TIME =
+      DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+  private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+  // Put on the queue after the last batch. Compared by identity.
+  private static final List<Event> END_OF_INPUT = new ArrayList<>();
+
+  private final EventStore store;
+  private final long dayStart;
+  private final ZoneId zone;
+  private final int batchSize;
+  private final int queueCapacity;
+  private final Executor executor;
+
+  /**
+   * Creates an importer that adds the events on {@code day}, as counted by {@link
+   * EpochRange#dayOf}, to {@code store}. Times in the file are moved into {@code zone}, which is
+   * also the zone of times that do not name one. Each import adds its events to the store from a
+   * task on {@code executor}, which has to run it on a thread other than the caller's.
+   */
+  public IcsImporter(EventStore store, long day, ZoneId zone, Executor executor) {
+    this(store, day, zone, executor, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Creates an importer that adds events to the store {@code batchSize} at a time, with at most
+   * {@code queueCapacity} batches waiting to be added.
+   */
+  public IcsImporter(
+      EventStore store,
+      long day,
+      ZoneId zone,
+      Executor executor,
+      int batchSize,
+      int queueCapacity) {
+    if (store == null) {
+      throw new IllegalArgumentException("store cannot be null");
+    }
+
+    if (zone == null) {
+      throw new IllegalArgumentException("zone cannot be null");
+    }
+
+    if (executor == null) {
+      throw new IllegalArgumentException("executor cannot be null");
+    }
+
+    if (batchSize <= 0 || queueCapacity <= 0) {
+      throw new IllegalArgumentException("batchSize and queueCapacity must be positive");
+    }
+
+    this.store = store;
+    this.dayStart = EpochRange.startOfDay(day);
+    this.zone = zone;
+    this.batchSize = batchSize;
+    this.queueCapacity = queueCapacity;
+    this.executor = executor;
+  }
+
+  /**
+   * Reads the calendar from {@code in}, which is read to the end but not closed, and adds its
+   * events to the store. Returns the number of events added. If the file cannot be read or the
+   * store fails, the batches that were already added stay in the store.
+   */
+  public long importFrom(InputStream in) throws IOException {
+    BlockingQueue<List<Event>> queue = new ArrayBlockingQueue<>(queueCapacity);
+    Consumer consumer = new Consumer(queue);
+    executor.execute(consumer);
+
+    Throwable failure = null;
+    boolean interrupted = false;
+    try {
+      Parser parser =
+          new Parser(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+      List<Event> batch = new ArrayList<>(batchSize);
+      Event event;
+      while (consumer.failure == null && (event = parser.next()) != null) {
+        batch.add(event);
+        if (batch.size() == batchSize) {
+          queue.put(batch);
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+      if (!batch.isEmpty()) {
+        queue.put(batch);
+      }
+    } catch (InterruptedException e) {
+      interrupted = true;
+    } catch (IOException | RuntimeException e) {
+      failure = e;
+    }
+
+    // Once it has failed, the consumer throws away the batches that are left, so this never waits
+    // for long.
+    if (!interrupted) {
+      try {
+        queue.put(END_OF_INPUT);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      // The batches that are still waiting are dropped. Only this thread puts on the queue, so
+      // once it is cleared there is room for the end of the input.
+      queue.clear();
+      queue.add(END_OF_INPUT);
+      if (failure == null) {
+        failure = new InterruptedIOException("The import was interrupted");
+      }
+    }
+    while (true) {
+      try {
+        consumer.done.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (failure == null) {
+      failure = consumer.failure;
+    }
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    if (failure != null) {
+      throw new IOException("The import failed", failure);
+    }
+    return consumer.added;
+  }
+
+  /** Adds the batches on the queue to the store until it finds the end of the input. */
+  private final class Consumer implements Runnable {
+    private final BlockingQueue<List<Event>> queue;
+    // Set once, by the consumer. The parser stops when it sees it.
+    private volatile Throwable failure;
+    // Only read after the consumer is done.
+    private long added;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    Consumer(BlockingQueue<List<Event>> queue) {
+      this.queue = queue;
+    }
+
+    @Override
+    public void run() {
+      try {
+        List<Event> batch;
+        while ((batch = queue.take()) != END_OF_INPUT) {
+          if (failure == null) {
+            try {
+              store.addAll(batch);
+              added += batch.size();
+            } catch (Throwable t) {
+              failure = t;
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        if (failure == null) {
+          failure = new InterruptedIOException("The import was interrupted");
+        }
+      } finally {
+        done.countDown();
+      }
+    }
+  }
+
+  /** Reads the VEVENTs of a file one at a time. */
+  final class Parser {
+    private final BufferedReader reader;
+    // The physical line after the current logical line, read ahead to see if it continues it.
+    private String lookahead;
+    private long lineNumber;
+    // One copy of each attendee name, so that the events do not each keep their own. They are
+    // not interned in the registry until an event with them is made.
+    private final Map<String, String> names = new HashMap<>();
+
+    // The events that are ready to be returned.
+    private final Queue<Event> ready = new ArrayDeque<>();
+    // The occurrences of series with a UID on the day, which a later VEVENT may still replace,
+    // and their keys as made by occurrenceKey.
+    private final List<Occurrence> pending = new ArrayList<>();
+    private final Set<String> pendingKeys = new HashSet<>();
+    // The occurrences that have been replaced and may be on the day, as made by occurrenceKey.
+    private final Set<String> replaced = new HashSet<>();
+
+    // The properties of the VEVENT being read.
+    private String summary;
+    private String start;
+    private String startParams;
+    private String end;
+    private String endParams;
+    private String duration;
+    private boolean skipped;
+    private final List<String> attendees = new ArrayList<>();
+    private String uid;
+    private String rule;
+    private String recurrenceId;
+    private String recurrenceIdParams;
+    // The parameters and value of each RDATE and EXDATE line.
+    private final List<String[]> rdates = new ArrayList<>();
+    private final List<String[]> exdates = new ArrayList<>();
+
+    Parser(BufferedReader reader) throws IOException {
+      this.reader = reader;
+      this.lookahead = reader.readLine();
+    }
+
+    /** Returns the next event on the day, or null at the end of the file. */
+    Event next() throws IOException {
+      if (!ready.isEmpty()) {
+        return ready.poll();
+      }
+      boolean inEvent = false;
+      // How deep the parser is inside components within the VEVENT, such as VALARMs.
+      int nested = 0;
+      String line;
+      while ((line = nextLine()) != null) {
+        int colon = valueStart(line);
+        if (colon < 0) {
+          continue;
+        }
+        int semicolon = line.indexOf(';');
+        int nameEnd = semicolon >= 0 && semicolon < colon ? semicolon : colon;
+        String name = line.substring(0, nameEnd).toUpperCase();
+        String params = line.substring(nameEnd, colon);
+        String value = line.substring(colon + 1);
+
+        if (name.equals("BEGIN")) {
+          if (inEvent) {
+            nested++;
+          } else if (value.equalsIgnoreCase("VEVENT")) {
+            inEvent = true;
+            clear();
+          }
+        } else if (name.equals("END") && inEvent) {
+          if (nested > 0) {
+            nested--;
+          } else {
+            inEvent = false;
+            finishEvent();
+            if (!ready.isEmpty()) {
+              return ready.poll();
+            }
+          }
+        } else if (inEvent && nested == 0) {
+          read(name, params, value);
+        }
+      }
+
+      // Whatever was not replaced by now never will be.
+      for (Occurrence occurrence : pending) {
+        if (!replaced.contains(occurrence.key)) {
+          ready.add(new Event(occurrence.title, occurrence.when, occurrence.attendees));
+        }
+      }
+      pending.clear();
+      pendingKeys.clear();
+      return ready.poll();
+    }
+
+    /** Returns the number of replaced occurrences being remembered. */
+    int numReplaced() {
+      return replaced.size();
+    }
+
+    // Returns the next line with its continuation lines joined to it.
+    private String nextLine() throws IOException {
+      if (lookahead == null) {
+        return null;
+      }
+      String line = lookahead;
+      lineNumber++;
+      lookahead = reader.readLine();
+      if (lookahead == null || !isContinuation(lookahead)) {
+        return line;
+      }
+      StringBuilder unfolded = new StringBuilder(line);
+      while (lookahead != null && isContinuation(lookahead)) {
+        unfolded.append(lookahead, 1, lookahead.length());
+        lineNumber++;
+        lookahead = reader.readLine();
+      }
+      return unfolded.toString();
+    }
+
+    private void clear() {
+      summary = null;
+      start = null;
+      startParams = null;
+      end = null;
+      endParams = null;
+      duration = null;
+      skipped = false;
+      attendees.clear();
+      uid = null;
+      rule = null;
+      recurrenceId = null;
+      recurrenceIdParams = null;
+      rdates.clear();
+      exdates.clear();
+    }
+
+    private void read(String name, String params, String value) {
+      switch (name) {
+        case "SUMMARY":
+          summary = unescape(value);
+          break;
+        case "DTSTART":
+          start = value;
+          startParams = params;
+          break;
+        case "DTEND":
+          end = value;
+          endParams = params;
+          break;
+        case "DURATION":
+          duration = value;
+          break;
+        case "STATUS":
+          skipped |= value.equalsIgnoreCase("CANCELLED");
+          break;
+        case "TRANSP":
+          skipped |= value.equalsIgnoreCase("TRANSPARENT");
+          break;
+        case "ATTENDEE":
+        case "ORGANIZER":
+          if (!"DECLINED".equalsIgnoreCase(param(params, "PARTSTAT"))) {
+            addAttendee(value);
+          }
+          break;
+        case "UID":
+          uid = value;
+          break;
+        case "RRULE":
+          rule = value;
+          break;
+        case "RDATE":
+          rdates.add(new String[] {params, value});
+          break;
+        case "EXDATE":
+          exdates.add(new String[] {params, value});
+          break;
+        case "RECURRENCE-ID":
+          recurrenceId = value;
+          recurrenceIdParams = params;
+          break;
+        default:
+          break;
+      }
+    }
+
+    private void addAttendee(String value) {
+      String address =
+          value.regionMatches(true, 0, "mailto:", 0, 7) ? value.substring(7) : value;
+      if (address.isEmpty()) {
+        return;
+      }
+      String name = names.get(address);
+      if (name == null) {
+        name = address;
+        names.put(address, name);
+      }
+      attendees.add(name);
+    }
+
+    // Turns the VEVENT that was just read into the events it makes on the day, if any.
+    private void finishEvent() throws IOException {
+      try {
+        if (recurrenceId != null) {
+          if (param(recurrenceIdParams, "RANGE") != null) {
+            throw unsupported("RECURRENCE-ID with a RANGE");
+          }
+          // Even a cancelled replacement takes the place of its occurrence.
+          if (uid != null) {
+            ZonedDateTime replacedStart = parseTime(recurrenceId, recurrenceIdParams);
+            String key = occurrenceKey(uid, replacedStart);
+            if (pendingKeys.contains(key) || mayBeOnTheDay(replacedStart)) {
+              replaced.add(key);
+            }
+          }
+        }
+        if (skipped || start == null) {
+          return;
+        }
+
+        ZonedDateTime startTime = parseTime(start, startParams);
+        ZonedDateTime endTime;
+        if (end != null) {
+          endTime = parseTime(end, endParams);
+        } else if (duration != null) {
+          endTime = startTime.plus(parseDuration(duration));
+        } else if (isDate(start, startParams)) {
+          // An all-day event without an end takes up the one day.
+          endTime = startTime.plusDays(1);
+        } else {
+          return;
+        }
+        Duration length = Duration.between(startTime, endTime);
+
+        String title = summary != null ? summary : "";
+        if (recurrenceId != null || (rule == null && rdates.isEmpty())) {
+          TimeRange when = onTheDay(startTime, length);
+          if (when != null) {
+            ready.add(new Event(title, when, new ArrayList<>(attendees)));
+          }
+          return;
+        }
+        List<String> occurrenceAttendees = new ArrayList<>(attendees);
+        for (ZonedDateTime occurrenceStart : occurrenceStarts(startTime, length)) {
+          TimeRange when = onTheDay(occurrenceStart, length);
+          if (when == null) {
+            continue;
+          }
+          if (uid == null) {
+            ready.add(new Event(title, when, occurrenceAttendees));
+          } else {
+            String key = occurrenceKey(uid, occurrenceStart);
+            pending.add(new Occurrence(key, title, when, occurrenceAttendees));
+            pendingKeys.add(key);
+          }
+        }
+      } catch (DateTimeException | ArithmeticException e) {
+        throw new IOException("Bad time in the event that ends on line " + lineNumber, e);
+      }
+    }
+
+    // Returns the part of the day taken by the occurrence that starts at the given time, or null
+    // if it is not on the day.
+    private TimeRange onTheDay(ZonedDateTime occurrenceStart, Duration length) {
+      long from = localMinute(occurrenceStart);
+      long to = localMinute(occurrenceStart.plus(length));
+      int clippedStart = (int) Math.max(0, from - dayStart);
+      int clippedEnd = (int) Math.min(EpochRange.MINUTES_PER_DAY, Math.max(0, to - dayStart));
+      if (clippedEnd <= clippedStart) {
+        return null;
+      }
+      return TimeRange.fromStartEnd(clippedStart, clippedEnd, false);
+    }
+
+    // Returns true if an occurrence that starts at the given time could be on the day, as long as
+    // it is no longer than LONGEST_REPLACED_DAYS.
+    private boolean mayBeOnTheDay(ZonedDateTime occurrenceStart) {
+      long from = localMinute(occurrenceStart);
+      return from < dayStart + EpochRange.MINUTES_PER_DAY
+          && from > dayStart - (long) LONGEST_REPLACED_DAYS * EpochRange.MINUTES_PER_DAY;
+    }
+
+    // Returns the starts of the occurrences of the series that was just read which might be on
+    // the day, without the ones that EXDATE leaves out. Others may come with them.
+    private Set<ZonedDateTime> occurrenceStarts(ZonedDateTime startTime, Duration length)
+        throws IOException {
+      // Ordered by instant, so that the same start given twice is kept once.
+      Set<ZonedDateTime> starts = new TreeSet<>(ChronoZonedDateTime.timeLineOrder());
+      if (rule != null) {
+        addRuleStarts(startTime, length, starts);
+      } else {
+        starts.add(startTime);
+      }
+      for (String[] rdate : rdates) {
+        if ("PERIOD".equalsIgnoreCase(param(rdate[0], "VALUE"))) {
+          throw unsupported("RDATE with a PERIOD");
+        }
+        for (String value : rdate[1].split(",")) {
+          starts.add(parseTime(value, rdate[0]));
+        }
+      }
+      for (String[] exdate : exdates) {
+        for (String value : exdate[1].split(",")) {
+          starts.remove(parseTime(value, exdate[0]));
+        }
+      }
+      return starts;
+    }
+
+    // Adds the starts of the occurrences of the RRULE that might be on the day. The periods of
+    // the rule that end well before the day are skipped without being walked, so that a series
+    // that began long ago costs no more than one that began last week.
+    private void addRuleStarts(ZonedDateTime startTime, Duration length, Set<ZonedDateTime> starts)
+        throws IOException {
+      String frequency = null;
+      long interval = 1;
+      long count = Long.MAX_VALUE;
+      String until = null;
+      Set<DayOfWeek> days = null;
+      DayOfWeek weekStart = DayOfWeek.MONDAY;
+      try {
+        for (String part : rule.split(";")) {
+          int equals = part.indexOf('=');
+          String name = part.substring(0, Math.max(0, equals)).toUpperCase();
+          String value = part.substring(equals + 1).toUpperCase();
+          switch (name) {
+            case "FREQ":
+              frequency = value;
+              break;
+            case "INTERVAL":
+              interval = Long.parseLong(value);
+              break;
+            case "COUNT":
+              count = Long.parseLong(value);
+              break;
+            case "UNTIL":
+              until = value;
+              break;
+            case "BYDAY":
+              days = EnumSet.noneOf(DayOfWeek.class);
+              for (String day : value.split(",")) {
+                days.add(dayOfWeek(day));
+              }
+              break;
+            case "WKST":
+              weekStart = dayOfWeek(value);
+              break;
+            default:
+              throw unsupported("RRULE:" + rule);
+          }
+        }
+      } catch (NumberFormatException e) {
+        throw new IOException("Bad RRULE in the event that ends on line " + lineNumber, e);
+      }
+      boolean weekly = "WEEKLY".equals(frequency);
+      if (!weekly && (!"DAILY".equals(frequency) || days != null)) {
+        throw unsupported("RRULE:" + rule);
+      }
+      if (interval <= 0 || count < 0) {
+        throw new IOException("Bad RRULE in the event that ends on line " + lineNumber);
+      }
+
+      ZoneId eventZone = startTime.getZone();
+      Instant last = until == null ? Instant.MAX : untilInstant(until, eventZone);
+      LocalDate firstDate = startTime.toLocalDate();
+      LocalTime time = startTime.toLocalTime();
+      // The first day of each period, and the days of a period with an occurrence as days after
+      // its first one.
+      LocalDate firstPeriod = firstDate;
+      List<Integer> offsets = new ArrayList<>();
+      if (weekly) {
+        firstPeriod = firstDate.with(TemporalAdjusters.previousOrSame(weekStart));
+        if (days == null) {
+          days = EnumSet.of(firstDate.getDayOfWeek());
+        }
+        for (DayOfWeek day : days) {
+          offsets.add(Math.floorMod(day.getValue() - weekStart.getValue(), 7));
+        }
+        Collections.sort(offsets);
+      } else {
+        offsets.add(0);
+      }
+      long periodDays = Math.multiplyExact(interval, weekly ? 7 : 1);
+      int inFirstPeriod = 0;
+      for (int offset : offsets) {
+        if (!firstPeriod.plusDays(offset).isBefore(firstDate)) {
+          inFirstPeriod++;
+        }
+      }
+
+      // An occurrence reaches the day only if it starts at most its length before it, give or
+      // take a day for the difference between the zone of the event and the importer's. The
+      // periods that end before then are skipped, counting the occurrences in them.
+      LocalDate day = LocalDate.ofEpochDay(Math.floorDiv(dayStart, EpochRange.MINUTES_PER_DAY));
+      long earliest = ChronoUnit.DAYS.between(firstPeriod, day) - length.toDays() - 2;
+      long period = Math.max(0, Math.floorDiv(earliest - 7, periodDays));
+      long index = period == 0 ? 0 : inFirstPeriod + (period - 1) * offsets.size();
+      for (; ; period++) {
+        LocalDate periodStart = firstPeriod.plusDays(Math.multiplyExact(period, periodDays));
+        if (periodStart.isAfter(day.plusDays(2))) {
+          return;
+        }
+        for (int offset : offsets) {
+          LocalDate date = periodStart.plusDays(offset);
+          if (date.isBefore(firstDate)) {
+            continue;
+          }
+          if (index++ >= count) {
+            return;
+          }
+          ZonedDateTime occurrenceStart = ZonedDateTime.of(date, time, eventZone);
+          if (occurrenceStart.toInstant().isAfter(last)) {
+            return;
+          }
+          starts.add(occurrenceStart);
+        }
+      }
+    }
+
+    // Returns the last instant that UNTIL lets an occurrence start at. A date lets the whole day.
+    private Instant untilInstant(String value, ZoneId eventZone) {
+      if (value.endsWith("Z")) {
+        return LocalDateTime.parse(value.substring(0, value.length() - 1), DATE_TIME)
+            .toInstant(ZoneOffset.UTC);
+      }
+      if (value.indexOf('T') >= 0) {
+        return LocalDateTime.parse(value, DATE_TIME).atZone(eventZone).toInstant();
+      }
+      return LocalDate.parse(value, DATE)
+          .plusDays(1)
+          .atStartOfDay(eventZone)
+          .toInstant()
+          .minusSeconds(1);
+    }
+
+    private DayOfWeek dayOfWeek(String value) throws IOException {
+      switch (value) {
+        case "MO":
+          return DayOfWeek.MONDAY;
+        case "TU":
+          return DayOfWeek.TUESDAY;
+        case "WE":
+          return DayOfWeek.WEDNESDAY;
+        case "TH":
+          return DayOfWeek.THURSDAY;
+        case "FR":
+          return DayOfWeek.FRIDAY;
+        case "SA":
+          return DayOfWeek.SATURDAY;
+        case "SU":
+          return DayOfWeek.SUNDAY;
+        default:
+          // Such as 1MO, the first Monday of a month or year.
+          throw unsupported("RRULE:" + rule);
+      }
+    }
+
+    private IOException unsupported(String what) {
+      return new IOException(
+          "Cannot expand " + what + " in the event that ends on line " + lineNumber);
+    }
+
+    private ZonedDateTime parseTime(String value, String params) {
+      if (isDate(value, params)) {
+        return LocalDate.parse(value, DATE).atStartOfDay(zone);
+      }
+      if (value.endsWith("Z") || value.endsWith("z")) {
+        return LocalDateTime.parse(value.substring(0, value.length() - 1), DATE_TIME)
+            .atZone(ZoneOffset.UTC);
+      }
+      return LocalDateTime.parse(value, DATE_TIME).atZone(zoneOf(params));
+    }
+
+    // Returns the zone named by the TZID parameter, or the importer's zone if there is none or it
+    // is not one that Java knows.
+    private ZoneId zoneOf(String params) {
+      String tzid = param(params, "TZID");
+      if (tzid == null) {
+        return zone;
+      }
+      try {
+        return ZoneId.of(tzid.startsWith("/") ? tzid.substring(1) : tzid);
+      } catch (DateTimeException e) {
+        return zone;
+      }
+    }
+
+    // Returns the minutes from the start of 1970-01-01 to the time as seen in the importer's zone.
+    private long localMinute(ZonedDateTime time) {
+      return Math.floorDiv(
+          time.withZoneSameInstant(zone).toLocalDateTime().toEpochSecond(ZoneOffset.UTC), 60);
+    }
+  }
+
+  /**
+   * An occurrence of a series on the day, and the key a VEVENT that replaces it would have. Its
+   * event is only made once it is known not to be replaced.
+   */
+  private static final class Occurrence {
+    final String key;
+    final String title;
+    final TimeRange when;
+    final List<String> attendees;
+
+    Occurrence(String key, String title, TimeRange when, List<String> attendees) {
+      this.key = key;
+      this.title = title;
+      this.when = when;
+      this.attendees = attendees;
+    }
+  }
+
+  // Identifies an occurrence of a series by its UID and the instant it was meant to start at.
+  private static String occurrenceKey(String uid, ZonedDateTime start) {
+    return uid + '\n' + start.toInstant();
+  }
+
+  private static boolean isContinuation(String line) {
+    return !line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t');
+  }
+
+  private static boolean isDate(String value, String params) {
+    return "DATE".equalsIgnoreCase(param(params, "VALUE")) || value.indexOf('T') < 0;
+  }
+
+  // Returns the index of the colon that ends the name and parameters of a content line, skipping
+  // colons inside quoted parameter values, or -1 if there is none.
+  private static int valueStart(String line) {
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (c == ':' && !quoted) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Returns the value of the parameter called name in params, which is either empty or starts
+  // with ';', or null if it is not there.
+  private static String param(String params, String name) {
+    int i = 0;
+    while (i < params.length()) {
+      // params.charAt(i) is the ';' before a parameter.
+      int equals = params.indexOf('=', i);
+      if (equals < 0) {
+        return null;
+      }
+      boolean quoted = false;
+      int valueEnd = equals + 1;
+      while (valueEnd < params.length() && (quoted || params.charAt(valueEnd) != ';')) {
+        if (params.charAt(valueEnd) == '"') {
+          quoted = !quoted;
+        }
+        valueEnd++;
+      }
+      if (params.regionMatches(true, i + 1, name, 0, name.length())
+          && equals == i + 1 + name.length()) {
+        String value = params.substring(equals + 1, valueEnd);
+        return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+            ? value.substring(1, value.length() - 1)
+            : value;
+      }
+      i = valueEnd;
+    }
+    return null;
+  }
+
+  // Parses a duration such as PT1H30M, P1D or P2W, which may start with a sign.
+  private static Duration parseDuration(String value) {
+    try {
+      if (!value.endsWith("W") && !value.endsWith("w")) {
+        return Duration.parse(value);
+      }
+      // java.time has no weeks in a Duration.
+      int p = value.toUpperCase().indexOf('P');
+      long weeks = Long.parseLong(value.substring(p + 1, value.length() - 1));
+      Duration result = Duration.ofDays(7 * weeks);
+      return value.startsWith("-") ? result.negated() : result;
+    } catch (RuntimeException e) {
+      throw new DateTimeException("Bad duration: " + value, e);
+    }
+  }
+
+  // Undoes the escaping of a TEXT value.
+  private static String unescape(String value) {
+    if (value.indexOf('\\') < 0) {
+      return value;
+    }
+    StringBuilder result = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' && i + 1 < value.length()) {
+        char next = value.charAt(++i);
+        result.append(next == 'n' || next == 'N' ? '\n' : next);
+      } else {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,348 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An {@code EventStore} that keeps its events and posting lists in persistent trees, so that
+ * adding, removing or changing an event takes O(a log n) time for an event with a attendees,
+ * without rebuilding anything.
+ *
+ * <p>Each change builds a new, immutable {@link Snapshot} that shares every part it did not change
+ * with the one before, and then swaps it in with a compare-and-set. Readers never take a lock:
+ * {@link #snapshot()} is a single read of the current version, and a query keeps working on the
+ * version it started with however many changes land while it runs. Writers do not lock either; a
+ * writer that loses a race to another one just makes its change again on top of the winner's.
+ */
+public final class InMemoryEventStore implements EventStore {
+  private final AtomicReference<Snapshot> current = new AtomicReference<>(Snapshot.EMPTY);
+
+  /** Creates an empty store. */
+  public InMemoryEventStore() {}
+
+  /** Creates a store that holds {@code events}, with IDs given out in order. */
+  public InMemoryEventStore(Collection<Event> events) {
+    for (Event event : events) {
+      add(event);
+    }
+  }
+
+  /**
+   * Creates a store that holds {@code eventsById} under their IDs, and gives out IDs from {@code
+   * nextEventId} on, which must be larger than any of them.
+   */
+  InMemoryEventStore(Map<Long, Event> eventsById, long nextEventId) {
+    PersistentLongMap<Event> events = PersistentLongMap.empty();
+    PersistentLongMap<PostingList> postingLists = PersistentLongMap.empty();
+    for (Map.Entry<Long, Event> entry : eventsById.entrySet()) {
+      if (entry.getKey() >= nextEventId) {
+        throw new IllegalArgumentException("nextEventId must be larger than every event ID");
+      }
+      events = events.put(entry.getKey(), entry.getValue());
+      postingLists = index(postingLists, entry.getValue(), 1);
+    }
+    current.set(new Snapshot(events, postingLists, nextEventId));
+  }
+
+  @Override
+  public long add(Event event) {
+    if (event == null) {
+      throw new IllegalArgumentException("event cannot be null");
+    }
+
+    while (true) {
+      Snapshot old = current.get();
+      long eventId = old.nextEventId;
+      Snapshot changed =
+          new Snapshot(
+              old.events.put(eventId, event), index(old.postingLists, event, 1), eventId + 1);
+      if (current.compareAndSet(old, changed)) {
+        return eventId;
+      }
+    }
+  }
+
+  @Override
+  public boolean remove(long eventId) {
+    while (true) {
+      Snapshot old = current.get();
+      Event event = old.events.get(eventId);
+      if (event == null) {
+        return false;
+      }
+      Snapshot changed =
+          new Snapshot(
+              old.events.remove(eventId), index(old.postingLists, event, -1), old.nextEventId);
+      if (current.compareAndSet(old, changed)) {
+        return true;
+      }
+    }
+  }
+
+  @Override
+  public boolean update(long eventId, Event event) {
+    if (event == null) {
+      throw new IllegalArgumentException("event cannot be null");
+    }
+
+    while (true) {
+      Snapshot old = current.get();
+      Event oldEvent = old.events.get(eventId);
+      if (oldEvent == null) {
+        return false;
+      }
+      PersistentLongMap<PostingList> postingLists =
+          index(index(old.postingLists, oldEvent, -1), event, 1);
+      Snapshot changed =
+          new Snapshot(old.events.put(eventId, event), postingLists, old.nextEventId);
+      if (current.compareAndSet(old, changed)) {
+        return true;
+      }
+    }
+  }
+
+  @Override
+  public Map<Long, Event> getEventsById() {
+    return current.get().getEventsById();
+  }
+
+  @Override
+  public Snapshot snapshot() {
+    return current.get();
+  }
+
+  // Returns the posting lists with the event's interval added to the lists of its attendees, or
+  // taken out again.
+  private static PersistentLongMap<PostingList> index(
+      PersistentLongMap<PostingList> postingLists, Event event, int change) {
+    TimeRange when = event.getWhen();
+    if (when.duration() <= 0) {
+      return postingLists;
+    }
+    for (int id : event.getAttendeeIds()) {
+      PostingList list = postingLists.get(id);
+      if (list == null) {
+        list = PostingList.EMPTY;
+      }
+      postingLists =
+          postingLists.put(
+              id,
+              new PostingList(
+                  count(list.byStart, pack(when.start(), when.end()), change),
+                  count(list.byEnd, pack(when.end(), when.start()), change)));
+    }
+    return postingLists;
+  }
+
+  // Changes how many times an interval is in a list, dropping it once no event has it.
+  private static PersistentLongMap<Integer> count(
+      PersistentLongMap<Integer> list, long interval, int change) {
+    Integer old = list.get(interval);
+    int count = (old == null ? 0 : old) + change;
+    return count == 0 ? list.remove(interval) : list.put(interval, count);
+  }
+
+  private static long pack(int high, int low) {
+    return ((long) high << 32) | (low & 0xFFFFFFFFL);
+  }
+
+  /**
+   * The events of an {@code InMemoryEventStore} as they were at one moment. A snapshot never
+   * changes, so it can be used for as long as needed, from any number of threads.
+   */
+  public static final class Snapshot extends EventIndex {
+    private static final Snapshot EMPTY =
+        new Snapshot(PersistentLongMap.empty(), PersistentLongMap.empty(), 0);
+
+    private final long version = nextVersion();
+    private final PersistentLongMap<Event> events;
+    // By attendee ID. Attendees who are not at any event of the snapshot have no lists.
+    private final PersistentLongMap<PostingList> postingLists;
+    private final long nextEventId;
+
+    private Snapshot(
+        PersistentLongMap<Event> events,
+        PersistentLongMap<PostingList> postingLists,
+        long nextEventId) {
+      this.events = events;
+      this.postingLists = postingLists;
+      this.nextEventId = nextEventId;
+    }
+
+    @Override
+    public long getVersion() {
+      return version;
+    }
+
+    /** Returns the events of the snapshot in order of ID. */
+    @Override
+    public Collection<Event> getEvents() {
+      return new AbstractCollection<Event>() {
+        @Override
+        public Iterator<Event> iterator() {
+          return new EventIterator(events.cursor());
+        }
+
+        @Override
+        public int size() {
+          return events.size();
+        }
+      };
+    }
+
+    /** Returns the ID that the next event added after this snapshot will get. */
+    long getNextEventId() {
+      return nextEventId;
+    }
+
+    /** Returns a copy of the events of the snapshot, by ID. */
+    public Map<Long, Event> getEventsById() {
+      Map<Long, Event> eventsById = new LinkedHashMap<>();
+      PersistentLongMap.Cursor<Event> cursor = events.cursor();
+      while (cursor.next()) {
+        eventsById.put(cursor.key(), cursor.value());
+      }
+      return eventsById;
+    }
+
+    @Override
+    IntervalCursor byStart(int attendeeId) {
+      PostingList list = postingLists.get(attendeeId);
+      return list == null ? IntervalCursor.EMPTY : new TreeCursor(list.byStart, false);
+    }
+
+    @Override
+    IntervalCursor byEnd(int attendeeId) {
+      PostingList list = postingLists.get(attendeeId);
+      return list == null ? IntervalCursor.EMPTY : new TreeCursor(list.byEnd, true);
+    }
+
+    @Override
+    IntervalCursor byStart(int attendeeId, IntervalCursor reuse) {
+      PostingList list = postingLists.get(attendeeId);
+      return cursor(list == null ? PostingList.EMPTY.byStart : list.byStart, false, reuse);
+    }
+
+    @Override
+    IntervalCursor byEnd(int attendeeId, IntervalCursor reuse) {
+      PostingList list = postingLists.get(attendeeId);
+      return cursor(list == null ? PostingList.EMPTY.byEnd : list.byEnd, true, reuse);
+    }
+
+    private static IntervalCursor cursor(
+        PersistentLongMap<Integer> tree, boolean endFirst, IntervalCursor reuse) {
+      if (reuse instanceof TreeCursor) {
+        return ((TreeCursor) reuse).reset(tree, endFirst);
+      }
+      return new TreeCursor(tree, endFirst);
+    }
+
+    @Override
+    int numIntervals(int attendeeId) {
+      PostingList list = postingLists.get(attendeeId);
+      return list == null ? 0 : list.byStart.size();
+    }
+  }
+
+  /**
+   * The busy intervals of one attendee, packed as (start, end) in one tree and as (end, start) in
+   * the other, with the number of events that have each interval. Walking a tree visits every
+   * interval once, however many events it has, which is all a query needs.
+   */
+  private static final class PostingList {
+    static final PostingList EMPTY =
+        new PostingList(PersistentLongMap.empty(), PersistentLongMap.empty());
+
+    final PersistentLongMap<Integer> byStart;
+    final PersistentLongMap<Integer> byEnd;
+
+    PostingList(PersistentLongMap<Integer> byStart, PersistentLongMap<Integer> byEnd) {
+      this.byStart = byStart;
+      this.byEnd = byEnd;
+    }
+  }
+
+  /** Walks the events of a snapshot in order of ID. */
+  private static final class EventIterator implements Iterator<Event> {
+    private final PersistentLongMap.Cursor<Event> cursor;
+    private boolean hasNext;
+
+    EventIterator(PersistentLongMap.Cursor<Event> cursor) {
+      this.cursor = cursor;
+      this.hasNext = cursor.next();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return hasNext;
+    }
+
+    @Override
+    public Event next() {
+      if (!hasNext) {
+        throw new NoSuchElementException();
+      }
+      Event event = cursor.value();
+      hasNext = cursor.next();
+      return event;
+    }
+  }
+
+  /** Walks the packed intervals of a tree in order. */
+  private static final class TreeCursor implements IntervalCursor {
+    private final PersistentLongMap.Cursor<Integer> intervals;
+    private boolean endFirst;
+
+    TreeCursor(PersistentLongMap<Integer> tree, boolean endFirst) {
+      this.intervals = tree.cursor();
+      this.endFirst = endFirst;
+    }
+
+    TreeCursor reset(PersistentLongMap<Integer> tree, boolean endFirst) {
+      intervals.reset(tree);
+      this.endFirst = endFirst;
+      return this;
+    }
+
+    @Override
+    public boolean next() {
+      return intervals.next();
+    }
+
+    @Override
+    public int start() {
+      long current = intervals.key();
+      return endFirst ? (int) current : (int) (current >> 32);
+    }
+
+    @Override
+    public int end() {
+      long current = intervals.key();
+      return endFirst ? (int) (current >> 32) : (int) current;
+    }
+
+    @Override
+    public void release() {
+      intervals.reset(PersistentLongMap.empty());
+    }
+  }
+}
@@ -0,0 +1,55 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+/**
+ * Walks the busy intervals of one attendee in a fixed order. A new cursor is positioned before the
+ * first interval, so {@link #next()} has to be called before the first interval can be read.
+ */
+interface IntervalCursor {
+  /** A cursor with no intervals. */
+  IntervalCursor EMPTY =
+      new IntervalCursor() {
+        @Override
+        public boolean next() {
+          return false;
+        }
+
+        @Override
+        public int start() {
+          throw new IllegalStateException("no interval");
+        }
+
+        @Override
+        public int end() {
+          throw new IllegalStateException("no interval");
+        }
+      };
+
+  /** Moves to the next interval. Returns false if there are no more intervals. */
+  boolean next();
+
+  /** Returns the start of the current interval. */
+  int start();
+
+  /** Returns the exclusive end of the current interval. */
+  int end();
+
+  /**
+   * Drops the references of a cursor that is kept for reuse to the index it walks, so that it
+   * does not keep the index alive. The cursor has no intervals left until it is reset.
+   */
+  default void release() {}
+}
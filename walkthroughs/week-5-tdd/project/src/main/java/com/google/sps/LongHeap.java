@@ -0,0 +1,85 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of primitive longs. Callers pack a sort key into the high bits of each value
+ * and whatever they need to find the value's source into the low bits, which is how the k-way
+ * merges over posting lists use it. A heap can be cleared and reused.
+ */
+final class LongHeap {
+  private long[] values = new long[16];
+  private int size;
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+  void add(long value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    // Move the new value up past every parent that is larger.
+    int child = size++;
+    while (child > 0) {
+      int parent = (child - 1) >>> 1;
+      if (values[parent] <= value) {
+        break;
+      }
+      values[child] = values[parent];
+      child = parent;
+    }
+    values[child] = value;
+  }
+
+  /** Returns the smallest value. The heap must not be empty. */
+  long peek() {
+    return values[0];
+  }
+
+  /** Removes and returns the smallest value. The heap must not be empty. */
+  long poll() {
+    long smallest = values[0];
+    long last = values[--size];
+    // Move the last value down from the root past every child that is smaller.
+    int parent = 0;
+    while (true) {
+      int child = 2 * parent + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && values[child + 1] < values[child]) {
+        child++;
+      }
+      if (last <= values[child]) {
+        break;
+      }
+      values[parent] = values[child];
+      parent = child;
+    }
+    values[parent] = last;
+    return smallest;
+  }
+}
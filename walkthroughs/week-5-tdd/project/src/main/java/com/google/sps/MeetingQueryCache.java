@@ -0,0 +1,332 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of meeting query results in front of a {@code FindMeetingQuery}.
+ *
+ * <p>Requests are keyed by their sorted required attendees, sorted optional attendees, duration
+ * and quorum of optional attendees, so the order in which attendees were listed does not matter,
+ * together with the version of the index they are answered against. Once a query for a newer
+ * version arrives, every result for older versions is dropped. When the cache is full, the least
+ * recently used result is evicted. If several threads ask the same question at once, only one of
+ * them computes the answer and the others wait for it.
+ *
+ * <p>Requests without optional attendees are answered from the free time of their required
+ * attendees instead, which is kept as a {@code FreeGapIndex} keyed by the attendees alone. Asking
+ * about the same people with another duration then takes a binary search rather than a sweep.
+ * These indexes count against the same bound as the results, and are evicted along with them.
+ *
+ * <p>Results are shared between callers, so they are returned as unmodifiable collections. This
+ * class is safe to use from several threads at once.
+ */
+public final class MeetingQueryCache {
+  private final FindMeetingQuery findMeetingQuery;
+  // The results of requests, and the free time of sets of required attendees for requests without
+  // optional attendees, in one map so that they share its bound. The kind of a key decides the
+  // kind of its value.
+  private final Map<Key, CompletableFuture<?>> entries;
+  // The newest index version seen. Guarded by entries.
+  private long latestVersion;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Creates a cache.
+   *
+   * @param findMeetingQuery The engine that answers the queries that are not in the cache.
+   * @param maxEntries The most results and free time indexes to keep, between them. Must be
+   *     positive.
+   */
+  public MeetingQueryCache(FindMeetingQuery findMeetingQuery, int maxEntries) {
+    if (findMeetingQuery == null) {
+      throw new IllegalArgumentException("findMeetingQuery cannot be null");
+    }
+
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("maxEntries must be positive");
+    }
+
+    this.findMeetingQuery = findMeetingQuery;
+    // An access-ordered map keeps the least recently used entry first.
+    this.entries =
+        new LinkedHashMap<Key, CompletableFuture<?>>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<?>> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  /**
+   * Returns the times at which {@code request} could take place given the events in {@code
+   * index}, from the cache if the same question has been answered before.
+   */
+  public Collection<TimeRange> query(EventIndex index, MeetingRequest request) {
+    return query(index, request, Long.MAX_VALUE, TimeUnit.NANOSECONDS).getTimes();
+  }
+
+  /**
+   * Like {@link #query(EventIndex, MeetingRequest)}, but gives up after about {@code timeout}. A
+   * query that runs out of time returns the partial answer of {@link FindMeetingQuery}, which is
+   * not cached. A thread that runs out of time while waiting for another thread to answer the same
+   * question gets an empty partial answer.
+   */
+  public QueryResult query(EventIndex index, MeetingRequest request, long timeout, TimeUnit unit) {
+    long timeoutNanos = unit.toNanos(timeout);
+    long deadline = System.nanoTime() + timeoutNanos;
+    boolean hasDeadline = timeoutNanos < Long.MAX_VALUE / 2;
+    long version = index.getVersion();
+
+    if (request.getOptionalAttendees().isEmpty() && request.getMinOptionalAttendees() == 0) {
+      // Only the required attendees matter, so the free time of the same people answers a
+      // request for a meeting of any length.
+      Collection<String> attendees = request.getAttendees();
+      FreeGapIndex answer =
+          lookUp(
+              new Key(attendees, version),
+              hasDeadline,
+              deadline,
+              () ->
+                  hasDeadline
+                      ? findMeetingQuery.freeGaps(
+                          index, attendees, deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                      : findMeetingQuery.freeGaps(index, attendees),
+              FreeGapIndex::isPartial,
+              FreeGapIndex.PARTIAL);
+      return new QueryResult(
+          Collections.unmodifiableList(answer.rangesAtLeast(request.getDuration())),
+          answer.isPartial());
+    }
+
+    return lookUp(
+        new Key(request, version),
+        hasDeadline,
+        deadline,
+        () -> {
+          QueryResult answer =
+              hasDeadline
+                  ? findMeetingQuery.query(
+                      index, request, deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                  : new QueryResult(findMeetingQuery.query(index, request), false);
+          return new QueryResult(
+              Collections.unmodifiableList(new ArrayList<>(answer.getTimes())),
+              answer.isPartial());
+        },
+        QueryResult::isPartial,
+        new QueryResult(Collections.emptyList(), true));
+  }
+
+  /**
+   * Returns the value for {@code key}, or computes it on this thread if no other thread has it or
+   * is computing it. Partial values are handed back but not kept. A thread that runs out of time
+   * while waiting for another one gets {@code timedOut}. {@code V} has to be the kind of value
+   * that the kind of {@code key} maps to.
+   */
+  @SuppressWarnings("unchecked")
+  private <V> V lookUp(
+      Key key,
+      boolean hasDeadline,
+      long deadline,
+      Supplier<V> compute,
+      Predicate<V> isPartial,
+      V timedOut) {
+    while (true) {
+      CompletableFuture<V> result;
+      boolean computeHere = false;
+      synchronized (entries) {
+        if (key.version > latestVersion) {
+          entries.clear();
+          latestVersion = key.version;
+        }
+        result = (CompletableFuture<V>) entries.get(key);
+        if (result == null) {
+          result = new CompletableFuture<>();
+          // Results for old versions would never be asked for again, so they are not kept.
+          if (key.version == latestVersion) {
+            entries.put(key, result);
+          }
+          computeHere = true;
+        }
+      }
+
+      if (!computeHere) {
+        V answer = hasDeadline ? await(result, deadline - System.nanoTime()) : await(result);
+        if (answer == null) {
+          return timedOut;
+        }
+        if (!isPartial.test(answer)) {
+          hits.incrementAndGet();
+          return answer;
+        }
+        // The thread that computed it ran out of time and did not keep it, so ask again.
+        continue;
+      }
+
+      misses.incrementAndGet();
+      V answer;
+      try {
+        answer = compute.get();
+      } catch (RuntimeException | Error e) {
+        // Let the threads that are waiting see the failure, but do not keep it around.
+        synchronized (entries) {
+          entries.remove(key, result);
+        }
+        result.completeExceptionally(e);
+        throw e;
+      }
+      if (isPartial.test(answer)) {
+        synchronized (entries) {
+          entries.remove(key, result);
+        }
+      }
+      result.complete(answer);
+      return answer;
+    }
+  }
+
+  /** Drops every cached result. */
+  public void invalidateAll() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  /** Returns the number of queries that were answered from the cache. */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /** Returns the number of queries that had to be computed. */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /** Returns the number of results and free time indexes in the cache. */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  // Waits for a result that another thread is computing, and rethrows its failure if it failed.
+  private static <V> V await(CompletableFuture<V> result) {
+    try {
+      return result.join();
+    } catch (CompletionException e) {
+      throw rethrow(e.getCause(), e);
+    }
+  }
+
+  // Like await(result), but returns null if the result is not ready within timeoutNanos.
+  private static <V> V await(CompletableFuture<V> result, long timeoutNanos) {
+    try {
+      return result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause(), new CompletionException(e.getCause()));
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable cause, RuntimeException otherwise) {
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return otherwise;
+  }
+
+  /** The canonical form of a request, together with the version of the index it is about. */
+  private static final class Key {
+    private final List<String> attendees;
+    private final List<String> optionalAttendees;
+    private final long duration;
+    private final int minOptionalAttendees;
+    private final long version;
+    // Set for the key of a FreeGapIndex, and clear for the key of a QueryResult.
+    private final boolean freeGaps;
+
+    // The key of the free time of a set of attendees.
+    Key(Collection<String> attendees, long version) {
+      this.attendees = sorted(attendees);
+      this.optionalAttendees = Collections.emptyList();
+      this.duration = -1;
+      this.minOptionalAttendees = 0;
+      this.version = version;
+      this.freeGaps = true;
+    }
+
+    Key(MeetingRequest request, long version) {
+      this.attendees = sorted(request.getAttendees());
+      this.optionalAttendees = sorted(request.getOptionalAttendees());
+      this.duration = request.getDuration();
+      this.minOptionalAttendees = request.getMinOptionalAttendees();
+      this.version = version;
+      this.freeGaps = false;
+    }
+
+    // Requests that came in as JSON can list the same person twice, which changes nothing.
+    private static List<String> sorted(Collection<String> people) {
+      return new ArrayList<>(new TreeSet<>(people));
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = attendees.hashCode();
+      hash = 31 * hash + optionalAttendees.hashCode();
+      hash = 31 * hash + Long.hashCode(duration);
+      hash = 31 * hash + minOptionalAttendees;
+      hash = 31 * hash + Boolean.hashCode(freeGaps);
+      return 31 * hash + Long.hashCode(version);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) other;
+      return freeGaps == that.freeGaps
+          && duration == that.duration
+          && minOptionalAttendees == that.minOptionalAttendees
+          && version == that.version
+          && attendees.equals(that.attendees)
+          && optionalAttendees.equals(that.optionalAttendees);
+    }
+  }
+}
@@ -37,6 +37,10 @@ public final class MeetingRequest {
   // The duration of the meeting in minutes.
   private final long duration;
 
+  // How many of the optional attendees must be able to come. Zero means that the times that the
+  // most optional attendees could make are wanted instead.
+  private int min_optional_attendees;
+
   public MeetingRequest(Collection<String> attendees, long duration) {
     this.duration = duration;
     this.attendees.addAll(attendees);
@@ -52,6 +56,15 @@ public final class MeetingRequest {
     return Collections.unmodifiableCollection(optional_attendees);
   }
 
+  /**
+   * Returns true if the request has both of its lists of attendees. A request is always made with
+   * them, but Gson sets the fields directly, so one read from JSON where a list is null or left out
+   * has none.
+   */
+  public boolean hasAttendeeLists() {
+    return attendees != null && optional_attendees != null;
+  }
+
   /** Adds one optional attendee for the meeting. */
   public void addOptionalAttendee(String attendee) {
     if (!attendees.contains(attendee)) {
@@ -63,4 +76,23 @@ public final class MeetingRequest {
   public long getDuration() {
     return duration;
   }
+
+  /**
+   * Returns how many of the optional attendees must be able to come, or zero if the meeting should
+   * be at the times that the most optional attendees could make.
+   */
+  public int getMinOptionalAttendees() {
+    return min_optional_attendees;
+  }
+
+  /**
+   * Asks for every time at which at least {@code minOptionalAttendees} of the optional attendees
+   * could come, instead of only the times that the most of them could make. Zero turns this off.
+   */
+  public void setMinOptionalAttendees(int minOptionalAttendees) {
+    if (minOptionalAttendees < 0) {
+      throw new IllegalArgumentException("minOptionalAttendees cannot be negative");
+    }
+    this.min_optional_attendees = minOptionalAttendees;
+  }
 }
@@ -0,0 +1,206 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * For one set of optional attendees and one meeting length, how many of the attendees could come
+ * to a meeting starting at each minute of the day, kept in a segment tree over the start times.
+ *
+ * <p>Each attendee adds one to every start time that leaves them free for the whole meeting, as a
+ * handful of range additions. The best start time in any stretch is then found in O(log n) time,
+ * without looking at any event, so a tree can answer many requests that share the same optional
+ * attendees and length but differ in their required attendees. When events change, only the
+ * attendees of the changed events need to be taken out and added again.
+ *
+ * <p>A tree is not thread-safe. It can be read from several threads at once, but not while it is
+ * being updated.
+ */
+public final class OptionalAttendanceTree {
+  // A power of two that covers every start time of the day.
+  private static final int NUM_LEAVES = Integer.highestOneBit(BusyBitmap.MINUTES_PER_DAY - 1) << 1;
+  private static final TimeRangeSet WHOLE_DAY =
+      TimeRangeSet.of(TimeRange.START_OF_DAY, TimeRange.END_OF_DAY + 1);
+
+  private final long duration;
+  // The meeting length used to find the start times, as in FindMeetingQuery.
+  private final int meetingLength;
+  private final Set<String> optionalAttendees;
+  // The start times at which each attendee is free for the whole meeting.
+  private final Map<String, TimeRangeSet> freeStartTimes = new LinkedHashMap<>();
+  private long version;
+
+  // Indexed by node, with the root at 1 and the children of node i at 2i and 2i + 1. Each node has
+  // an amount added to every start time under it, and the largest and smallest totals under it
+  // counting the amounts added at the node and below but not above.
+  private final int[] added = new int[2 * NUM_LEAVES];
+  private final int[] max = new int[2 * NUM_LEAVES];
+  private final int[] min = new int[2 * NUM_LEAVES];
+
+  /**
+   * Creates the tree for {@code optionalAttendees} and meetings of {@code duration} minutes, from
+   * the events in {@code index}.
+   */
+  public OptionalAttendanceTree(
+      EventIndex index, Collection<String> optionalAttendees, long duration) {
+    this.duration = duration;
+    this.meetingLength = (int) Math.max(1, Math.min(duration, BusyBitmap.MINUTES_PER_DAY + 1));
+    this.optionalAttendees = Collections.unmodifiableSet(new HashSet<>(optionalAttendees));
+    for (String attendee : this.optionalAttendees) {
+      TimeRangeSet starts = freeStartTimesOf(index, attendee);
+      freeStartTimes.put(attendee, starts);
+      addAll(starts, 1);
+    }
+    this.version = index.getVersion();
+  }
+
+  /** Returns the version of the index the tree was last brought up to date with. */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Brings the tree up to date with {@code index}, which must differ from the last index only in
+   * the events of {@code changedAttendees}. This takes O(r log n) time for each changed optional
+   * attendee with r free stretches.
+   */
+  public void update(EventIndex index, Collection<String> changedAttendees) {
+    for (String attendee : changedAttendees) {
+      TimeRangeSet old = freeStartTimes.get(attendee);
+      if (old == null) {
+        continue;
+      }
+      TimeRangeSet starts = freeStartTimesOf(index, attendee);
+      if (!starts.equals(old)) {
+        addAll(old, -1);
+        addAll(starts, 1);
+        freeStartTimes.put(attendee, starts);
+      }
+    }
+    version = index.getVersion();
+  }
+
+  /**
+   * Returns the most optional attendees that could come to a meeting starting in {@code [from,
+   * to)}, or -1 if the range is empty.
+   */
+  public int maxFree(int from, int to) {
+    from = Math.max(from, 0);
+    to = Math.min(to, BusyBitmap.MINUTES_PER_DAY);
+    return from < to ? max(1, 0, NUM_LEAVES, from, to) : -1;
+  }
+
+  /** Returns true if the tree is for the optional attendees and length of {@code request}. */
+  boolean answers(MeetingRequest request) {
+    return duration == request.getDuration()
+        && optionalAttendees.equals(new HashSet<>(request.getOptionalAttendees()));
+  }
+
+  /** Returns the most optional attendees that could come at any of {@code startTimes}, or -1. */
+  int maxFree(TimeRangeSet startTimes) {
+    int best = -1;
+    for (int i = 0; i < startTimes.size(); i++) {
+      best = Math.max(best, maxFree(startTimes.start(i), startTimes.end(i)));
+    }
+    return best;
+  }
+
+  /**
+   * Adds the start times among {@code startTimes} that at least {@code minFree} and at most {@code
+   * maxFree} optional attendees could make.
+   */
+  void collectStartTimes(
+      TimeRangeSet startTimes, int minFree, int maxFree, TimeRangeSet.Builder result) {
+    for (int i = 0; i < startTimes.size(); i++) {
+      int from = Math.max(startTimes.start(i), 0);
+      int to = Math.min(startTimes.end(i), BusyBitmap.MINUTES_PER_DAY);
+      if (from < to) {
+        collect(1, 0, NUM_LEAVES, from, to, minFree, maxFree, result);
+      }
+    }
+  }
+
+  private TimeRangeSet freeStartTimesOf(EventIndex index, String attendee) {
+    TimeRangeSet busy = index.busyTimeOf(Collections.singletonList(attendee));
+    return WHOLE_DAY.subtract(busy).startTimes(meetingLength);
+  }
+
+  private void addAll(TimeRangeSet ranges, int amount) {
+    for (int i = 0; i < ranges.size(); i++) {
+      add(1, 0, NUM_LEAVES, ranges.start(i), ranges.end(i), amount);
+    }
+  }
+
+  // Adds amount to the start times in [from, to) under the node, which covers [lo, hi).
+  private void add(int node, int lo, int hi, int from, int to, int amount) {
+    if (to <= lo || hi <= from) {
+      return;
+    }
+    if (from <= lo && hi <= to) {
+      added[node] += amount;
+      max[node] += amount;
+      min[node] += amount;
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    add(2 * node, lo, mid, from, to, amount);
+    add(2 * node + 1, mid, hi, from, to, amount);
+    max[node] = added[node] + Math.max(max[2 * node], max[2 * node + 1]);
+    min[node] = added[node] + Math.min(min[2 * node], min[2 * node + 1]);
+  }
+
+  // Returns the largest total in [from, to) under the node, not counting the nodes above it.
+  private int max(int node, int lo, int hi, int from, int to) {
+    if (from <= lo && hi <= to) {
+      return max[node];
+    }
+    int mid = (lo + hi) >>> 1;
+    int best = Integer.MIN_VALUE;
+    if (from < mid) {
+      best = Math.max(best, max(2 * node, lo, mid, from, to));
+    }
+    if (mid < to) {
+      best = Math.max(best, max(2 * node + 1, mid, hi, from, to));
+    }
+    return added[node] + best;
+  }
+
+  // Adds the start times in [from, to) under the node whose total is in [low, high], where the
+  // bounds do not count the nodes above it. Whole nodes are added at once when every total under
+  // them is in bounds, so this takes O((m + 1) log n) time for m runs of matching start times.
+  private void collect(
+      int node, int lo, int hi, int from, int to, int low, int high, TimeRangeSet.Builder result) {
+    if (to <= lo || hi <= from || max[node] < low || min[node] > high) {
+      return;
+    }
+    if (from <= lo && hi <= to && min[node] >= low && max[node] <= high) {
+      result.add(lo, hi);
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    // Totals near the limits of an int cannot occur, so the bounds can be moved without overflow
+    // as long as the open upper bound stays open.
+    int childLow = low - added[node];
+    int childHigh = high == Integer.MAX_VALUE ? high : high - added[node];
+    collect(2 * node, lo, mid, from, to, childLow, childHigh, result);
+    collect(2 * node + 1, mid, hi, from, to, childLow, childHigh, result);
+  }
+}
@@ -0,0 +1,171 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the busy time of many attendees on a {@code ForkJoinPool}. The input, either a list of
+ * events or the posting lists of an index, is split in halves until each part is small enough.
+ * Each part marks its busy minutes in a bitmap of its own, and the bitmaps are then combined with
+ * OR on the way back up, so no two threads ever write to the same bitmap.
+ *
+ * <p>The order in which intervals are marked does not matter, so the result is the same as marking
+ * them all on one thread.
+ */
+final class ParallelBusyTime extends RecursiveTask<BusyBitmap> {
+  // How many items a task goes through between two looks at the clock. A power of two.
+  private static final int ITEMS_PER_CHECK = 1024;
+
+  private final Event[] events;
+  private final long[] requiredIds;
+  private final EventIndex index;
+  private final int[] attendeeIds;
+  private final int from;
+  private final int to;
+  private final int leafSize;
+  private final boolean hasDeadline;
+  private final long deadline;
+  // The events or intervals gone through by this task and the tasks it forked. Only read once the
+  // task is done.
+  private long steps;
+
+  private ParallelBusyTime(
+      Event[] events,
+      long[] requiredIds,
+      EventIndex index,
+      int[] attendeeIds,
+      int from,
+      int to,
+      int leafSize,
+      boolean hasDeadline,
+      long deadline) {
+    this.events = events;
+    this.requiredIds = requiredIds;
+    this.index = index;
+    this.attendeeIds = attendeeIds;
+    this.from = from;
+    this.to = to;
+    this.leafSize = leafSize;
+    this.hasDeadline = hasDeadline;
+    this.deadline = deadline;
+  }
+
+  /**
+   * Creates a task that marks the events that any attendee set in the {@code requiredIds} bitset
+   * is at. Neither array may change until the task is done.
+   */
+  static ParallelBusyTime ofEvents(
+      Event[] events, long[] requiredIds, int leafSize, boolean hasDeadline, long deadline) {
+    return new ParallelBusyTime(
+        events, requiredIds, null, null, 0, events.length, leafSize, hasDeadline, deadline);
+  }
+
+  /**
+   * Creates a task that marks the posting lists of the first {@code numIds} attendees in {@code
+   * attendeeIds}, where a part of the input is one attendee.
+   */
+  static ParallelBusyTime ofAttendees(
+      EventIndex index,
+      int[] attendeeIds,
+      int numIds,
+      int leafSize,
+      boolean hasDeadline,
+      long deadline) {
+    return new ParallelBusyTime(
+        null, null, index, attendeeIds, 0, numIds, leafSize, hasDeadline, deadline);
+  }
+
+  /**
+   * Runs the task on {@code pool} and returns the busy minutes, or null if the deadline passed
+   * first.
+   */
+  BusyBitmap invokeOn(ForkJoinPool pool) {
+    return pool.invoke(this);
+  }
+
+  /** Returns the number of events or busy intervals that the finished task went through. */
+  long steps() {
+    return steps;
+  }
+
+  @Override
+  protected BusyBitmap compute() {
+    if (to - from <= leafSize) {
+      return events != null ? markEvents() : markAttendees();
+    }
+    int mid = (from + to) >>> 1;
+    ParallelBusyTime left = split(from, mid);
+    ParallelBusyTime right = split(mid, to);
+    left.fork();
+    BusyBitmap busy = right.compute();
+    BusyBitmap leftBusy = left.join();
+    steps = left.steps + right.steps;
+    if (busy == null || leftBusy == null) {
+      return null;
+    }
+    busy.or(leftBusy);
+    return busy;
+  }
+
+  private ParallelBusyTime split(int from, int to) {
+    return new ParallelBusyTime(
+        events, requiredIds, index, attendeeIds, from, to, leafSize, hasDeadline, deadline);
+  }
+
+  private BusyBitmap markEvents() {
+    BusyBitmap busy = new BusyBitmap();
+    for (int i = from; i < to; i++) {
+      if (isPastDeadline(++steps)) {
+        return null;
+      }
+      if (isAttendedByAny(events[i], requiredIds)) {
+        busy.markBusy(events[i].getWhen());
+      }
+    }
+    return busy;
+  }
+
+  private BusyBitmap markAttendees() {
+    BusyBitmap busy = new BusyBitmap();
+    for (int i = from; i < to; i++) {
+      IntervalCursor intervals = index.byStart(attendeeIds[i]);
+      while (intervals.next()) {
+        if (isPastDeadline(++steps)) {
+          return null;
+        }
+        busy.markBusy(intervals.start(), intervals.end());
+      }
+    }
+    return busy;
+  }
+
+  private boolean isPastDeadline(long steps) {
+    return (steps & (ITEMS_PER_CHECK - 1)) == 0
+        && hasDeadline
+        && System.nanoTime() - deadline >= 0;
+  }
+
+  private static boolean isAttendedByAny(Event event, long[] attendeeIds) {
+    for (int id : event.getAttendeeIds()) {
+      int word = id >>> 6;
+      if (word < attendeeIds.length && (attendeeIds[word] & (1L << id)) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,240 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable map from {@code long} keys to values, kept as an AVL tree. Changing the map returns
+ * a new map that shares every node off the path to the changed key with the old one, so a change
+ * takes O(log n) time and space and the old map stays valid. This is what lets {@code
+ * InMemoryEventStore} keep every version of its posting lists that a query might still be using.
+ */
+final class PersistentLongMap<V> {
+  private static final PersistentLongMap<Object> EMPTY = new PersistentLongMap<>(null);
+
+  private final Node<V> root;
+
+  private PersistentLongMap(Node<V> root) {
+    this.root = root;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <V> PersistentLongMap<V> empty() {
+    return (PersistentLongMap<V>) EMPTY;
+  }
+
+  int size() {
+    return size(root);
+  }
+
+  boolean isEmpty() {
+    return root == null;
+  }
+
+  /** Returns the value for {@code key}, or null if there is none. */
+  V get(long key) {
+    Node<V> node = root;
+    while (node != null) {
+      if (key < node.key) {
+        node = node.left;
+      } else if (key > node.key) {
+        node = node.right;
+      } else {
+        return node.value;
+      }
+    }
+    return null;
+  }
+
+  /** Returns a map with {@code key} set to {@code value}. */
+  PersistentLongMap<V> put(long key, V value) {
+    return new PersistentLongMap<>(put(root, key, value));
+  }
+
+  /** Returns a map without {@code key}. */
+  PersistentLongMap<V> remove(long key) {
+    Node<V> newRoot = remove(root, key);
+    return newRoot == root ? this : new PersistentLongMap<>(newRoot);
+  }
+
+  /** Returns a cursor over the entries of the map in order of key. */
+  Cursor<V> cursor() {
+    return new Cursor<>(root);
+  }
+
+  private static <V> Node<V> put(Node<V> node, long key, V value) {
+    if (node == null) {
+      return new Node<>(key, value, null, null);
+    }
+    if (key < node.key) {
+      return balance(node.key, node.value, put(node.left, key, value), node.right);
+    }
+    if (key > node.key) {
+      return balance(node.key, node.value, node.left, put(node.right, key, value));
+    }
+    return new Node<>(key, value, node.left, node.right);
+  }
+
+  private static <V> Node<V> remove(Node<V> node, long key) {
+    if (node == null) {
+      return null;
+    }
+    if (key < node.key) {
+      Node<V> left = remove(node.left, key);
+      return left == node.left ? node : balance(node.key, node.value, left, node.right);
+    }
+    if (key > node.key) {
+      Node<V> right = remove(node.right, key);
+      return right == node.right ? node : balance(node.key, node.value, node.left, right);
+    }
+    if (node.left == null) {
+      return node.right;
+    }
+    if (node.right == null) {
+      return node.left;
+    }
+    // Replace the node with the smallest entry of its right subtree.
+    Node<V> successor = node.right;
+    while (successor.left != null) {
+      successor = successor.left;
+    }
+    return balance(successor.key, successor.value, node.left, removeMin(node.right));
+  }
+
+  private static <V> Node<V> removeMin(Node<V> node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    return balance(node.key, node.value, removeMin(node.left), node.right);
+  }
+
+  // Builds a node from two subtrees whose heights differ by at most two, rotating if needed so
+  // that they differ by at most one.
+  private static <V> Node<V> balance(long key, V value, Node<V> left, Node<V> right) {
+    int leftHeight = height(left);
+    int rightHeight = height(right);
+    if (leftHeight > rightHeight + 1) {
+      if (height(left.left) >= height(left.right)) {
+        return new Node<>(
+            left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+      }
+      return new Node<>(
+          left.right.key,
+          left.right.value,
+          new Node<>(left.key, left.value, left.left, left.right.left),
+          new Node<>(key, value, left.right.right, right));
+    }
+    if (rightHeight > leftHeight + 1) {
+      if (height(right.right) >= height(right.left)) {
+        return new Node<>(
+            right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+      }
+      return new Node<>(
+          right.left.key,
+          right.left.value,
+          new Node<>(key, value, left, right.left.left),
+          new Node<>(right.key, right.value, right.left.right, right.right));
+    }
+    return new Node<>(key, value, left, right);
+  }
+
+  private static int height(Node<?> node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static int size(Node<?> node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static final class Node<V> {
+    final long key;
+    final V value;
+    final Node<V> left;
+    final Node<V> right;
+    final int height;
+    final int size;
+
+    Node(long key, V value, Node<V> left, Node<V> right) {
+      this.key = key;
+      this.value = value;
+      this.left = left;
+      this.right = right;
+      this.height = Math.max(height(left), height(right)) + 1;
+      this.size = size(left) + size(right) + 1;
+    }
+  }
+
+  /**
+   * Walks the entries of a map in order of key. A new cursor is positioned before the first entry,
+   * so {@link #next()} has to be called before the first entry can be read.
+   */
+  static final class Cursor<V> {
+    // The nodes whose entries are still to come, with the next one on top. The height of an AVL
+    // tree is at most about 1.44 log2(n), so this never needs to grow.
+    @SuppressWarnings("unchecked")
+    private final Node<V>[] stack = (Node<V>[]) new Node<?>[64];
+    private int depth;
+    private Node<V> current;
+
+    private Cursor(Node<V> root) {
+      pushLeftSpine(root);
+    }
+
+    /** Moves the cursor to before the first entry of {@code map}, and returns it. */
+    Cursor<V> reset(PersistentLongMap<V> map) {
+      // Drop the nodes of the old map so that they are not kept alive.
+      Arrays.fill(stack, null);
+      depth = 0;
+      current = null;
+      pushLeftSpine(map.root);
+      return this;
+    }
+
+    /** Moves to the next entry. Returns false if there are no more entries. */
+    boolean next() {
+      if (depth == 0) {
+        current = null;
+        return false;
+      }
+      current = stack[--depth];
+      stack[depth] = null;
+      pushLeftSpine(current.right);
+      return true;
+    }
+
+    long key() {
+      return entry().key;
+    }
+
+    V value() {
+      return entry().value;
+    }
+
+    private Node<V> entry() {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      return current;
+    }
+
+    private void pushLeftSpine(Node<V> node) {
+      for (; node != null; node = node.left) {
+        stack[depth++] = node;
+      }
+    }
+  }
+}
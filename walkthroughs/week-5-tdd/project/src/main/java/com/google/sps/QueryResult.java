@@ -0,0 +1,44 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+
+/**
+ * The answer to a query that had a deadline. If the deadline passed before the query finished,
+ * the answer is the best the query had found by then and is marked as partial.
+ */
+public final class QueryResult {
+  private final Collection<TimeRange> times;
+  private final boolean partial;
+
+  QueryResult(Collection<TimeRange> times, boolean partial) {
+    this.times = times;
+    this.partial = partial;
+  }
+
+  /**
+   * Returns the times at which the meeting could take place. For a partial answer, every returned
+   * time works for the required attendees, but later or better times may have been missed.
+   */
+  public Collection<TimeRange> getTimes() {
+    return times;
+  }
+
+  /** Returns true if the query was stopped before it finished. */
+  public boolean isPartial() {
+    return partial;
+  }
+}
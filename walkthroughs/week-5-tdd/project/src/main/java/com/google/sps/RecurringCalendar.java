@@ -0,0 +1,139 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A calendar of recurring events that hands out their occurrences one day at a time, for {@code
+ * FindMeetingQuery} to search over a stretch of days. No occurrence is stored: the events of a
+ * day are worked out while they are read, by merging the occurrences of every series that are on
+ * that day in order of their start, so only the days that the search reaches are ever expanded. A
+ * one-off event is a series with a count of one.
+ *
+ * <p>Reading a day looks at every series once to find its first occurrence on the day, and then
+ * takes {@code O(log series)} time for each occurrence. The calendar never changes, so it can be
+ * read from several threads at once.
+ */
+public final class RecurringCalendar implements EventsByDay {
+  private final RecurringEvent[] series;
+
+  /** Creates a calendar of {@code series}. The calendar keeps its own copy of the collection. */
+  public RecurringCalendar(Collection<RecurringEvent> series) {
+    if (series == null) {
+      throw new IllegalArgumentException("series cannot be null. Use empty collection instead.");
+    }
+
+    this.series = series.toArray(new RecurringEvent[0]);
+  }
+
+  /**
+   * Returns the occurrences that are on {@code day}, cut at the ends of the day, in order of their
+   * start. The collection is worked out again each time it is read, so callers that read it more
+   * than once should copy it.
+   */
+  @Override
+  public Collection<Event> eventsOn(long day) {
+    return new Day(EpochRange.startOfDay(day));
+  }
+
+  /** The occurrences on one day. */
+  private final class Day extends AbstractCollection<Event> {
+    private final long dayStart;
+    private int size = -1;
+
+    Day(long dayStart) {
+      this.dayStart = dayStart;
+    }
+
+    @Override
+    public Iterator<Event> iterator() {
+      return new Occurrences(dayStart);
+    }
+
+    @Override
+    public int size() {
+      if (size < 0) {
+        int count = 0;
+        for (Iterator<Event> it = iterator(); it.hasNext(); it.next()) {
+          count++;
+        }
+        size = count;
+      }
+      return size;
+    }
+  }
+
+  /**
+   * Merges the occurrences of every series on one day. The heap holds the next occurrence of each
+   * series that has one left on the day, as its start from the start of the day in the high 32
+   * bits and the position of the series in the low 32 bits.
+   */
+  private final class Occurrences implements Iterator<Event> {
+    private final long dayStart;
+    private final long dayEnd;
+    private final LongHeap heap = new LongHeap();
+    private Event next;
+
+    Occurrences(long dayStart) {
+      this.dayStart = dayStart;
+      this.dayEnd = dayStart + EpochRange.MINUTES_PER_DAY;
+      for (int i = 0; i < series.length; i++) {
+        push(i, series[i].firstEndingAfter(dayStart));
+      }
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Event next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      Event result = next;
+      advance();
+      return result;
+    }
+
+    private void advance() {
+      next = null;
+      while (next == null && !heap.isEmpty()) {
+        long packed = heap.poll();
+        int i = (int) packed;
+        RecurringEvent event = series[i];
+        long start = dayStart + (packed >> 32);
+        push(i, event.firstEndingAfter(start + event.getDuration()));
+        if (!event.isException(start)) {
+          next = event.occurrenceOn(dayStart, start);
+        }
+      }
+    }
+
+    // Adds occurrence k of series i to the heap if it is on the day.
+    private void push(int i, long k) {
+      RecurringEvent event = series[i];
+      if (event.hasOccurrence(k) && event.startOf(k) < dayEnd) {
+        heap.add(((event.startOf(k) - dayStart) << 32) | i);
+      }
+    }
+  }
+}
@@ -0,0 +1,173 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A meeting that takes place again and again, such as a daily standup. Occurrence {@code k} starts
+ * at {@code firstStart + k * period} minutes, counted as in {@code EpochRange}, and lasts {@code
+ * duration} minutes. The series can end after a number of occurrences, before a given minute, or
+ * never, and single occurrences can be left out. Occurrences are only worked out when they are
+ * asked for, so a series takes the same small space however long it runs.
+ */
+public final class RecurringEvent {
+  private final String title;
+  private final Set<String> attendees;
+  private final int[] attendeeIds;
+  private final long firstStart;
+  private final int duration;
+  private final long period;
+  // The number of occurrences before the exceptions are left out. Long.MAX_VALUE if the series
+  // never ends.
+  private final long numOccurrences;
+  // The starts of the occurrences that are left out, sorted.
+  private final long[] exceptions;
+
+  private RecurringEvent(Builder builder) {
+    this.title = builder.title;
+    this.attendees = Collections.unmodifiableSet(new HashSet<>(builder.attendees));
+    this.attendeeIds = AttendeeRegistry.shared().internAll(this.attendees);
+    this.firstStart = builder.firstStart;
+    this.duration = builder.duration;
+    this.period = builder.period;
+    long beforeUntil = Long.MAX_VALUE;
+    if (builder.until != Long.MAX_VALUE) {
+      beforeUntil =
+          builder.until <= firstStart ? 0 : (builder.until - firstStart + period - 1) / period;
+    }
+    this.numOccurrences = Math.min(builder.count, beforeUntil);
+    this.exceptions = Arrays.copyOf(builder.exceptions, builder.numExceptions);
+    Arrays.sort(this.exceptions);
+  }
+
+  /** Returns the human-readable name of the meeting. */
+  public String getTitle() {
+    return title;
+  }
+
+  /** Returns a read-only set of the people who attend every occurrence. */
+  public Set<String> getAttendees() {
+    return attendees;
+  }
+
+  /** Returns the length of each occurrence in minutes. */
+  public int getDuration() {
+    return duration;
+  }
+
+  /**
+   * Returns the number of the first occurrence that ends after {@code minute}, which may be past
+   * the last occurrence. Exceptions are not taken into account.
+   */
+  long firstEndingAfter(long minute) {
+    return Math.max(0, Math.floorDiv(minute - duration - firstStart, period) + 1);
+  }
+
+  /** Returns true if the series has an occurrence with number {@code k}. */
+  boolean hasOccurrence(long k) {
+    return k >= 0 && k < numOccurrences;
+  }
+
+  /** Returns the start of occurrence {@code k}. */
+  long startOf(long k) {
+    return firstStart + k * period;
+  }
+
+  /** Returns true if the occurrence that starts at {@code start} has been left out. */
+  boolean isException(long start) {
+    return exceptions.length > 0 && Arrays.binarySearch(exceptions, start) >= 0;
+  }
+
+  /**
+   * Returns the occurrence starting at {@code start} as an event on the day that starts at {@code
+   * dayStart}, cut at the ends of the day. The event shares its attendees with this series.
+   */
+  Event occurrenceOn(long dayStart, long start) {
+    int from = (int) Math.max(0, start - dayStart);
+    int to = (int) Math.min(EpochRange.MINUTES_PER_DAY, start + duration - dayStart);
+    return new Event(title, TimeRange.fromStartEnd(from, to, false), attendees, attendeeIds);
+  }
+
+  /** Collects the parts of a {@code RecurringEvent}. */
+  public static final class Builder {
+    private final String title;
+    private final Collection<String> attendees;
+    private final long firstStart;
+    private final int duration;
+    private final long period;
+    private long count = Long.MAX_VALUE;
+    private long until = Long.MAX_VALUE;
+    private long[] exceptions = new long[0];
+    private int numExceptions;
+
+    /**
+     * Starts a series whose first occurrence starts at {@code firstStart}, and whose occurrences
+     * last {@code duration} minutes and start {@code period} minutes apart.
+     */
+    public Builder(
+        String title, Collection<String> attendees, long firstStart, int duration, long period) {
+      if (title == null) {
+        throw new IllegalArgumentException("title cannot be null");
+      }
+
+      if (attendees == null) {
+        throw new IllegalArgumentException("attendees cannot be null. Use empty array instead.");
+      }
+
+      if (duration <= 0 || period <= 0) {
+        throw new IllegalArgumentException("duration and period must be positive");
+      }
+
+      this.title = title;
+      this.attendees = attendees;
+      this.firstStart = firstStart;
+      this.duration = duration;
+      this.period = period;
+    }
+
+    /** Ends the series after {@code count} occurrences, counting the ones that are left out. */
+    public Builder setCount(long count) {
+      if (count < 0) {
+        throw new IllegalArgumentException("count cannot be negative");
+      }
+      this.count = count;
+      return this;
+    }
+
+    /** Ends the series before the first occurrence that would start at or after {@code until}. */
+    public Builder setUntil(long until) {
+      this.until = until;
+      return this;
+    }
+
+    /** Leaves out the occurrence that starts at {@code start}, if there is one. */
+    public Builder addException(long start) {
+      if (numExceptions == exceptions.length) {
+        exceptions = Arrays.copyOf(exceptions, Math.max(4, numExceptions * 2));
+      }
+      exceptions[numExceptions++] = start;
+      return this;
+    }
+
+    public RecurringEvent build() {
+      return new RecurringEvent(this);
+    }
+  }
+}
@@ -0,0 +1,341 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable set of minutes, stored as sorted ranges that neither overlap nor touch. The ranges
+ * are kept as packed {@code [start, end)} pairs in a single {@code int[]}, and {@code TimeRange}
+ * objects are only created when {@link #toTimeRanges()} is called.
+ *
+ * <p>Every set operation walks both sets once, so it takes time linear in the number of ranges.
+ */
+public final class TimeRangeSet {
+  public static final TimeRangeSet EMPTY = new TimeRangeSet(new int[0], 0);
+
+  // bounds[2 * i] is the start of range i and bounds[2 * i + 1] is its exclusive end.
+  private final int[] bounds;
+  private final int size;
+
+  private TimeRangeSet(int[] bounds, int size) {
+    this.bounds = bounds;
+    this.size = size;
+  }
+
+  /** Returns a set of the minutes in {@code ranges}, which may overlap and be in any order. */
+  public static TimeRangeSet of(Collection<TimeRange> ranges) {
+    Builder builder = new Builder();
+    for (TimeRange range : ranges) {
+      builder.add(range.start(), range.end());
+    }
+    return builder.build();
+  }
+
+  /** Returns a set of the minutes in {@code [start, end)}. */
+  public static TimeRangeSet of(int start, int end) {
+    return start < end ? new TimeRangeSet(new int[] {start, end}, 1) : EMPTY;
+  }
+
+  /** Returns the number of ranges in the set. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns true if the set has no minutes in it. */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Returns the start of range {@code i}. */
+  public int start(int i) {
+    return bounds[2 * i];
+  }
+
+  /** Returns the exclusive end of range {@code i}. */
+  public int end(int i) {
+    return bounds[2 * i + 1];
+  }
+
+  /** Returns true if {@code point} is in one of the ranges. */
+  public boolean contains(int point) {
+    // Find the last range that starts at or before the point.
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (start(mid) <= point) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high >= 0 && point < end(high);
+  }
+
+  /** Returns the minutes that are in this set, {@code other}, or both. */
+  public TimeRangeSet union(TimeRangeSet other) {
+    Builder builder = new Builder(size + other.size);
+    int i = 0;
+    int j = 0;
+    while (i < size || j < other.size) {
+      if (j == other.size || (i < size && start(i) <= other.start(j))) {
+        builder.add(start(i), end(i));
+        i++;
+      } else {
+        builder.add(other.start(j), other.end(j));
+        j++;
+      }
+    }
+    return builder.build();
+  }
+
+  /** Returns the minutes that are in both this set and {@code other}. */
+  public TimeRangeSet intersect(TimeRangeSet other) {
+    Builder builder = new Builder(Math.max(size, other.size));
+    int i = 0;
+    int j = 0;
+    while (i < size && j < other.size) {
+      builder.add(Math.max(start(i), other.start(j)), Math.min(end(i), other.end(j)));
+      // Move past whichever range ends first, since it cannot overlap anything else.
+      if (end(i) < other.end(j)) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return builder.build();
+  }
+
+  /** Returns the minutes that are in this set but not in {@code other}. */
+  public TimeRangeSet subtract(TimeRangeSet other) {
+    Builder builder = new Builder(size + other.size);
+    int j = 0;
+    for (int i = 0; i < size; i++) {
+      int start = start(i);
+      int end = end(i);
+      // Skip the ranges of other that end before this range starts.
+      while (j < other.size && other.end(j) <= start) {
+        j++;
+      }
+      // Cut out every range of other that overlaps this one.
+      int k = j;
+      while (k < other.size && other.start(k) < end) {
+        builder.add(start, other.start(k));
+        start = Math.max(start, other.end(k));
+        k++;
+      }
+      builder.add(start, end);
+      // The last overlapping range may also overlap the next range of this set.
+      j = Math.max(j, k - 1);
+    }
+    return builder.build();
+  }
+
+  /** Returns the ranges of this set that are at least {@code minDuration} minutes long. */
+  public TimeRangeSet filterByMinDuration(long minDuration) {
+    int kept = 0;
+    for (int i = 0; i < size; i++) {
+      if (end(i) - start(i) >= minDuration) {
+        kept++;
+      }
+    }
+    if (kept == size) {
+      return this;
+    }
+
+    int[] result = new int[2 * kept];
+    int next = 0;
+    for (int i = 0; i < size; i++) {
+      if (end(i) - start(i) >= minDuration) {
+        result[next++] = start(i);
+        result[next++] = end(i);
+      }
+    }
+    return new TimeRangeSet(result, kept);
+  }
+
+  /**
+   * Returns the minutes at which a meeting of {@code duration} minutes could start and still fit
+   * entirely inside one of the ranges of this set.
+   */
+  public TimeRangeSet startTimes(int duration) {
+    Builder builder = new Builder(size);
+    for (int i = 0; i < size; i++) {
+      builder.add(start(i), end(i) - duration + 1);
+    }
+    return builder.build();
+  }
+
+  /** Returns the ranges of this set as {@code TimeRange}s, in order. */
+  public List<TimeRange> toTimeRanges() {
+    List<TimeRange> ranges = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      ranges.add(TimeRange.fromStartEnd(start(i), end(i), false));
+    }
+    return ranges;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof TimeRangeSet)) {
+      return false;
+    }
+    TimeRangeSet that = (TimeRangeSet) other;
+    if (size != that.size) {
+      return false;
+    }
+    for (int i = 0; i < 2 * size; i++) {
+      if (bounds[i] != that.bounds[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 1;
+    for (int i = 0; i < 2 * size; i++) {
+      hash = 31 * hash + bounds[i];
+    }
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("TimeRangeSet: {");
+    for (int i = 0; i < size; i++) {
+      builder.append(i == 0 ? "" : ", ").append('[').append(start(i)).append(", ");
+      builder.append(end(i)).append(')');
+    }
+    return builder.append('}').toString();
+  }
+
+  /**
+   * Collects ranges into a {@code TimeRangeSet}. Ranges that are added in order of their start are
+   * merged as they arrive; ranges that are added out of order are sorted when the set is built.
+   * Empty ranges are ignored. A builder can be cleared and reused.
+   */
+  public static final class Builder {
+    private int[] bounds;
+    private int size;
+    private boolean sorted = true;
+
+    public Builder() {
+      this(8);
+    }
+
+    Builder(int expectedSize) {
+      bounds = new int[2 * Math.max(expectedSize, 1)];
+    }
+
+    /** Adds the minutes in {@code [start, end)}. */
+    public Builder add(int start, int end) {
+      if (start >= end) {
+        return this;
+      }
+      if (size > 0 && sorted) {
+        int last = 2 * size - 1;
+        if (start < bounds[last - 1]) {
+          sorted = false;
+        } else if (start <= bounds[last]) {
+          // The range overlaps or touches the last one, so just extend it.
+          bounds[last] = Math.max(bounds[last], end);
+          return this;
+        }
+      }
+      if (2 * size + 2 > bounds.length) {
+        bounds = Arrays.copyOf(bounds, bounds.length * 2);
+      }
+      bounds[2 * size] = start;
+      bounds[2 * size + 1] = end;
+      size++;
+      return this;
+    }
+
+    /** Returns true if nothing has been added since the builder was created or cleared. */
+    public boolean isEmpty() {
+      return size == 0;
+    }
+
+    /** Removes every range that was added. */
+    public Builder clear() {
+      size = 0;
+      sorted = true;
+      return this;
+    }
+
+    /** Returns the number of ranges added so far, once they are merged. */
+    int size() {
+      sort();
+      return size;
+    }
+
+    /** Returns the start of range {@code i}, counted as in {@link #size()}. */
+    int start(int i) {
+      sort();
+      return bounds[2 * i];
+    }
+
+    /** Returns the exclusive end of range {@code i}, counted as in {@link #size()}. */
+    int end(int i) {
+      sort();
+      return bounds[2 * i + 1];
+    }
+
+    /** Returns the set of every minute that was added. */
+    public TimeRangeSet build() {
+      if (size == 0) {
+        return EMPTY;
+      }
+      sort();
+      return new TimeRangeSet(Arrays.copyOf(bounds, 2 * size), size);
+    }
+
+    private void sort() {
+      if (!sorted) {
+        sortAndMerge();
+      }
+    }
+
+    private void sortAndMerge() {
+      // Pack each range into a long so that a primitive sort orders them by start.
+      long[] packed = new long[size];
+      for (int i = 0; i < size; i++) {
+        packed[i] = ((long) bounds[2 * i] << 32) | (bounds[2 * i + 1] & 0xFFFFFFFFL);
+      }
+      Arrays.sort(packed);
+
+      int merged = 0;
+      for (long range : packed) {
+        int start = (int) (range >> 32);
+        int end = (int) range;
+        if (merged > 0 && start <= bounds[2 * merged - 1]) {
+          bounds[2 * merged - 1] = Math.max(bounds[2 * merged - 1], end);
+        } else {
+          bounds[2 * merged] = start;
+          bounds[2 * merged + 1] = end;
+          merged++;
+        }
+      }
+      size = merged;
+      sorted = true;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.AvailabilityHeatmap;
+import com.google.sps.EpochRange;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Returns how many of a group of people are busy in each part of the day.
+ *
+ * <p>{@code GET /availability-heatmap?attendee=<name>&attendee=<name>&bucket=<minutes>} returns a
+ * JSON array with one count for each bucket of that many minutes, starting at midnight. The
+ * bucket defaults to one minute. With {@code &encoding=base64}, the counts are instead sent as
+ * plain text: the base64 of each count as a 4-byte little-endian integer, one after another,
+ * which a browser can read straight into an {@code Int32Array}.
+ */
+@WebServlet("/availability-heatmap")
+public class AvailabilityHeatmapServlet extends HttpServlet {
+  private final Gson gson = new Gson();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    int bucketMinutes;
+    try {
+      String bucket = request.getParameter("bucket");
+      bucketMinutes = bucket == null ? 1 : Integer.parseInt(bucket);
+    } catch (NumberFormatException e) {
+      bucketMinutes = 0;
+    }
+    if (bucketMinutes <= 0 || bucketMinutes > EpochRange.MINUTES_PER_DAY) {
+      response.sendError(
+          HttpServletResponse.SC_BAD_REQUEST, "The bucket must be between 1 and 1440 minutes");
+      return;
+    }
+
+    String encoding = request.getParameter("encoding");
+    if (encoding != null && !encoding.equals("base64")) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown encoding: " + encoding);
+      return;
+    }
+
+    String[] names = request.getParameterValues("attendee");
+    List<String> attendees = names == null ? Collections.emptyList() : Arrays.asList(names);
+    int[] counts =
+        AvailabilityHeatmap.busyCounts(
+            SharedCalendar.EVENT_STORE.snapshot(), attendees, bucketMinutes);
+
+    if (encoding == null) {
+      response.setContentType("application/json");
+      response.getWriter().println(gson.toJson(counts));
+    } else {
+      ByteBuffer bytes = ByteBuffer.allocate(4 * counts.length).order(ByteOrder.LITTLE_ENDIAN);
+      bytes.asIntBuffer().put(counts);
+      response.setContentType("text/plain");
+      response.getWriter().println(Base64.getEncoder().encodeToString(bytes.array()));
+    }
+  }
+}
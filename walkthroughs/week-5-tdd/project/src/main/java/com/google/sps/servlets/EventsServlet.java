@@ -0,0 +1,147 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.sps.Event;
+import com.google.sps.TimeRange;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Changes the events of the calendar while it is running.
+ *
+ * <ul>
+ *   <li>{@code GET /events} returns every event, by ID.
+ *   <li>{@code POST /events} adds the event in the body and returns {@code {"id": <id>}}.
+ *   <li>{@code PUT /events?id=<id>} replaces that event with the one in the body.
+ *   <li>{@code DELETE /events?id=<id>} removes that event.
+ * </ul>
+ *
+ * <p>Events in a body have the same JSON form as the ones returned by {@code /get-events}.
+ */
+@WebServlet("/events")
+public class EventsServlet extends HttpServlet {
+  private final Gson gson = new Gson();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType("application/json");
+    response.getWriter().println(gson.toJson(SharedCalendar.EVENT_STORE.getEventsById()));
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Event event = readEvent(request, response);
+    if (event == null) {
+      return;
+    }
+
+    long id = SharedCalendar.EVENT_STORE.add(event);
+    response.setContentType("application/json");
+    response.getWriter().println(gson.toJson(Collections.singletonMap("id", id)));
+  }
+
+  @Override
+  public void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Long id = readId(request, response);
+    if (id == null) {
+      return;
+    }
+    Event event = readEvent(request, response);
+    if (event == null) {
+      return;
+    }
+
+    if (SharedCalendar.EVENT_STORE.update(id, event)) {
+      response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    } else {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No event with ID " + id);
+    }
+  }
+
+  @Override
+  public void doDelete(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    Long id = readId(request, response);
+    if (id == null) {
+      return;
+    }
+
+    if (SharedCalendar.EVENT_STORE.remove(id)) {
+      response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    } else {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No event with ID " + id);
+    }
+  }
+
+  // Returns the ID in the query string, or sends an error and returns null if there is none.
+  private static Long readId(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    try {
+      return Long.parseLong(request.getParameter("id"));
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing or invalid event ID");
+      return null;
+    }
+  }
+
+  // Returns the event in the body, or sends an error and returns null if it is not valid.
+  private Event readEvent(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    EventJson json;
+    try {
+      json = gson.fromJson(request.getReader(), EventJson.class);
+    } catch (JsonParseException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid JSON: " + e.getMessage());
+      return null;
+    }
+
+    if (json == null || json.title == null || json.when == null || json.attendees == null) {
+      response.sendError(
+          HttpServletResponse.SC_BAD_REQUEST, "An event needs a title, a time and attendees");
+      return null;
+    }
+    if (json.when.duration() < 0) {
+      response.sendError(
+          HttpServletResponse.SC_BAD_REQUEST, "An event cannot end before it starts");
+      return null;
+    }
+    // The end is compared through the duration, which cannot overflow.
+    int endOfDay = TimeRange.WHOLE_DAY.end();
+    if (json.when.start() < TimeRange.START_OF_DAY
+        || json.when.start() > endOfDay
+        || json.when.duration() > endOfDay - json.when.start()) {
+      response.sendError(
+          HttpServletResponse.SC_BAD_REQUEST, "An event must start and end within the day");
+      return null;
+    }
+    // Gson does not run constructors, so the event is rebuilt to set it up properly.
+    return new Event(json.title, json.when, json.attendees);
+  }
+
+  /** The JSON form of an event. */
+  private static final class EventJson {
+    String title;
+    TimeRange when;
+    Collection<String> attendees;
+  }
+}
@@ -15,7 +15,6 @@
 package com.google.sps.servlets;
 
 import com.google.gson.Gson;
-import com.google.sps.Events;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -27,7 +26,7 @@ public class GetEventsServlet extends HttpServlet {
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     Gson gson = new Gson();
-    String jsonResponse = gson.toJson(Events.events);
+    String jsonResponse = gson.toJson(SharedCalendar.EVENT_STORE.snapshot().getEvents());
 
     // Send the JSON back as the response
     response.setContentType("application/json");
@@ -0,0 +1,165 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import com.google.sps.EventIndex;
+import com.google.sps.MeetingRequest;
+import com.google.sps.QueryResult;
+import com.google.sps.TimeRange;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Answers a JSON array of meeting requests with a JSON array of results, one per request and in
+ * the same order. Requests are answered in parallel as they are read, and results are written as
+ * soon as every earlier result has been written. Every request of a batch sees the calendar as it
+ * was when the batch started, however it changes while the batch runs.
+ *
+ * <p>A result is {@code {"times": [...], "partial": <boolean>}}. Each request has the same time to
+ * run as one sent to {@code /query}, counted from when it starts; if it runs out, the times found
+ * so far are sent with {@code "partial": true}. A request that is not valid gets {@code {"error":
+ * <message>}} instead, and the rest of the batch goes on. A body that is not a JSON array of
+ * requests is answered with a 400, like a bad body sent to {@code /query}, unless results have
+ * already been sent, in which case the response is cut off.
+ */
+@WebServlet("/query-batch")
+public class QueryBatchServlet extends HttpServlet {
+  private static final Type TIMES_TYPE = new TypeToken<Collection<TimeRange>>() {}.getType();
+
+  // How long each query may run before the best answer found so far is sent instead.
+  private static final long TIMEOUT_MILLIS = 2000;
+
+  // How many requests of one batch can be waiting for their result to be written. This bounds the
+  // memory a batch needs, however large it is.
+  private static final int MAX_PENDING_PER_THREAD = 16;
+
+  private final Gson gson = new Gson();
+
+  // Shared by every batch, so that a burst of batches cannot start more threads than there are
+  // processors.
+  private final int numThreads = Runtime.getRuntime().availableProcessors();
+  private ExecutorService executor;
+
+  @Override
+  public void init() {
+    executor = Executors.newFixedThreadPool(numThreads);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response)
+      throws IOException, ServletException {
+    response.setContentType("application/json");
+    JsonReader reader = new JsonReader(request.getReader());
+    JsonWriter writer = new JsonWriter(response.getWriter());
+
+    EventIndex snapshot = SharedCalendar.EVENT_STORE.snapshot();
+    Deque<Future<QueryResult>> pending = new ArrayDeque<>();
+    try {
+      answer(reader, writer, snapshot, pending);
+    } catch (JsonParseException | MalformedJsonException | EOFException | IllegalStateException e) {
+      if (response.isCommitted()) {
+        throw new ServletException("Invalid JSON in the batch", e);
+      }
+      response.resetBuffer();
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid JSON: " + e.getMessage());
+    } finally {
+      // Only left over if the batch failed part of the way through.
+      for (Future<QueryResult> result : pending) {
+        result.cancel(true);
+      }
+    }
+  }
+
+  // Reads the requests of the batch, starts their queries and writes their results, keeping the
+  // queries whose results are still to be written in pending.
+  private void answer(
+      JsonReader reader, JsonWriter writer, EventIndex snapshot, Deque<Future<QueryResult>> pending)
+      throws IOException, ServletException {
+    reader.beginArray();
+    writer.beginArray();
+    while (reader.hasNext()) {
+      MeetingRequest meetingRequest = gson.fromJson(reader, MeetingRequest.class);
+      String problem = QueryServlet.problemWith(meetingRequest);
+      if (problem != null) {
+        CompletableFuture<QueryResult> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(new IllegalArgumentException(problem));
+        pending.add(rejected);
+      } else {
+        pending.add(
+            executor.submit(
+                () ->
+                    SharedCalendar.QUERY_CACHE.query(
+                        snapshot, meetingRequest, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)));
+      }
+      if (pending.size() >= numThreads * MAX_PENDING_PER_THREAD) {
+        writeResult(writer, pending.remove());
+      }
+    }
+    reader.endArray();
+    while (!pending.isEmpty()) {
+      writeResult(writer, pending.remove());
+    }
+    writer.endArray();
+    writer.flush();
+  }
+
+  // Waits for a result and writes it out.
+  private void writeResult(JsonWriter writer, Future<QueryResult> result)
+      throws IOException, ServletException {
+    QueryResult answer;
+    try {
+      answer = result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a query result");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IllegalArgumentException) {
+        writer.beginObject().name("error").value(e.getCause().getMessage()).endObject();
+        return;
+      }
+      throw new ServletException("A query in the batch failed", e.getCause());
+    }
+    writer.beginObject().name("times");
+    gson.toJson(answer.getTimes(), TIMES_TYPE, writer);
+    writer.name("partial").value(answer.isPartial()).endObject();
+  }
+}
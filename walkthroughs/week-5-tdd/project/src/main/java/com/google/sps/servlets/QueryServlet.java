@@ -15,13 +15,11 @@
 package com.google.sps.servlets;
 
 import com.google.gson.Gson;
-import com.google.sps.Events;
-import com.google.sps.FindMeetingQuery;
+import com.google.gson.JsonParseException;
 import com.google.sps.MeetingRequest;
-import com.google.sps.TimeRange;
+import com.google.sps.QueryResult;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -29,23 +27,60 @@ import javax.servlet.http.HttpServletResponse;
 
 @WebServlet("/query")
 public class QueryServlet extends HttpServlet {
+  // How long a query may run before the best answer found so far is sent instead.
+  private static final long TIMEOUT_MILLIS = 2000;
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     Gson gson = new Gson();
 
     // Convert the JSON to an instance of MeetingRequest.
-    MeetingRequest meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
+    MeetingRequest meetingRequest;
+    try {
+      meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
+    } catch (JsonParseException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid JSON: " + e.getMessage());
+      return;
+    }
+    String problem = problemWith(meetingRequest);
+    if (problem != null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, problem);
+      return;
+    }
 
     // Find the possible meeting times.
-    FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
-    Collection<TimeRange> answer =
-        findMeetingQuery.query(Arrays.asList(Events.events), meetingRequest);
+    QueryResult answer =
+        SharedCalendar.QUERY_CACHE.query(
+            SharedCalendar.EVENT_STORE.snapshot(),
+            meetingRequest,
+            TIMEOUT_MILLIS,
+            TimeUnit.MILLISECONDS);
 
     // Convert the times to JSON
-    String jsonResponse = gson.toJson(answer);
+    String jsonResponse = gson.toJson(answer.getTimes());
+    if (answer.isPartial()) {
+      response.setHeader("X-Partial-Result", "true");
+    }
 
     // Send the JSON back as the response
     response.setContentType("application/json");
     response.getWriter().println(jsonResponse);
   }
+
+  /**
+   * Returns what is wrong with a request read from JSON, or null if nothing is. Gson fills in the
+   * fields without going through the setters, so their checks have to be made again here.
+   */
+  static String problemWith(MeetingRequest meetingRequest) {
+    if (meetingRequest == null) {
+      return "Missing meeting request";
+    }
+    if (!meetingRequest.hasAttendeeLists()) {
+      return "attendees and optional_attendees must be lists";
+    }
+    if (meetingRequest.getMinOptionalAttendees() < 0) {
+      return "min_optional_attendees cannot be negative";
+    }
+    return null;
+  }
 }
@@ -0,0 +1,39 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.EventStore;
+import com.google.sps.Events;
+import com.google.sps.FindMeetingQuery;
+import com.google.sps.InMemoryEventStore;
+import com.google.sps.MeetingQueryCache;
+import java.util.Arrays;
+
+/** The calendar that every servlet reads and changes, and the cache of answers about it. */
+final class SharedCalendar {
+  private static final int CACHE_SIZE = 1024;
+
+  /** The events, starting out as the ones in {@code Events}. */
+  static final EventStore EVENT_STORE = new InMemoryEventStore(Arrays.asList(Events.events));
+
+  /**
+   * The answers to recent queries. Every change to the events gives them a new version, so
+   * answers about older versions are never returned.
+   */
+  static final MeetingQueryCache QUERY_CACHE =
+      new MeetingQueryCache(new FindMeetingQuery(), CACHE_SIZE);
+
+  private SharedCalendar() {}
+}
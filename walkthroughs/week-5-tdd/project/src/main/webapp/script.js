@@ -29,9 +29,14 @@ function sendMeetingRequest() {
   // split it into an array of names
   const optionalAttendees = optionalAttendeesNamesString.split(/\s*,\s*/);
 
+  // how many of the optional attendees must be able to come, if any
+  const minOptionalAttendees =
+      Number(document.getElementById('min-optional-attendees').value) || 0;
+
   // Create the request to send to the server using the data we collected from
   // the web form.
-  const meetingRequest = new MeetingRequest(duration, attendees, optionalAttendees);
+  const meetingRequest = new MeetingRequest(
+      duration, attendees, optionalAttendees, minOptionalAttendees);
 
   queryServer(meetingRequest).then((timeRanges) => {
     updateResultsOnPage(timeRanges);
@@ -92,10 +97,11 @@ function timeToString(totalMinutes) {
  * Request for possible meeting times.
  */
 class MeetingRequest {
-  constructor(duration, attendees, optional_attendees) {
+  constructor(duration, attendees, optional_attendees, min_optional_attendees) {
     this.duration = duration;
     this.attendees = attendees;
     this.optional_attendees = optional_attendees;
+    this.min_optional_attendees = min_optional_attendees;
   }
 }
 
@@ -0,0 +1,75 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AttendeeRegistryTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  @Test
+  public void idsAreDenseAndStable() {
+    AttendeeRegistry registry = new AttendeeRegistry();
+
+    Assert.assertEquals(0, registry.intern(PERSON_A));
+    Assert.assertEquals(1, registry.intern(PERSON_B));
+    Assert.assertEquals(0, registry.intern(PERSON_A));
+    Assert.assertEquals(2, registry.size());
+    Assert.assertEquals(PERSON_B, registry.name(1));
+  }
+
+  @Test
+  public void lookupDoesNotRegister() {
+    AttendeeRegistry registry = new AttendeeRegistry();
+
+    Assert.assertEquals(-1, registry.lookup(PERSON_A));
+    Assert.assertEquals(0, registry.size());
+  }
+
+  @Test
+  public void internAllIsSortedWithoutDuplicates() {
+    AttendeeRegistry registry = new AttendeeRegistry();
+    registry.intern(PERSON_C);
+    registry.intern(PERSON_A);
+
+    int[] actual = registry.internAll(Arrays.asList(PERSON_A, PERSON_B, PERSON_C, PERSON_A));
+    int[] expected = {0, 1, 2};
+
+    Assert.assertArrayEquals(expected, actual);
+  }
+
+  @Test
+  public void eventsUseTheSharedRegistry() {
+    Event event =
+        new Event(
+            "Event 1",
+            TimeRange.fromStartDuration(0, 30),
+            Arrays.asList(PERSON_B, PERSON_A));
+
+    AttendeeRegistry shared = AttendeeRegistry.shared();
+    int[] expected = {shared.lookup(PERSON_A), shared.lookup(PERSON_B)};
+    Arrays.sort(expected);
+
+    Assert.assertArrayEquals(expected, event.getAttendeeIds());
+  }
+}
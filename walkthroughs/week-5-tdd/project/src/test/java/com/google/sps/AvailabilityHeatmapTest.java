@@ -0,0 +1,114 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AvailabilityHeatmapTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+  private static final int TIME_0845AM = TimeRange.getTimeInMinutes(8, 45);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  @Test
+  public void countsPeopleBusyInEachBucket() {
+    EventSnapshot snapshot =
+        new EventSnapshot(
+            Arrays.asList(
+                new Event(
+                    "Event 1",
+                    TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+                    Arrays.asList(PERSON_A, PERSON_B)),
+                // Person A again in the same hour, which must not count them twice.
+                new Event(
+                    "Event 2",
+                    TimeRange.fromStartEnd(TIME_0845AM, TIME_0900AM, false),
+                    Arrays.asList(PERSON_A)),
+                new Event(
+                    "Event 3",
+                    TimeRange.fromStartEnd(TIME_0830AM, TIME_1000AM, false),
+                    Arrays.asList(PERSON_C))));
+
+    int[] counts =
+        AvailabilityHeatmap.busyCounts(
+            snapshot, Arrays.asList(PERSON_A, PERSON_B, PERSON_C, PERSON_A), 60);
+
+    int[] expected = new int[24];
+    expected[8] = 3;
+    expected[9] = 1;
+    Assert.assertArrayEquals(expected, counts);
+  }
+
+  @Test
+  public void unevenBucketsMatchCountingEveryMinute() {
+    Random random = new Random(25);
+    List<String> people = Arrays.asList("A", "B", "C", "D", "E");
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.duration());
+      int end = Math.min(TimeRange.WHOLE_DAY.duration(), start + 1 + random.nextInt(120));
+      events.add(
+          new Event(
+              "Event " + i,
+              TimeRange.fromStartEnd(start, end, false),
+              Arrays.asList(people.get(random.nextInt(people.size())))));
+    }
+    InMemoryEventStore store = new InMemoryEventStore(events);
+
+    for (int bucket : new int[] {1, 7, 60, 1000, TimeRange.WHOLE_DAY.duration()}) {
+      int numBuckets = (TimeRange.WHOLE_DAY.duration() + bucket - 1) / bucket;
+      int[] expected = new int[numBuckets];
+      for (String person : people.subList(0, 4)) {
+        boolean[] busy = new boolean[numBuckets];
+        for (Event event : events) {
+          if (event.getAttendees().contains(person)) {
+            for (int minute = event.getWhen().start(); minute < event.getWhen().end(); minute++) {
+              busy[minute / bucket] = true;
+            }
+          }
+        }
+        for (int i = 0; i < numBuckets; i++) {
+          expected[i] += busy[i] ? 1 : 0;
+        }
+      }
+
+      Assert.assertArrayEquals(
+          expected, AvailabilityHeatmap.busyCounts(store.snapshot(), people.subList(0, 4), bucket));
+    }
+  }
+
+  @Test
+  public void unknownPeopleAreNeverBusy() {
+    int[] counts =
+        AvailabilityHeatmap.busyCounts(
+            new EventSnapshot(new ArrayList<>()), Arrays.asList("Nobody at all"), 30);
+
+    Assert.assertArrayEquals(new int[48], counts);
+  }
+}
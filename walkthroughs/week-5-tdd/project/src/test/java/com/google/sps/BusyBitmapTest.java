@@ -0,0 +1,115 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class BusyBitmapTest {
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+
+  @Test
+  public void emptyBitmapIsOneFreeDay() {
+    BusyBitmap bitmap = new BusyBitmap();
+
+    Assert.assertTrue(bitmap.isEmpty());
+    Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY), bitmap.freeRanges(30));
+  }
+
+  @Test
+  public void busyRangeSplitsTheDay() {
+    BusyBitmap bitmap = new BusyBitmap();
+    bitmap.markBusy(TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false));
+
+    List<TimeRange> expected =
+        Arrays.asList(
+            TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0830AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertFalse(bitmap.isBusy(TIME_0800AM - 1));
+    Assert.assertTrue(bitmap.isBusy(TIME_0800AM));
+    Assert.assertTrue(bitmap.isBusy(TIME_0830AM - 1));
+    Assert.assertFalse(bitmap.isBusy(TIME_0830AM));
+    Assert.assertEquals(expected, bitmap.freeRanges(30));
+  }
+
+  @Test
+  public void shortGapsAreSkipped() {
+    BusyBitmap bitmap = new BusyBitmap();
+    bitmap.markBusy(TimeRange.START_OF_DAY, TIME_0830AM);
+    bitmap.markBusy(TIME_0900AM, TimeRange.END_OF_DAY + 1);
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false)),
+        bitmap.freeRanges(30));
+    Assert.assertEquals(Arrays.asList(), bitmap.freeRanges(31));
+  }
+
+  @Test
+  public void rangesOutsideTheDayAreClamped() {
+    BusyBitmap bitmap = new BusyBitmap();
+    bitmap.markBusy(-60, 60);
+    bitmap.markBusy(TimeRange.END_OF_DAY, TimeRange.END_OF_DAY + 120);
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(60, TimeRange.END_OF_DAY, false)),
+        bitmap.freeRanges(1));
+  }
+
+  @Test
+  public void matchesMinuteByMinuteScan() {
+    Random random = new Random(7);
+    for (int round = 0; round < 200; round++) {
+      BusyBitmap bitmap = new BusyBitmap();
+      boolean[] busy = new boolean[BusyBitmap.MINUTES_PER_DAY];
+      int numRanges = random.nextInt(10);
+      for (int i = 0; i < numRanges; i++) {
+        int start = random.nextInt(BusyBitmap.MINUTES_PER_DAY);
+        int end = start + random.nextInt(200);
+        bitmap.markBusy(start, end);
+        for (int minute = start; minute < Math.min(end, busy.length); minute++) {
+          busy[minute] = true;
+        }
+      }
+
+      int minDuration = random.nextInt(90);
+      List<TimeRange> expected = new ArrayList<>();
+      int runStart = -1;
+      for (int minute = 0; minute <= busy.length; minute++) {
+        boolean free = minute < busy.length && !busy[minute];
+        if (free && runStart < 0) {
+          runStart = minute;
+        } else if (!free && runStart >= 0) {
+          if (minute - runStart >= minDuration) {
+            expected.add(TimeRange.fromStartEnd(runStart, minute, false));
+          }
+          runStart = -1;
+        }
+      }
+
+      Assert.assertEquals(expected, bitmap.freeRanges(minDuration));
+    }
+  }
+}
@@ -0,0 +1,253 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class DurableEventStoreTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void changesSurviveReopening() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Map<Long, Event> expected;
+    long removed;
+    try (DurableEventStore store = DurableEventStore.open(directory)) {
+      long first = store.add(event("Event 1", TIME_0800AM, TIME_0900AM, PERSON_A));
+      removed = store.add(event("Event 2", TIME_0900AM, TIME_1000AM, PERSON_B));
+      store.update(first, event("Event 1 moved", TIME_0900AM, TIME_1000AM, PERSON_A));
+      store.remove(removed);
+      expected = store.getEventsById();
+    }
+
+    try (DurableEventStore store = DurableEventStore.open(directory)) {
+      Assert.assertEquals(expected, store.getEventsById());
+      // IDs are never given out twice, even across a restart.
+      Assert.assertTrue(store.add(event("Event 3", TIME_0800AM, TIME_0900AM, PERSON_B)) > removed);
+    }
+  }
+
+  @Test
+  public void partlyWrittenRecordIsDropped() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Event kept = event("Event 1", TIME_0800AM, TIME_0900AM, PERSON_A);
+    try (DurableEventStore store = DurableEventStore.open(directory)) {
+      store.add(kept);
+      store.add(event("Event 2", TIME_0900AM, TIME_1000AM, PERSON_B));
+    }
+    // Cut the last record short, as if the process had stopped while writing it.
+    Path log = logs(directory).get(0);
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    try (DurableEventStore store = DurableEventStore.open(directory)) {
+      Assert.assertEquals(Arrays.asList(kept), new ArrayList<>(store.getEventsById().values()));
+      // The log was repaired, so later changes are not lost behind the damaged record.
+      store.add(event("Event 3", TIME_0900AM, TIME_1000AM, PERSON_B));
+    }
+    try (DurableEventStore store = DurableEventStore.open(directory)) {
+      Assert.assertEquals(2, store.getEventsById().size());
+    }
+  }
+
+  @Test
+  public void compactionReplacesTheLogs() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Map<Long, Event> expected;
+    // Every change is past the threshold, so the store compacts in the background after each one.
+    try (DurableEventStore store = DurableEventStore.open(directory, 1)) {
+      for (int i = 0; i < 20; i++) {
+        long id = store.add(event("Event " + i, i * 10, i * 10 + 30, PERSON_A));
+        if (i % 3 == 0) {
+          store.remove(id);
+        }
+      }
+      expected = store.getEventsById();
+      // Waits for the compaction in the background, and then leaves a single log.
+      store.compact();
+      Assert.assertEquals(1, logs(directory).size());
+    }
+
+    Assert.assertTrue(Files.exists(directory.resolve("snapshot")));
+    try (DurableEventStore store = DurableEventStore.open(directory)) {
+      Assert.assertEquals(expected, store.getEventsById());
+    }
+  }
+
+  @Test
+  public void leftoverTemporarySnapshotDoesNotStopCompaction() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Map<Long, Event> expected;
+    try (DurableEventStore store = DurableEventStore.open(directory)) {
+      store.add(event("Event 1", TIME_0800AM, TIME_0900AM, PERSON_A));
+      store.add(event("Event 2", TIME_0900AM, TIME_1000AM, PERSON_B));
+      expected = store.getEventsById();
+      // As if an earlier compaction had stopped while writing its snapshot.
+      Files.write(directory.resolve("snapshot.tmp"), new byte[] {1, 2, 3});
+
+      store.compact();
+      Assert.assertFalse(Files.exists(directory.resolve("snapshot.tmp")));
+      Assert.assertEquals(1, logs(directory).size());
+    }
+
+    try (DurableEventStore store = DurableEventStore.open(directory)) {
+      Assert.assertEquals(expected, store.getEventsById());
+    }
+  }
+
+  @Test
+  public void failedSnapshotDoesNotFailChanges() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Map<Long, Event> expected;
+    try (DurableEventStore store = DurableEventStore.open(directory, 1)) {
+      // A directory that is not empty cannot be replaced by the new snapshot.
+      Files.createDirectories(directory.resolve("snapshot").resolve("in-the-way"));
+      for (int i = 0; i < 10; i++) {
+        store.add(event("Event " + i, i * 10, i * 10 + 30, PERSON_A));
+      }
+      try {
+        store.compact();
+        Assert.fail();
+      } catch (IOException e) {
+        // Expected.
+      }
+      Assert.assertFalse(Files.exists(directory.resolve("snapshot.tmp")));
+      // The store still takes changes.
+      store.add(event("Event 10", TIME_0800AM, TIME_0900AM, PERSON_B));
+      expected = store.getEventsById();
+    }
+
+    Files.delete(directory.resolve("snapshot").resolve("in-the-way"));
+    Files.delete(directory.resolve("snapshot"));
+    try (DurableEventStore store = DurableEventStore.open(directory)) {
+      Assert.assertEquals(expected, store.getEventsById());
+    }
+  }
+
+  @Test
+  public void failedRotationDoesNotFailChanges() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Map<Long, Event> expected;
+    try (DurableEventStore store = DurableEventStore.open(directory, 1)) {
+      // The log that the next rotation would create is already there, so it cannot be created.
+      Files.createFile(directory.resolve(String.format("log-%019d", 1)));
+      for (int i = 0; i < 10; i++) {
+        store.add(event("Event " + i, i * 10, i * 10 + 30, PERSON_A));
+      }
+      try {
+        store.compact();
+        Assert.fail();
+      } catch (IOException e) {
+        // Expected.
+      }
+      // The store kept the log it had, and still takes changes.
+      store.add(event("Event 10", TIME_0800AM, TIME_0900AM, PERSON_B));
+      expected = store.getEventsById();
+    }
+
+    try (DurableEventStore store = DurableEventStore.open(directory)) {
+      Assert.assertEquals(expected, store.getEventsById());
+    }
+  }
+
+  @Test
+  public void closingWhileCompactingIsSafe() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Map<Long, Event> expected;
+    DurableEventStore store = DurableEventStore.open(directory, 1);
+    for (int i = 0; i < 50; i++) {
+      store.add(event("Event " + i, i, i + 30, PERSON_A));
+    }
+    expected = store.getEventsById();
+    // Compactions that are still waiting to run are dropped rather than failing.
+    store.close();
+
+    try (DurableEventStore reopened = DurableEventStore.open(directory)) {
+      Assert.assertEquals(expected, reopened.getEventsById());
+    }
+  }
+
+  @Test
+  public void concurrentWritersAreAllRecovered() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    int numThreads = 8;
+    int eventsPerThread = 100;
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try (DurableEventStore store = DurableEventStore.open(directory, 4096)) {
+      List<Future<?>> writers = new ArrayList<>();
+      for (int thread = 0; thread < numThreads; thread++) {
+        String person = "Person " + thread;
+        writers.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < eventsPerThread; i++) {
+                    store.add(event(person + " event " + i, i, i + 15, person));
+                  }
+                }));
+      }
+      for (Future<?> writer : writers) {
+        writer.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    try (DurableEventStore store = DurableEventStore.open(directory)) {
+      Assert.assertEquals(numThreads * eventsPerThread, store.getEventsById().size());
+    }
+  }
+
+  private static Event event(String title, int start, int end, String attendee) {
+    return new Event(title, TimeRange.fromStartEnd(start, end, false), Arrays.asList(attendee));
+  }
+
+  private static List<Path> logs(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(file -> file.getFileName().toString().startsWith("log-"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+}
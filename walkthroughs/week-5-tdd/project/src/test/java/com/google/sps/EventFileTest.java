@@ -0,0 +1,172 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventFileTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void eventsSurviveTheRoundTrip() throws IOException {
+    List<Event> events =
+        Arrays.asList(
+            new Event(
+                "Café ☕",
+                TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+                Arrays.asList(PERSON_A, PERSON_B)),
+            new Event(
+                "Nobody",
+                TimeRange.fromStartDuration(TIME_0900AM, 0),
+                Collections.<String>emptyList()),
+            new Event("All day", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_B)));
+    Path path = folder.newFile().toPath();
+
+    EventFile.write(path, events);
+    EventFile file = EventFile.open(path);
+
+    Assert.assertEquals(3, file.size());
+    Assert.assertEquals(events, file.events());
+    Assert.assertEquals(events.get(0).getAttendees(), file.get(0).getAttendees());
+  }
+
+  @Test
+  public void queriesMatchTheOriginalEvents() throws IOException {
+    String[] people = {"Person A", "Person B", "Person C", "Person D"};
+    Random random = new Random(20);
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      int start = random.nextInt(24 * 4) * 15;
+      int end = Math.min(TimeRange.WHOLE_DAY.duration(), start + random.nextInt(8) * 15);
+      events.add(
+          new Event(
+              "Event " + i,
+              TimeRange.fromStartEnd(start, end, false),
+              Arrays.asList(people[random.nextInt(people.length)])));
+    }
+    Path path = folder.newFile().toPath();
+    EventFile.write(path, events);
+    EventFile file = EventFile.open(path);
+
+    FindMeetingQuery query = new FindMeetingQuery();
+    MeetingRequest request = new MeetingRequest(Arrays.asList("Person A"), 30);
+    request.addOptionalAttendee("Person B");
+    Assert.assertEquals(query.query(events, request), query.query(file.events(), request));
+  }
+
+  @Test
+  public void indexAnswersLikeTheEvents() throws IOException {
+    List<Event> events =
+        Arrays.asList(
+            new Event(
+                "Event 1",
+                TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+                Arrays.asList(PERSON_A, PERSON_B)),
+            new Event(
+                "Event 2", TimeRange.fromStartDuration(TIME_0900AM, 30), Arrays.asList(PERSON_B)));
+    Path path = folder.newFile().toPath();
+    EventFile.write(path, events);
+    EventFile file = EventFile.open(path);
+
+    FindMeetingQuery query = new FindMeetingQuery();
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), 30);
+    request.addOptionalAttendee(PERSON_B);
+    Assert.assertEquals(query.query(events, request), query.query(file.index(), request));
+    Assert.assertSame(file.index(), file.index());
+  }
+
+  @Test
+  public void rejectsFilesThatAreNotEventFiles() throws IOException {
+    Path notAnEventFile = folder.newFile().toPath();
+    Files.write(notAnEventFile, "BEGIN:VCALENDAR".getBytes("UTF-8"));
+    Path truncated = folder.newFile().toPath();
+    EventFile.write(
+        truncated,
+        Arrays.asList(new Event("Event 1", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_A))));
+    byte[] bytes = Files.readAllBytes(truncated);
+    Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+
+    for (Path path : Arrays.asList(notAnEventFile, truncated)) {
+      try {
+        EventFile.open(path);
+        Assert.fail();
+      } catch (IOException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void damageInsideTheColumnsIsReported() throws IOException {
+    Path path = folder.newFile().toPath();
+    EventFile.write(
+        path, Arrays.asList(new Event("Event 1", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_A))));
+    byte[] bytes = Files.readAllBytes(path);
+    // With one event and one attendee, the attendee offsets end at byte 40 and the attendee is
+    // at byte 44.
+    Path missingString = folder.newFile().toPath();
+    Files.write(missingString, withInt(bytes, 44, Integer.MAX_VALUE));
+    Path badOffset = folder.newFile().toPath();
+    Files.write(badOffset, withInt(bytes, 40, 5));
+
+    for (Path damaged : Arrays.asList(missingString, badOffset)) {
+      // Opening only reads the header, so the damage is found when the columns are read.
+      EventFile file = EventFile.open(damaged);
+      try {
+        file.verify();
+        Assert.fail();
+      } catch (IOException expected) {
+      }
+      try {
+        file.get(0);
+        Assert.fail();
+      } catch (IllegalStateException expected) {
+      }
+      try {
+        file.index();
+        Assert.fail();
+      } catch (IllegalStateException expected) {
+      }
+    }
+    EventFile.open(path).verify();
+  }
+
+  private static byte[] withInt(byte[] bytes, int offset, int value) {
+    byte[] result = bytes.clone();
+    ByteBuffer.wrap(result).putInt(offset, value);
+    return result;
+  }
+}
@@ -0,0 +1,168 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventSnapshotTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_0930AM = TimeRange.getTimeInMinutes(9, 30);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  @Test
+  public void postingListsAreOrderedByStartAndByEnd() {
+    Event late =
+        new Event(
+            "Late",
+            TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false),
+            Arrays.asList(PERSON_A));
+    Event allMorning =
+        new Event(
+            "All morning",
+            TimeRange.fromStartEnd(TIME_0800AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_A, PERSON_B));
+    Event empty =
+        new Event("Empty", TimeRange.fromStartDuration(TIME_0830AM, 0), Arrays.asList(PERSON_A));
+    EventSnapshot snapshot = new EventSnapshot(Arrays.asList(late, allMorning, empty));
+
+    // Events that take no time are left out of the lists.
+    int id = AttendeeRegistry.shared().lookup(PERSON_A);
+    IntervalCursor byStart = snapshot.byStart(id);
+    Assert.assertTrue(byStart.next());
+    Assert.assertEquals(TIME_0800AM, byStart.start());
+    Assert.assertEquals(TIME_1000AM, byStart.end());
+    Assert.assertTrue(byStart.next());
+    Assert.assertEquals(TIME_0900AM, byStart.start());
+    Assert.assertFalse(byStart.next());
+
+    IntervalCursor byEnd = snapshot.byEnd(id);
+    Assert.assertTrue(byEnd.next());
+    Assert.assertEquals(TIME_0930AM, byEnd.end());
+    Assert.assertTrue(byEnd.next());
+    Assert.assertEquals(TIME_1000AM, byEnd.end());
+    Assert.assertFalse(byEnd.next());
+    Assert.assertEquals(Arrays.asList(late, allMorning, empty), snapshot.getEvents());
+  }
+
+  @Test
+  public void unknownAttendeesHaveEmptyLists() {
+    EventSnapshot snapshot = new EventSnapshot(Collections.<Event>emptyList());
+
+    Assert.assertFalse(snapshot.byStart(-1).next());
+    Assert.assertFalse(snapshot.byEnd(-1).next());
+    Assert.assertEquals(TimeRangeSet.EMPTY, snapshot.busyTimeOf(Arrays.asList("Nobody")));
+  }
+
+  @Test
+  public void cursorsAreReset() {
+    EventSnapshot first =
+        new EventSnapshot(
+            Arrays.asList(
+                new Event(
+                    "Event 1",
+                    TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+                    Arrays.asList(PERSON_A))));
+    EventSnapshot second =
+        new EventSnapshot(
+            Arrays.asList(
+                new Event(
+                    "Event 2",
+                    TimeRange.fromStartEnd(TIME_0930AM, TIME_1000AM, false),
+                    Arrays.asList(PERSON_A))));
+    int id = AttendeeRegistry.shared().lookup(PERSON_A);
+
+    IntervalCursor cursor = first.byStart(id);
+    Assert.assertTrue(cursor.next());
+    IntervalCursor reused = second.byStart(id, cursor);
+    Assert.assertSame(cursor, reused);
+    Assert.assertTrue(reused.next());
+    Assert.assertEquals(TIME_0930AM, reused.start());
+    Assert.assertFalse(reused.next());
+    // A reused cursor for someone without a list has nothing in it.
+    Assert.assertFalse(second.byEnd(-1, reused).next());
+  }
+
+  @Test
+  public void freeTimeCombinesAttendees() {
+    Collection<Event> events =
+        Arrays.asList(
+            new Event(
+                "Event 1",
+                TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+                Arrays.asList(PERSON_A)),
+            new Event(
+                "Event 2",
+                TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false),
+                Arrays.asList(PERSON_B)),
+            new Event(
+                "Event 3",
+                TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false),
+                Arrays.asList(PERSON_C)));
+    EventSnapshot snapshot = new EventSnapshot(events);
+
+    List<TimeRange> actual = snapshot.freeTimeOf(Arrays.asList(PERSON_A, PERSON_B), 30);
+    List<TimeRange> expected =
+        Arrays.asList(
+            TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false),
+            TimeRange.fromStartEnd(TIME_0930AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void laterSnapshotsHaveLargerVersions() {
+    EventSnapshot first = new EventSnapshot(Collections.<Event>emptyList());
+    EventSnapshot second = new EventSnapshot(Collections.<Event>emptyList());
+
+    Assert.assertTrue(second.getVersion() > first.getVersion());
+  }
+
+  @Test
+  public void queryWithSnapshotMatchesQueryWithEvents() {
+    Collection<Event> events =
+        Arrays.asList(
+            new Event(
+                "Event 1",
+                TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+                Arrays.asList(PERSON_A)),
+            new Event(
+                "Event 2",
+                TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false),
+                Arrays.asList(PERSON_B, PERSON_C)));
+    EventSnapshot snapshot = new EventSnapshot(events);
+    FindMeetingQuery query = new FindMeetingQuery();
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), 30);
+    request.addOptionalAttendee(PERSON_C);
+
+    Assert.assertEquals(query.query(events, request), query.query(snapshot, request));
+  }
+}
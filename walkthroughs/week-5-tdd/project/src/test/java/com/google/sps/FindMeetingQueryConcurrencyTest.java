@@ -0,0 +1,186 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Checks that one {@code FindMeetingQuery} can be shared by many threads at once. */
+@RunWith(JUnit4.class)
+public final class FindMeetingQueryConcurrencyTest {
+  private static final String[] PEOPLE = {
+    "Person A", "Person B", "Person C", "Person D", "Person E", "Person F", "Person G", "Person H"
+  };
+
+  private static final int NUM_CALENDARS = 50;
+  private static final int NUM_THREADS = 8;
+  private static final int ROUNDS = 20;
+
+  @Test
+  public void sharedEngineMatchesFreshEngines() throws Exception {
+    Random random = new Random(42);
+    List<Collection<Event>> calendars = new ArrayList<>();
+    List<MeetingRequest> requests = new ArrayList<>();
+    List<Collection<TimeRange>> expected = new ArrayList<>();
+    for (int i = 0; i < NUM_CALENDARS; i++) {
+      Collection<Event> events = randomEvents(random);
+      MeetingRequest request = randomRequest(random);
+      calendars.add(events);
+      requests.add(request);
+      // A brand new engine for every query gives us the answers to compare against.
+      expected.add(new FindMeetingQuery().query(events, request));
+    }
+
+    final FindMeetingQuery shared = new FindMeetingQuery();
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    try {
+      List<Future<Collection<TimeRange>>> futures = new ArrayList<>();
+      for (int round = 0; round < ROUNDS; round++) {
+        for (int i = 0; i < NUM_CALENDARS; i++) {
+          final Collection<Event> events = calendars.get(i);
+          final MeetingRequest request = requests.get(i);
+          futures.add(
+              executor.submit(
+                  new Callable<Collection<TimeRange>>() {
+                    @Override
+                    public Collection<TimeRange> call() {
+                      return shared.query(events, request);
+                    }
+                  }));
+        }
+      }
+
+      for (int i = 0; i < futures.size(); i++) {
+        Assert.assertEquals(expected.get(i % NUM_CALENDARS), futures.get(i).get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void resultsAreNotSharedBetweenQueries() {
+    FindMeetingQuery shared = new FindMeetingQuery();
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PEOPLE[0]), 30);
+    Collection<Event> noEvents = new ArrayList<>();
+
+    Collection<TimeRange> first = shared.query(noEvents, request);
+    Collection<TimeRange> second = shared.query(noEvents, request);
+    first.clear();
+
+    Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY), second);
+  }
+
+  @Test
+  public void parallelModeMatchesSequentialMode() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      // A threshold of zero sends every query with events through the pool.
+      FindMeetingQuery parallel = new FindMeetingQuery(pool, 0);
+      FindMeetingQuery sequential = new FindMeetingQuery(pool, Integer.MAX_VALUE);
+      Random random = new Random(18);
+      for (int i = 0; i < 200; i++) {
+        Collection<Event> events = randomEvents(random);
+        MeetingRequest request = randomRequest(random);
+        EventSnapshot snapshot = new EventSnapshot(events);
+        InMemoryEventStore store = new InMemoryEventStore(events);
+
+        Collection<TimeRange> expected = sequential.query(events, request);
+        Assert.assertEquals(expected, parallel.query(events, request));
+        Assert.assertEquals(expected, parallel.query(snapshot, request));
+        Assert.assertEquals(expected, parallel.query(store.snapshot(), request));
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void parallelModeHandlesAnAllHandsMeeting() {
+    Random random = new Random(2000);
+    List<String> everyone = new ArrayList<>();
+    List<Event> events = new ArrayList<>();
+    for (int person = 0; person < 2000; person++) {
+      String name = "Employee " + person;
+      everyone.add(name);
+      for (int i = 0; i < 4; i++) {
+        int start = random.nextInt(24 * 4) * 15;
+        events.add(
+            new Event(
+                name + " event " + i,
+                TimeRange.fromStartDuration(start, 15),
+                Arrays.asList(name)));
+      }
+    }
+    MeetingRequest request = new MeetingRequest(everyone, 15);
+    EventSnapshot snapshot = new EventSnapshot(events);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      FindMeetingQuery parallel = new FindMeetingQuery(pool, 1000);
+      Collection<TimeRange> expected =
+          new FindMeetingQuery(pool, Integer.MAX_VALUE).query(events, request);
+      Assert.assertEquals(expected, parallel.query(events, request));
+      Assert.assertEquals(expected, parallel.query(snapshot, request));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static Collection<Event> randomEvents(Random random) {
+    int numEvents = random.nextInt(12);
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < numEvents; i++) {
+      // Keep everything on a 15 minute grid so that events often touch and overlap.
+      int start = random.nextInt(24 * 4) * 15;
+      int end = Math.min(24 * 60, start + (1 + random.nextInt(12)) * 15);
+      List<String> attendees = new ArrayList<>();
+      attendees.add(PEOPLE[random.nextInt(PEOPLE.length)]);
+      if (random.nextBoolean()) {
+        attendees.add(PEOPLE[random.nextInt(PEOPLE.length)]);
+      }
+      events.add(new Event("Event " + i, TimeRange.fromStartEnd(start, end, false), attendees));
+    }
+    return events;
+  }
+
+  private static MeetingRequest randomRequest(Random random) {
+    List<String> attendees = new ArrayList<>();
+    for (String person : PEOPLE) {
+      if (random.nextInt(4) == 0) {
+        attendees.add(person);
+      }
+    }
+    MeetingRequest request = new MeetingRequest(attendees, (1 + random.nextInt(8)) * 15);
+    for (String person : PEOPLE) {
+      if (random.nextInt(4) == 0) {
+        request.addOptionalAttendee(person);
+      }
+    }
+    return request;
+  }
+}
@@ -14,9 +14,15 @@
 
 package com.google.sps;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -631,4 +637,501 @@ public final class FindMeetingQueryTest {
 
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void mostOptionalAttendeesAcrossChangingGroups() {
+    // A and B are each free for part of the day, and their free time overlaps only between the
+    // end of B's event and the start of A's second event. Just that overlap is returned, as a
+    // meeting there has both of them.
+    //
+    // Events  : |----A----|       |----A----|
+    //           |------B------|
+    // Day     : |---------------------------|
+    // Options :               |-1-|
+
+    Collection<Event> events =
+        Arrays.asList(
+            new Event(
+                "Event 1",
+                TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+                Arrays.asList(PERSON_A)),
+            new Event(
+                "Event 2",
+                TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true),
+                Arrays.asList(PERSON_A)),
+            new Event(
+                "Event 3",
+                TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false),
+                Arrays.asList(PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(NO_ATTENDEES, DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_A);
+    request.addOptionalAttendee(PERSON_B);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(
+            TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test(timeout = 2000)
+  public void manyOptionalAttendees() {
+    // Every optional attendee has a few short meetings spread over the day. Enumerating groups of
+    // optional attendees would take far too long here.
+    int numPeople = 250;
+    Random random = new Random(1);
+    List<Event> events = new ArrayList<>();
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    for (int person = 0; person < numPeople; person++) {
+      String name = "Optional " + person;
+      request.addOptionalAttendee(name);
+      for (int i = 0; i < 8; i++) {
+        int start = random.nextInt(TimeRange.WHOLE_DAY.duration() - DURATION_60_MINUTES);
+        events.add(
+            new Event(
+                name + " event " + i,
+                TimeRange.fromStartDuration(start, DURATION_30_MINUTES),
+                Arrays.asList(name)));
+      }
+    }
+
+    Collection<TimeRange> actual = query.query(events, request);
+
+    Assert.assertFalse(actual.isEmpty());
+    for (TimeRange range : actual) {
+      Assert.assertTrue(range.duration() >= DURATION_30_MINUTES);
+    }
+  }
+
+  @Test
+  public void matchesBruteForce() {
+    String[] people = {PERSON_A, PERSON_B, PERSON_C, PERSON_D, PERSON_E};
+    Random random = new Random(5);
+    for (int round = 0; round < 500; round++) {
+      List<Event> events = new ArrayList<>();
+      int numEvents = random.nextInt(12);
+      for (int i = 0; i < numEvents; i++) {
+        int start = random.nextInt(24 * 4) * 15;
+        int end = Math.min(TimeRange.WHOLE_DAY.duration(), start + (1 + random.nextInt(12)) * 15);
+        events.add(
+            new Event(
+                "Event " + i,
+                TimeRange.fromStartEnd(start, end, false),
+                Arrays.asList(people[random.nextInt(people.length)])));
+      }
+
+      List<String> required = new ArrayList<>();
+      List<String> optional = new ArrayList<>();
+      for (String person : people) {
+        int choice = random.nextInt(3);
+        if (choice == 0) {
+          required.add(person);
+        } else if (choice == 1) {
+          optional.add(person);
+        }
+      }
+      MeetingRequest request = new MeetingRequest(required, (1 + random.nextInt(8)) * 15);
+      for (String person : optional) {
+        request.addOptionalAttendee(person);
+      }
+
+      List<TimeRange> expected = bruteForce(events, request);
+      EventSnapshot snapshot = new EventSnapshot(events);
+      Assert.assertEquals(expected, query.query(events, request));
+      Assert.assertEquals(expected, query.query(snapshot, request));
+
+      int k = 1 + random.nextInt(4);
+      List<TimeRange> expectedTopK = bruteForceTopK(events, request, k);
+      Assert.assertEquals(
+          expectedTopK,
+          query.topK(events, request, k, FindMeetingQuery.Ranking.MOST_OPTIONAL_ATTENDEES));
+      Assert.assertEquals(
+          expectedTopK,
+          query.topK(snapshot, request, k, FindMeetingQuery.Ranking.MOST_OPTIONAL_ATTENDEES));
+
+      List<TimeRange> requiredTimes =
+          new ArrayList<>(
+              query.query(events, new MeetingRequest(required, request.getDuration())));
+      Assert.assertEquals(
+          requiredTimes.subList(0, Math.min(k, requiredTimes.size())),
+          query.topK(snapshot, request, k, FindMeetingQuery.Ranking.EARLIEST_START));
+      Assert.assertEquals(
+          requiredTimes.isEmpty() ? null : requiredTimes.get(0), query.firstFit(snapshot, request));
+
+      request.setMinOptionalAttendees(1 + random.nextInt(3));
+      List<TimeRange> expectedQuorum = bruteForceQuorum(events, request);
+      Assert.assertEquals(expectedQuorum, query.query(events, request));
+      Assert.assertEquals(expectedQuorum, query.query(snapshot, request));
+    }
+  }
+
+  @Test
+  public void quorumOfOptionalAttendees() {
+    // Optional :       |--A--|
+    //                        |--B--|
+    //                        |--C--|
+    // Day      : |---------------------------|
+    // Options  : |--1-----------|      |--2--|
+    //
+    // Two of the three optional attendees can come to a meeting that ends by 9:00, although all
+    // three can only come before 8:00.
+    Collection<Event> events =
+        Arrays.asList(
+            new Event(
+                "Event 1",
+                TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+                Arrays.asList(PERSON_A)),
+            new Event(
+                "Event 2",
+                TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+                Arrays.asList(PERSON_C)),
+            new Event(
+                "Event 3",
+                TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+                Arrays.asList(PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(NO_ATTENDEES, DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_A);
+    request.addOptionalAttendee(PERSON_B);
+    request.addOptionalAttendee(PERSON_C);
+    request.setMinOptionalAttendees(2);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(
+            TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+
+    request.setMinOptionalAttendees(4);
+    Assert.assertEquals(Collections.emptyList(), query.query(events, request));
+  }
+
+  @Test
+  public void horizonSlotsRunOverMidnight() {
+    long firstDay = 18262;
+    EventsByDay events =
+        day ->
+            Arrays.asList(
+                day == firstDay
+                    ? new Event(
+                        "Event 1",
+                        TimeRange.fromStartEnd(0, TimeRange.getTimeInMinutes(22, 0), false),
+                        Arrays.asList(PERSON_A))
+                    : new Event(
+                        "Event 2",
+                        TimeRange.fromStartEnd(
+                            TimeRange.getTimeInMinutes(2, 0), TimeRange.END_OF_DAY, true),
+                        Arrays.asList(PERSON_A)));
+    EpochRange horizon = EpochRange.ofDays(firstDay, 2);
+
+    List<EpochRange> actual =
+        query.query(events, new MeetingRequest(Arrays.asList(PERSON_A), 180), horizon, 10);
+    List<EpochRange> expected =
+        Arrays.asList(
+            EpochRange.fromStartEnd(
+                EpochRange.startOfDay(firstDay) + TimeRange.getTimeInMinutes(22, 0),
+                EpochRange.startOfDay(firstDay + 1) + TimeRange.getTimeInMinutes(2, 0)));
+
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(
+        Collections.emptyList(),
+        query.query(events, new MeetingRequest(Arrays.asList(PERSON_A), 300), horizon, 10));
+  }
+
+  @Test
+  public void horizonStopsOnceEnoughSlotsAreFound() {
+    List<Long> daysRead = new ArrayList<>();
+    EventsByDay events =
+        day -> {
+          daysRead.add(day);
+          return Arrays.asList(
+              new Event(
+                  "Lunch",
+                  TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(12, 0), DURATION_1_HOUR),
+                  Arrays.asList(PERSON_A)));
+        };
+    EpochRange horizon = EpochRange.ofDays(0, 14);
+
+    List<EpochRange> actual =
+        query.query(
+            events, new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR), horizon, 2);
+    List<EpochRange> expected =
+        Arrays.asList(
+            EpochRange.fromStartEnd(0, TimeRange.getTimeInMinutes(12, 0)),
+            EpochRange.fromStartEnd(
+                TimeRange.getTimeInMinutes(13, 0),
+                EpochRange.startOfDay(1) + TimeRange.getTimeInMinutes(12, 0)));
+
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(Arrays.asList(0L, 1L), daysRead);
+  }
+
+  @Test
+  public void horizonRegistersNoNames() {
+    // Neither name has been seen before. The second one is only registered once the events of
+    // the second day are made, part of the way through the search.
+    String stranger = "Horizon stranger";
+    String newcomer = "Horizon newcomer";
+    EventsByDay events =
+        day ->
+            day == 0
+                ? NO_EVENTS
+                : Arrays.asList(
+                    new Event(
+                        "Event 1",
+                        TimeRange.fromStartEnd(0, TimeRange.getTimeInMinutes(12, 0), false),
+                        Arrays.asList(newcomer)));
+    EpochRange horizon = EpochRange.ofDays(0, 2);
+
+    List<EpochRange> actual =
+        query.query(
+            events,
+            new MeetingRequest(Arrays.asList(stranger, newcomer), DURATION_1_HOUR),
+            horizon,
+            10);
+    List<EpochRange> expected =
+        Arrays.asList(
+            EpochRange.fromStartEnd(0, EpochRange.startOfDay(1)),
+            EpochRange.fromStartEnd(
+                EpochRange.startOfDay(1) + TimeRange.getTimeInMinutes(12, 0),
+                EpochRange.startOfDay(2)));
+
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(-1, AttendeeRegistry.shared().lookup(stranger));
+  }
+
+  @Test
+  public void horizonIsCutAtItsEnds() {
+    EventsByDay events = day -> NO_EVENTS;
+    EpochRange horizon =
+        EpochRange.fromStartEnd(
+            EpochRange.startOfDay(3) + TIME_1000AM, EpochRange.startOfDay(3) + TIME_1100AM);
+
+    Assert.assertEquals(
+        Arrays.asList(horizon),
+        query.query(
+            events, new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR), horizon, 5));
+    Assert.assertEquals(
+        Collections.emptyList(),
+        query.query(
+            events, new MeetingRequest(Arrays.asList(PERSON_A), DURATION_90_MINUTES), horizon, 5));
+  }
+
+  @Test
+  public void stepsStayWithinTheBoundOnNestedEvents() {
+    // Every event overlaps every other one, and each has most of the optional attendees, which is
+    // the worst case for a sweep that has to track who is busy.
+    int numEvents = 200;
+    int numOptional = 40;
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    for (int person = 0; person < numOptional; person++) {
+      request.addOptionalAttendee("Optional " + person);
+    }
+    List<Event> events = new ArrayList<>();
+    long requiredIntervals = 0;
+    long optionalPairs = 0;
+    for (int i = 0; i < numEvents; i++) {
+      List<String> attendees = new ArrayList<>();
+      if (i % 10 == 0) {
+        attendees.add(PERSON_A);
+        requiredIntervals++;
+      }
+      for (int person = 0; person < numOptional; person++) {
+        if (person != i % numOptional) {
+          attendees.add("Optional " + person);
+          optionalPairs++;
+        }
+      }
+      events.add(
+          new Event(
+              "Event " + i,
+              TimeRange.fromStartEnd(i * 2, TimeRange.END_OF_DAY - i * 2, false),
+              attendees));
+    }
+
+    Collection<TimeRange> withoutIndex = query.query(events, request);
+    Assert.assertTrue(query.stepsOfLastQuery() <= 2L * numEvents + 2 * optionalPairs);
+    Collection<TimeRange> withIndex = query.query(new EventSnapshot(events), request);
+    Assert.assertTrue(query.stepsOfLastQuery() <= requiredIntervals + 2 * optionalPairs);
+    Assert.assertEquals(bruteForce(events, request), withoutIndex);
+    Assert.assertEquals(withoutIndex, withIndex);
+  }
+
+  @Test
+  public void deadlineThatHasPassedGivesAPartialAnswer() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      events.add(
+          new Event(
+              "Event " + i,
+              TimeRange.fromStartDuration(i % 1000, DURATION_30_MINUTES),
+              Arrays.asList(PERSON_A)));
+    }
+
+    QueryResult result = query.query(events, request, 0, TimeUnit.NANOSECONDS);
+
+    Assert.assertTrue(result.isPartial());
+    for (TimeRange range : result.getTimes()) {
+      Assert.assertTrue(range.duration() >= DURATION_30_MINUTES);
+    }
+  }
+
+  @Test
+  public void interruptGivesAPartialAnswer() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      events.add(
+          new Event(
+              "Event " + i,
+              TimeRange.fromStartDuration(i % 1000, DURATION_30_MINUTES),
+              Arrays.asList(PERSON_A)));
+    }
+
+    Thread.currentThread().interrupt();
+    QueryResult result;
+    try {
+      result = query.query(new EventSnapshot(events), request, 1, TimeUnit.MINUTES);
+    } finally {
+      Thread.interrupted();
+    }
+
+    Assert.assertTrue(result.isPartial());
+  }
+
+  @Test
+  public void deadlineThatIsNotReachedGivesTheWholeAnswer() {
+    String[] people = {PERSON_A, PERSON_B, PERSON_C, PERSON_D, PERSON_E};
+    Random random = new Random(11);
+    for (int round = 0; round < 50; round++) {
+      List<Event> events = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        int start = random.nextInt(24 * 4) * 15;
+        int end = Math.min(TimeRange.WHOLE_DAY.duration(), start + random.nextInt(8) * 15);
+        events.add(
+            new Event(
+                "Event " + i,
+                TimeRange.fromStartEnd(start, end, false),
+                Arrays.asList(people[random.nextInt(people.length)])));
+      }
+      MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+      request.addOptionalAttendee(PERSON_B);
+      request.addOptionalAttendee(PERSON_C);
+
+      QueryResult result = query.query(events, request, 1, TimeUnit.MINUTES);
+
+      Assert.assertFalse(result.isPartial());
+      Assert.assertEquals(query.query(events, request), result.getTimes());
+    }
+  }
+
+  // Tries every start time of the day one minute at a time.
+  private static List<TimeRange> bruteForce(Collection<Event> events, MeetingRequest request) {
+    int day = TimeRange.WHOLE_DAY.duration();
+    int duration = (int) request.getDuration();
+    int[] numFree = numFreeAtEachStart(events, request);
+    int best = -1;
+    for (int free : numFree) {
+      best = Math.max(best, free);
+    }
+
+    // When no optional attendee can come, every start time that works for the required attendees
+    // is as good as any other.
+    List<TimeRange> result = new ArrayList<>();
+    int runStart = -1;
+    for (int start = 0; start <= day; start++) {
+      boolean inRun = start + duration <= day && best >= 0 && numFree[start] == best;
+      if (inRun && runStart < 0) {
+        runStart = start;
+      } else if (!inRun && runStart >= 0) {
+        result.add(TimeRange.fromStartEnd(runStart, start - 1 + duration, false));
+        runStart = -1;
+      }
+    }
+    return result;
+  }
+
+  // Keeps every start time that enough optional attendees could make.
+  private static List<TimeRange> bruteForceQuorum(
+      Collection<Event> events, MeetingRequest request) {
+    int day = TimeRange.WHOLE_DAY.duration();
+    int duration = (int) request.getDuration();
+    int[] numFree = numFreeAtEachStart(events, request);
+    List<TimeRange> result = new ArrayList<>();
+    int runStart = -1;
+    for (int start = 0; start <= day; start++) {
+      boolean inRun =
+          start + duration <= day && numFree[start] >= request.getMinOptionalAttendees();
+      if (inRun && runStart < 0) {
+        runStart = start;
+      } else if (!inRun && runStart >= 0) {
+        result.add(TimeRange.fromStartEnd(runStart, start - 1 + duration, false));
+        runStart = -1;
+      }
+    }
+    return result;
+  }
+
+  // Splits the start times into runs with the same number of free optional attendees, and ranks
+  // the runs by that number and then by start.
+  private static List<TimeRange> bruteForceTopK(
+      Collection<Event> events, MeetingRequest request, int k) {
+    int day = TimeRange.WHOLE_DAY.duration();
+    int duration = (int) request.getDuration();
+    int[] numFree = numFreeAtEachStart(events, request);
+    List<int[]> runs = new ArrayList<>();
+    for (int start = 0; start + duration <= day; start++) {
+      if (numFree[start] < 0) {
+        continue;
+      }
+      int[] last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+      if (last != null && last[1] == start && last[2] == numFree[start]) {
+        last[1]++;
+      } else {
+        runs.add(new int[] {start, start + 1, numFree[start]});
+      }
+    }
+    runs.sort((a, b) -> a[2] != b[2] ? b[2] - a[2] : a[0] - b[0]);
+
+    List<TimeRange> result = new ArrayList<>();
+    for (int i = 0; i < k && i < runs.size(); i++) {
+      int[] run = runs.get(i);
+      result.add(TimeRange.fromStartEnd(run[0], run[1] - 1 + duration, false));
+    }
+    return result;
+  }
+
+  // Returns how many optional attendees could come to a meeting at each start time, or -1 if a
+  // required attendee could not.
+  private static int[] numFreeAtEachStart(Collection<Event> events, MeetingRequest request) {
+    int day = TimeRange.WHOLE_DAY.duration();
+    int duration = (int) request.getDuration();
+    int[] numFree = new int[day];
+    Arrays.fill(numFree, -1);
+    for (int start = 0; start + duration <= day; start++) {
+      TimeRange meeting = TimeRange.fromStartDuration(start, duration);
+      boolean requiredFree = true;
+      Set<String> busyOptional = new HashSet<>();
+      for (Event event : events) {
+        if (!event.getWhen().overlaps(meeting)) {
+          continue;
+        }
+        for (String person : event.getAttendees()) {
+          if (request.getAttendees().contains(person)) {
+            requiredFree = false;
+          } else if (request.getOptionalAttendees().contains(person)) {
+            busyOptional.add(person);
+          }
+        }
+      }
+      numFree[start] =
+          requiredFree ? request.getOptionalAttendees().size() - busyOptional.size() : -1;
+    }
+    return numFree;
+  }
 }
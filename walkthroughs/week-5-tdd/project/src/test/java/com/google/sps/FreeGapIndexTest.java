@@ -0,0 +1,118 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class FreeGapIndexTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+  private static final int TIME_1100AM = TimeRange.getTimeInMinutes(11, 0);
+
+  private final FindMeetingQuery query = new FindMeetingQuery();
+
+  @Test
+  public void gapsAreFoundByLengthAndReturnedByStart() {
+    EventSnapshot snapshot =
+        new EventSnapshot(
+            Arrays.asList(
+                new Event(
+                    "Event 1",
+                    TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+                    Arrays.asList(PERSON_A)),
+                new Event(
+                    "Event 2",
+                    TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+                    Arrays.asList(PERSON_B)),
+                new Event(
+                    "Event 3",
+                    TimeRange.fromStartEnd(TIME_1100AM, TimeRange.END_OF_DAY, true),
+                    Arrays.asList(PERSON_A))));
+
+    FreeGapIndex gaps = query.freeGaps(snapshot, Arrays.asList(PERSON_A, PERSON_B));
+
+    Assert.assertEquals(3, gaps.size());
+    Assert.assertFalse(gaps.isPartial());
+    Assert.assertEquals(
+        Arrays.asList(
+            TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_1000AM, TIME_1100AM, false)),
+        gaps.rangesAtLeast(60));
+    Assert.assertEquals(
+        Arrays.asList(
+            TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false),
+            TimeRange.fromStartEnd(TIME_1000AM, TIME_1100AM, false)),
+        gaps.rangesAtLeast(30));
+    Assert.assertEquals(
+        Collections.emptyList(), gaps.rangesAtLeast(TimeRange.WHOLE_DAY.duration()));
+  }
+
+  @Test
+  public void everyDurationMatchesASweep() {
+    Random random = new Random(24);
+    List<String> people = Arrays.asList("A", "B", "C", "D");
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 60; i++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.duration() - 30);
+      events.add(
+          new Event(
+              "Event " + i,
+              TimeRange.fromStartDuration(start, 1 + random.nextInt(30)),
+              Arrays.asList(people.get(random.nextInt(people.size())))));
+    }
+    EventSnapshot snapshot = new EventSnapshot(events);
+
+    FreeGapIndex gaps = query.freeGaps(snapshot, people.subList(0, 3));
+    for (int duration = 0; duration <= TimeRange.WHOLE_DAY.duration() + 1; duration += 7) {
+      Assert.assertEquals(
+          query.query(snapshot, new MeetingRequest(people.subList(0, 3), duration)),
+          gaps.rangesAtLeast(duration));
+    }
+  }
+
+  @Test
+  public void deadlineThatHasPassedGivesAPartialIndex() {
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      events.add(
+          new Event(
+              "Event " + i, TimeRange.fromStartDuration(i % 1000, 30), Arrays.asList(PERSON_A)));
+    }
+    EventSnapshot snapshot = new EventSnapshot(events);
+
+    FreeGapIndex gaps =
+        query.freeGaps(snapshot, Arrays.asList(PERSON_A), 0, TimeUnit.NANOSECONDS);
+
+    Assert.assertTrue(gaps.isPartial());
+    Assert.assertEquals(0, gaps.size());
+  }
+}
@@ -0,0 +1,444 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class IcsImporterTest {
+  private static final long DAY = LocalDate.of(2019, 10, 17).toEpochDay();
+  private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+  private static final String PERSON_A = "a@example.com";
+  private static final String PERSON_B = "b@example.com";
+
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+  private static final int TIME_1030AM = TimeRange.getTimeInMinutes(10, 30);
+  private static final int TIME_1200PM = TimeRange.getTimeInMinutes(12, 0);
+  private static final int TIME_0100PM = TimeRange.getTimeInMinutes(13, 0);
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void readsEveryFormOfTime() throws IOException {
+    String ics =
+        calendar(
+            // In UTC, with a folded title and an escaped comma.
+            "BEGIN:VEVENT",
+            "SUMMARY:Stand\\, up",
+            "  meeting",
+            "DTSTART:20191017T130000Z",
+            "DTEND:20191017T140000Z",
+            "ATTENDEE;CN=\"A: the first\";PARTSTAT=ACCEPTED:mailto:" + PERSON_A,
+            "ATTENDEE;PARTSTAT=DECLINED:mailto:" + PERSON_B,
+            "END:VEVENT",
+            // In another zone, with a duration and an alarm that has a duration of its own.
+            "BEGIN:VEVENT",
+            "SUMMARY:Call",
+            "DTSTART;TZID=Europe/London:20191017T150000",
+            "DURATION:PT30M",
+            "ORGANIZER:MAILTO:" + PERSON_B,
+            "BEGIN:VALARM",
+            "TRIGGER:-PT15M",
+            "DURATION:PT5H",
+            "END:VALARM",
+            "END:VEVENT",
+            // With no zone.
+            "BEGIN:VEVENT",
+            "SUMMARY:Lunch",
+            "DTSTART:20191017T120000",
+            "DTEND:20191017T130000",
+            "ATTENDEE:mailto:" + PERSON_A,
+            "END:VEVENT",
+            // All day.
+            "BEGIN:VEVENT",
+            "SUMMARY:Offsite",
+            "DTSTART;VALUE=DATE:20191017",
+            "ATTENDEE:mailto:" + PERSON_B,
+            "END:VEVENT");
+
+    InMemoryEventStore store = new InMemoryEventStore();
+    long added = new IcsImporter(store, DAY, NEW_YORK, executor).importFrom(stream(ics));
+
+    Set<Event> expected =
+        new HashSet<>(
+            Arrays.asList(
+                new Event(
+                    "Stand, up meeting",
+                    TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+                    Arrays.asList(PERSON_A)),
+                new Event(
+                    "Call",
+                    TimeRange.fromStartEnd(TIME_1000AM, TIME_1030AM, false),
+                    Arrays.asList(PERSON_B)),
+                new Event(
+                    "Lunch",
+                    TimeRange.fromStartEnd(TIME_1200PM, TIME_0100PM, false),
+                    Arrays.asList(PERSON_A)),
+                new Event("Offsite", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_B))));
+    Assert.assertEquals(4, added);
+    Assert.assertEquals(expected, new HashSet<>(store.getEventsById().values()));
+  }
+
+  @Test
+  public void leavesOutEventsThatDoNotMakeAnyoneBusy() throws IOException {
+    String ics =
+        calendar(
+            "BEGIN:VEVENT",
+            "SUMMARY:Cancelled",
+            "DTSTART:20191017T130000Z",
+            "DTEND:20191017T140000Z",
+            "STATUS:CANCELLED",
+            "ATTENDEE:mailto:" + PERSON_A,
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "SUMMARY:Free",
+            "DTSTART:20191017T130000Z",
+            "DTEND:20191017T140000Z",
+            "TRANSP:TRANSPARENT",
+            "ATTENDEE:mailto:" + PERSON_A,
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "SUMMARY:Tomorrow",
+            "DTSTART:20191018T130000Z",
+            "DTEND:20191018T140000Z",
+            "ATTENDEE:mailto:" + PERSON_A,
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "SUMMARY:Overnight",
+            "DTSTART:20191017T220000",
+            "DTEND:20191018T020000",
+            "ATTENDEE:mailto:" + PERSON_A,
+            "END:VEVENT");
+
+    InMemoryEventStore store = new InMemoryEventStore();
+    long added = new IcsImporter(store, DAY, NEW_YORK, executor).importFrom(stream(ics));
+
+    Assert.assertEquals(1, added);
+    Event overnight = store.getEventsById().values().iterator().next();
+    Assert.assertEquals(
+        TimeRange.fromStartEnd(TimeRange.getTimeInMinutes(22, 0), TimeRange.END_OF_DAY, true),
+        overnight.getWhen());
+  }
+
+  @Test
+  public void manyEventsGoThroughASmallQueue() throws IOException {
+    int count = 20_000;
+    String[] lines = new String[6 * count];
+    for (int i = 0; i < count; i++) {
+      lines[6 * i] = "BEGIN:VEVENT";
+      lines[6 * i + 1] = "SUMMARY:Event " + i;
+      lines[6 * i + 2] = "DTSTART:20191017T" + String.format("%02d", i % 24) + "0000";
+      lines[6 * i + 3] = "DURATION:PT1H";
+      lines[6 * i + 4] = "ATTENDEE:mailto:person" + (i % 100) + "@example.com";
+      lines[6 * i + 5] = "END:VEVENT";
+    }
+
+    InMemoryEventStore store = new InMemoryEventStore();
+    long added =
+        new IcsImporter(store, DAY, NEW_YORK, executor, 64, 2).importFrom(stream(calendar(lines)));
+
+    Assert.assertEquals(count, added);
+    Assert.assertEquals(count, store.getEventsById().size());
+  }
+
+  @Test
+  public void failureOfTheStoreIsThrown() throws IOException {
+    String[] lines = new String[5 * 1000];
+    for (int i = 0; i < 1000; i++) {
+      lines[5 * i] = "BEGIN:VEVENT";
+      lines[5 * i + 1] = "DTSTART:20191017T090000";
+      lines[5 * i + 2] = "DURATION:PT1H";
+      lines[5 * i + 3] = "ATTENDEE:mailto:" + PERSON_A;
+      lines[5 * i + 4] = "END:VEVENT";
+    }
+    try {
+      new IcsImporter(new FullStore(), DAY, NEW_YORK, executor, 10, 1)
+          .importFrom(stream(calendar(lines)));
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("The store is full", e.getMessage());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void badTimeIsReported() throws IOException {
+    String ics = calendar("BEGIN:VEVENT", "DTSTART:2019-10-17 09:00", "END:VEVENT");
+
+    new IcsImporter(new InMemoryEventStore(), DAY, NEW_YORK, executor).importFrom(stream(ics));
+  }
+
+  @Test
+  public void expandsRecurringEventsOntoTheDay() throws IOException {
+    String ics =
+        calendar(
+            // Started before the clocks went forward, and keeps its time on the clock.
+            "BEGIN:VEVENT",
+            "SUMMARY:Standup",
+            "DTSTART;TZID=America/New_York:20190101T093000",
+            "DURATION:PT15M",
+            "RRULE:FREQ=DAILY",
+            "ATTENDEE:mailto:" + PERSON_A,
+            "END:VEVENT",
+            // Every other week, and the day is its last occurrence.
+            "BEGIN:VEVENT",
+            "SUMMARY:Gym",
+            "DTSTART:20190903T120000",
+            "DTEND:20190903T130000",
+            "RRULE:FREQ=WEEKLY;INTERVAL=2;BYDAY=TU,TH;COUNT=8",
+            "ATTENDEE:mailto:" + PERSON_B,
+            "END:VEVENT",
+            // On Mondays only.
+            "BEGIN:VEVENT",
+            "SUMMARY:Monday",
+            "DTSTART:20190902T150000",
+            "DURATION:PT1H",
+            "RRULE:FREQ=WEEKLY",
+            "ATTENDEE:mailto:" + PERSON_A,
+            "END:VEVENT",
+            // Over before the day.
+            "BEGIN:VEVENT",
+            "SUMMARY:Ended",
+            "DTSTART:20191001T150000",
+            "DURATION:PT1H",
+            "RRULE:FREQ=DAILY;UNTIL=20191016T235959Z",
+            "ATTENDEE:mailto:" + PERSON_A,
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "SUMMARY:Counted",
+            "DTSTART:20191015T080000",
+            "DURATION:PT1H",
+            "RRULE:FREQ=DAILY;COUNT=2",
+            "ATTENDEE:mailto:" + PERSON_A,
+            "END:VEVENT",
+            // Left out on the day.
+            "BEGIN:VEVENT",
+            "SUMMARY:Skipped",
+            "DTSTART;TZID=America/New_York:20191001T160000",
+            "DURATION:PT1H",
+            "RRULE:FREQ=DAILY",
+            "EXDATE;TZID=America/New_York:20191016T160000,20191017T160000",
+            "ATTENDEE:mailto:" + PERSON_B,
+            "END:VEVENT",
+            // Added on the day.
+            "BEGIN:VEVENT",
+            "SUMMARY:Extra",
+            "DTSTART:20191001T170000",
+            "DURATION:PT30M",
+            "RDATE:20191017T210000Z",
+            "ATTENDEE:mailto:" + PERSON_A,
+            "END:VEVENT",
+            // Moved to the afternoon on the day, before the series it belongs to is read.
+            "BEGIN:VEVENT",
+            "UID:review@example.com",
+            "SUMMARY:Review (moved)",
+            "RECURRENCE-ID;TZID=America/New_York:20191017T110000",
+            "DTSTART;TZID=America/New_York:20191017T140000",
+            "DTEND;TZID=America/New_York:20191017T150000",
+            "ATTENDEE:mailto:" + PERSON_B,
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "UID:review@example.com",
+            "SUMMARY:Review",
+            "DTSTART;TZID=America/New_York:20191010T110000",
+            "DTEND;TZID=America/New_York:20191010T120000",
+            "RRULE:FREQ=WEEKLY",
+            "ATTENDEE:mailto:" + PERSON_B,
+            "END:VEVENT");
+
+    InMemoryEventStore store = new InMemoryEventStore();
+    long added = new IcsImporter(store, DAY, NEW_YORK, executor).importFrom(stream(ics));
+
+    Set<Event> expected =
+        new HashSet<>(
+            Arrays.asList(
+                new Event(
+                    "Standup",
+                    TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(9, 30), 15),
+                    Arrays.asList(PERSON_A)),
+                new Event(
+                    "Gym",
+                    TimeRange.fromStartEnd(TIME_1200PM, TIME_0100PM, false),
+                    Arrays.asList(PERSON_B)),
+                new Event(
+                    "Extra",
+                    TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(17, 0), 30),
+                    Arrays.asList(PERSON_A)),
+                new Event(
+                    "Review (moved)",
+                    TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(14, 0), 60),
+                    Arrays.asList(PERSON_B))));
+    Assert.assertEquals(4, added);
+    Assert.assertEquals(expected, new HashSet<>(store.getEventsById().values()));
+  }
+
+  @Test
+  public void onlyReplacementsThatMayBeOnTheDayAreRemembered() throws IOException {
+    StringBuilder ics = new StringBuilder("BEGIN:VCALENDAR\r\nVERSION:2.0\r\n");
+    // Moved occurrences of a daily series from the ten thousand days before the day.
+    LocalDate day = LocalDate.ofEpochDay(DAY);
+    for (int i = 1; i <= 10000; i++) {
+      String date = day.minusDays(i).toString().replace("-", "");
+      ics.append("BEGIN:VEVENT\r\n")
+          .append("UID:daily@example.com\r\n")
+          .append("RECURRENCE-ID;TZID=America/New_York:" + date + "T090000\r\n")
+          .append("DTSTART;TZID=America/New_York:" + date + "T100000\r\n")
+          .append("DURATION:PT1H\r\n")
+          .append("END:VEVENT\r\n");
+    }
+    String ending =
+        calendar(
+            // Cancelled on the day, before the series it belongs to is read.
+            "BEGIN:VEVENT",
+            "UID:daily@example.com",
+            "RECURRENCE-ID;TZID=America/New_York:20191017T090000",
+            "DTSTART;TZID=America/New_York:20191017T090000",
+            "DURATION:PT1H",
+            "STATUS:CANCELLED",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "UID:daily@example.com",
+            "DTSTART;TZID=America/New_York:19900101T090000",
+            "DURATION:PT1H",
+            "RRULE:FREQ=DAILY",
+            "END:VEVENT");
+    ics.append(ending.substring(ending.indexOf("BEGIN:VEVENT")));
+
+    IcsImporter importer = new IcsImporter(new InMemoryEventStore(), DAY, NEW_YORK, executor);
+    IcsImporter.Parser parser =
+        importer.new Parser(new BufferedReader(new StringReader(ics.toString())));
+    // The occurrence on the day was cancelled, and only the week before it is remembered.
+    Assert.assertNull(parser.next());
+    Assert.assertTrue(parser.numReplaced() <= IcsImporter.LONGEST_REPLACED_DAYS + 1);
+  }
+
+  @Test
+  public void attendeesOfOtherDaysAreNotRegistered() throws IOException {
+    String ics =
+        calendar(
+            "BEGIN:VEVENT",
+            "SUMMARY:Yesterday",
+            "DTSTART:20191016T130000Z",
+            "DURATION:PT1H",
+            "ATTENDEE:mailto:yesterday@example.com",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "SUMMARY:Cancelled",
+            "DTSTART:20191017T130000Z",
+            "DURATION:PT1H",
+            "STATUS:CANCELLED",
+            "ATTENDEE:mailto:cancelled@example.com",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "SUMMARY:Today",
+            "DTSTART:20191017T130000Z",
+            "DURATION:PT1H",
+            "ATTENDEE:mailto:today@example.com",
+            "END:VEVENT");
+
+    new IcsImporter(new InMemoryEventStore(), DAY, NEW_YORK, executor).importFrom(stream(ics));
+
+    AttendeeRegistry registry = AttendeeRegistry.shared();
+    Assert.assertEquals(-1, registry.lookup("yesterday@example.com"));
+    Assert.assertEquals(-1, registry.lookup("cancelled@example.com"));
+    Assert.assertTrue(registry.lookup("today@example.com") >= 0);
+  }
+
+  @Test(expected = IOException.class)
+  public void recurrenceThatCannotBeExpandedIsReported() throws IOException {
+    String ics =
+        calendar(
+            "BEGIN:VEVENT",
+            "SUMMARY:Third Thursday",
+            "DTSTART:20190919T090000",
+            "DURATION:PT1H",
+            "RRULE:FREQ=MONTHLY;BYDAY=3TH",
+            "END:VEVENT");
+
+    new IcsImporter(new InMemoryEventStore(), DAY, NEW_YORK, executor).importFrom(stream(ics));
+  }
+
+  private static String calendar(String... lines) {
+    StringBuilder ics = new StringBuilder("BEGIN:VCALENDAR\r\nVERSION:2.0\r\n");
+    for (String line : lines) {
+      ics.append(line).append("\r\n");
+    }
+    return ics.append("END:VCALENDAR\r\n").toString();
+  }
+
+  private static InputStream stream(String ics) {
+    return new ByteArrayInputStream(ics.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** A store that turns down every change. */
+  private static final class FullStore implements EventStore {
+    @Override
+    public long add(Event event) {
+      throw new IllegalStateException("The store is full");
+    }
+
+    @Override
+    public boolean remove(long eventId) {
+      return false;
+    }
+
+    @Override
+    public boolean update(long eventId, Event event) {
+      return false;
+    }
+
+    @Override
+    public Map<Long, Event> getEventsById() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public EventIndex snapshot() {
+      return new EventSnapshot(Collections.emptyList());
+    }
+  }
+}
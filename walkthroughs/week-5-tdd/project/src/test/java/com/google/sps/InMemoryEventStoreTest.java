@@ -0,0 +1,235 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class InMemoryEventStoreTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+  private static final String PERSON_D = "Person D";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  private final FindMeetingQuery query = new FindMeetingQuery();
+
+  @Test
+  public void changesAreSeenByQueries() {
+    EventStore store = new InMemoryEventStore();
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), 60);
+
+    long id =
+        store.add(
+            new Event(
+                "Event 1",
+                TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+                Arrays.asList(PERSON_A)));
+    Assert.assertEquals(
+        Arrays.asList(
+            TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true)),
+        query.query(store.snapshot(), request));
+
+    Assert.assertTrue(
+        store.update(
+            id,
+            new Event(
+                "Event 1",
+                TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+                Arrays.asList(PERSON_A))));
+    Assert.assertEquals(
+        Arrays.asList(
+            TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true)),
+        query.query(store.snapshot(), request));
+
+    Assert.assertTrue(store.remove(id));
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.WHOLE_DAY), query.query(store.snapshot(), request));
+    Assert.assertFalse(store.remove(id));
+    Assert.assertTrue(store.getEventsById().isEmpty());
+  }
+
+  @Test
+  public void everyChangeHasANewVersion() {
+    EventStore store = new InMemoryEventStore();
+    Event event =
+        new Event(
+            "Event 1",
+            TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A));
+
+    long first = store.snapshot().getVersion();
+    long id = store.add(event);
+    long second = store.snapshot().getVersion();
+    store.remove(id);
+    long third = store.snapshot().getVersion();
+
+    Assert.assertTrue(first < second);
+    Assert.assertTrue(second < third);
+  }
+
+  @Test
+  public void sameIntervalFromTwoEvents() {
+    EventStore store = new InMemoryEventStore();
+    TimeRange when = TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false);
+    long first = store.add(new Event("Event 1", when, Arrays.asList(PERSON_A)));
+    store.add(new Event("Event 2", when, Arrays.asList(PERSON_A)));
+
+    // Person A is still busy after one of the two events is removed.
+    store.remove(first);
+    Assert.assertEquals(
+        TimeRangeSet.of(TIME_0800AM, TIME_0900AM),
+        store.snapshot().busyTimeOf(Arrays.asList(PERSON_A)));
+  }
+
+  @Test
+  public void snapshotsDoNotSeeLaterChanges() {
+    EventStore store = new InMemoryEventStore();
+    long id =
+        store.add(
+            new Event(
+                "Event 1",
+                TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+                Arrays.asList(PERSON_A)));
+    EventIndex before = store.snapshot();
+
+    store.update(
+        id,
+        new Event(
+            "Event 1",
+            TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_A, PERSON_B)));
+    store.add(
+        new Event(
+            "Event 2",
+            TimeRange.fromStartEnd(TIME_0800AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_B)));
+
+    Assert.assertEquals(1, before.getEvents().size());
+    Assert.assertEquals(
+        TimeRangeSet.of(TIME_0800AM, TIME_0900AM),
+        before.busyTimeOf(Arrays.asList(PERSON_A, PERSON_B)));
+    Assert.assertEquals(
+        TimeRangeSet.of(TIME_0800AM, TIME_1000AM),
+        store.snapshot().busyTimeOf(Arrays.asList(PERSON_A, PERSON_B)));
+  }
+
+  @Test
+  public void concurrentWritersAreAllApplied() throws Exception {
+    EventStore store = new InMemoryEventStore();
+    int numThreads = 4;
+    int eventsPerThread = 500;
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    List<Future<?>> writers = new ArrayList<>();
+    for (int thread = 0; thread < numThreads; thread++) {
+      String person = "Person " + thread;
+      writers.add(
+          executor.submit(
+              () -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                  long id =
+                      store.add(
+                          new Event(
+                              "Event " + i,
+                              TimeRange.fromStartDuration(i, 1),
+                              Arrays.asList(person)));
+                  // Every other event is taken out again, racing with the other writers.
+                  if (i % 2 == 1) {
+                    Assert.assertTrue(store.remove(id));
+                  }
+                }
+              }));
+    }
+    for (Future<?> writer : writers) {
+      writer.get();
+    }
+    executor.shutdown();
+
+    EventIndex snapshot = store.snapshot();
+    Assert.assertEquals(numThreads * eventsPerThread / 2, snapshot.getEvents().size());
+    for (int thread = 0; thread < numThreads; thread++) {
+      Assert.assertEquals(
+          eventsPerThread / 2,
+          snapshot.busyTimeOf(Arrays.asList("Person " + thread)).toTimeRanges().size());
+    }
+  }
+
+  @Test
+  public void matchesQueryingTheEvents() {
+    String[] people = {PERSON_A, PERSON_B, PERSON_C, PERSON_D};
+    Random random = new Random(3);
+    EventStore store = new InMemoryEventStore();
+    Map<Long, Event> expectedEvents = new LinkedHashMap<>();
+
+    for (int round = 0; round < 500; round++) {
+      List<Long> ids = new ArrayList<>(expectedEvents.keySet());
+      int change = random.nextInt(4);
+      if (change == 0 && !ids.isEmpty()) {
+        long id = ids.get(random.nextInt(ids.size()));
+        Assert.assertTrue(store.remove(id));
+        expectedEvents.remove(id);
+      } else if (change == 1 && !ids.isEmpty()) {
+        long id = ids.get(random.nextInt(ids.size()));
+        Event event = randomEvent(random, people, round);
+        Assert.assertTrue(store.update(id, event));
+        expectedEvents.put(id, event);
+      } else {
+        Event event = randomEvent(random, people, round);
+        expectedEvents.put(store.add(event), event);
+      }
+
+      MeetingRequest request =
+          new MeetingRequest(Arrays.asList(people[random.nextInt(people.length)]), 30);
+      request.addOptionalAttendee(people[random.nextInt(people.length)]);
+      request.addOptionalAttendee(people[random.nextInt(people.length)]);
+
+      Collection<Event> events = expectedEvents.values();
+      Assert.assertEquals(expectedEvents, store.getEventsById());
+      Assert.assertEquals(
+          query.query(events, request), query.query(store.snapshot(), request));
+    }
+  }
+
+  private static Event randomEvent(Random random, String[] people, int round) {
+    int start = random.nextInt(24 * 4) * 15;
+    int end = Math.min(TimeRange.WHOLE_DAY.duration(), start + random.nextInt(8) * 15);
+    List<String> attendees = new ArrayList<>();
+    for (String person : people) {
+      if (random.nextInt(3) == 0) {
+        attendees.add(person);
+      }
+    }
+    return new Event("Event " + round, TimeRange.fromStartEnd(start, end, false), attendees);
+  }
+}
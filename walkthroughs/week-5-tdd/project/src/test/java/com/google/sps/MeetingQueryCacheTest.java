@@ -0,0 +1,205 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class MeetingQueryCacheTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+
+  private EventSnapshot snapshot;
+  private MeetingQueryCache cache;
+
+  @Before
+  public void setUp() {
+    snapshot =
+        new EventSnapshot(
+            Arrays.asList(
+                new Event(
+                    "Event 1",
+                    TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+                    Arrays.asList(PERSON_A))));
+    cache = new MeetingQueryCache(new FindMeetingQuery(), 2);
+  }
+
+  @Test
+  public void attendeeOrderDoesNotMatter() {
+    MeetingRequest first = new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), 30);
+    first.addOptionalAttendee(PERSON_C);
+    MeetingRequest second = new MeetingRequest(Arrays.asList(PERSON_B, PERSON_A), 30);
+    second.addOptionalAttendee(PERSON_C);
+
+    Collection<TimeRange> expected = new FindMeetingQuery().query(snapshot, first);
+    Assert.assertEquals(expected, cache.query(snapshot, first));
+    Assert.assertEquals(expected, cache.query(snapshot, second));
+    Assert.assertEquals(1, cache.getMissCount());
+    Assert.assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void differentRequestsAreDifferentEntries() {
+    cache.query(snapshot, new MeetingRequest(Arrays.asList(PERSON_A), 30));
+    cache.query(snapshot, new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), 30));
+
+    MeetingRequest optional = new MeetingRequest(Arrays.asList(PERSON_B), 30);
+    optional.addOptionalAttendee(PERSON_A);
+    cache.query(snapshot, optional);
+
+    Assert.assertEquals(3, cache.getMissCount());
+    Assert.assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void durationsShareTheFreeTimeOfTheSameAttendees() {
+    FindMeetingQuery query = new FindMeetingQuery();
+    for (int duration : new int[] {30, 60, 90, 30}) {
+      MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), duration);
+      Assert.assertEquals(query.query(snapshot, request), cache.query(snapshot, request));
+    }
+
+    Assert.assertEquals(1, cache.getMissCount());
+    Assert.assertEquals(3, cache.getHitCount());
+  }
+
+  @Test
+  public void leastRecentlyUsedIsEvicted() {
+    MeetingRequest a = new MeetingRequest(Arrays.asList(PERSON_A), 30);
+    MeetingRequest b = new MeetingRequest(Arrays.asList(PERSON_B), 30);
+    MeetingRequest c = new MeetingRequest(Arrays.asList(PERSON_C), 30);
+
+    cache.query(snapshot, a);
+    cache.query(snapshot, b);
+    // Using a makes b the least recently used, so c takes its place.
+    cache.query(snapshot, a);
+    cache.query(snapshot, c);
+    cache.query(snapshot, a);
+    cache.query(snapshot, b);
+
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(4, cache.getMissCount());
+    Assert.assertEquals(2, cache.getHitCount());
+  }
+
+  @Test
+  public void resultsAndFreeTimeShareTheBound() {
+    MeetingRequest withOptional = new MeetingRequest(Arrays.asList(PERSON_A), 30);
+    withOptional.addOptionalAttendee(PERSON_B);
+    MeetingRequest b = new MeetingRequest(Arrays.asList(PERSON_B), 30);
+    MeetingRequest c = new MeetingRequest(Arrays.asList(PERSON_C), 30);
+
+    // One result and two free time indexes, so the result is evicted.
+    cache.query(snapshot, withOptional);
+    cache.query(snapshot, b);
+    cache.query(snapshot, c);
+    Assert.assertEquals(2, cache.size());
+    cache.query(snapshot, withOptional);
+
+    Assert.assertEquals(4, cache.getMissCount());
+    Assert.assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void newSnapshotInvalidatesOldResults() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), 30);
+    cache.query(snapshot, request);
+
+    EventSnapshot changed =
+        new EventSnapshot(
+            Arrays.asList(
+                new Event(
+                    "Event 2",
+                    TimeRange.fromStartEnd(TIME_0830AM, TimeRange.END_OF_DAY, true),
+                    Arrays.asList(PERSON_A))));
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false)),
+        cache.query(changed, request));
+    Assert.assertEquals(2, cache.getMissCount());
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void partialResultsAreNotKept() {
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      events.add(
+          new Event(
+              "Event " + i,
+              TimeRange.fromStartEnd(i % 1000, i % 1000 + 30, false),
+              Arrays.asList(PERSON_A)));
+    }
+    EventSnapshot large = new EventSnapshot(events);
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), 30);
+
+    Assert.assertTrue(cache.query(large, request, 0, TimeUnit.NANOSECONDS).isPartial());
+    Assert.assertEquals(0, cache.size());
+    QueryResult whole = cache.query(large, request, 1, TimeUnit.MINUTES);
+    Assert.assertFalse(whole.isPartial());
+    Assert.assertEquals(new FindMeetingQuery().query(large, request), whole.getTimes());
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void resultsCannotBeModified() {
+    cache.query(snapshot, new MeetingRequest(Arrays.asList(PERSON_A), 30)).clear();
+  }
+
+  @Test
+  public void concurrentIdenticalQueriesAreComputedOnce() throws Exception {
+    int numThreads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Collection<TimeRange>>> results = new ArrayList<>();
+    try {
+      for (int i = 0; i < numThreads; i++) {
+        results.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  return cache.query(snapshot, new MeetingRequest(Arrays.asList(PERSON_A), 30));
+                }));
+      }
+      start.countDown();
+      for (Future<Collection<TimeRange>> result : results) {
+        Assert.assertEquals(results.get(0).get(), result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(1, cache.getMissCount());
+    Assert.assertEquals(numThreads - 1, cache.getHitCount());
+  }
+}
@@ -0,0 +1,131 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class OptionalAttendanceTreeTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+  private static final String PERSON_D = "Person D";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  private final FindMeetingQuery query = new FindMeetingQuery();
+
+  @Test
+  public void countsFreeAttendeesAtEachStartTime() {
+    EventSnapshot snapshot =
+        new EventSnapshot(
+            Arrays.asList(
+                new Event(
+                    "Event 1",
+                    TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+                    Arrays.asList(PERSON_A)),
+                new Event(
+                    "Event 2",
+                    TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+                    Arrays.asList(PERSON_B))));
+    OptionalAttendanceTree tree =
+        new OptionalAttendanceTree(snapshot, Arrays.asList(PERSON_A, PERSON_B), 30);
+
+    Assert.assertEquals(2, tree.maxFree(TimeRange.START_OF_DAY, TIME_0800AM));
+    // A meeting at 7:31 runs into Event 1.
+    Assert.assertEquals(1, tree.maxFree(TIME_0800AM - 29, TIME_0800AM));
+    Assert.assertEquals(0, tree.maxFree(TIME_0900AM - 29, TIME_0900AM));
+    Assert.assertEquals(-1, tree.maxFree(TIME_0900AM, TIME_0900AM));
+  }
+
+  @Test
+  public void rejectsATreeThatIsOutOfDate() {
+    EventStore store = new InMemoryEventStore();
+    OptionalAttendanceTree tree =
+        new OptionalAttendanceTree(store.snapshot(), Arrays.asList(PERSON_A), 30);
+    store.add(
+        new Event(
+            "Event 1",
+            TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_B), 30);
+    request.addOptionalAttendee(PERSON_A);
+
+    try {
+      query.query(store.snapshot(), request, tree);
+      Assert.fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void matchesQueryingWithoutATree() {
+    String[] people = {PERSON_A, PERSON_B, PERSON_C, PERSON_D};
+    Random random = new Random(7);
+    EventStore store = new InMemoryEventStore();
+    List<Long> ids = new ArrayList<>();
+    List<Event> events = new ArrayList<>();
+    List<String> optional = Arrays.asList(PERSON_B, PERSON_C, PERSON_D);
+    OptionalAttendanceTree tree = new OptionalAttendanceTree(store.snapshot(), optional, 45);
+
+    for (int round = 0; round < 300; round++) {
+      Set<String> changed = new HashSet<>();
+      if (random.nextInt(3) == 0 && !ids.isEmpty()) {
+        int i = random.nextInt(ids.size());
+        store.remove(ids.remove(i));
+        changed.addAll(events.remove(i).getAttendees());
+      } else {
+        Event event = randomEvent(random, people, round);
+        ids.add(store.add(event));
+        events.add(event);
+        changed.addAll(event.getAttendees());
+      }
+      tree.update(store.snapshot(), changed);
+
+      MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), 45);
+      for (String person : optional) {
+        request.addOptionalAttendee(person);
+      }
+      EventIndex snapshot = store.snapshot();
+      Assert.assertEquals(query.query(snapshot, request), query.query(snapshot, request, tree));
+      request.setMinOptionalAttendees(2);
+      Assert.assertEquals(query.query(snapshot, request), query.query(snapshot, request, tree));
+    }
+  }
+
+  private static Event randomEvent(Random random, String[] people, int round) {
+    int start = random.nextInt(24 * 4) * 15;
+    int end = Math.min(TimeRange.WHOLE_DAY.duration(), start + random.nextInt(8) * 15);
+    List<String> attendees = new ArrayList<>();
+    for (String person : people) {
+      if (random.nextInt(3) == 0) {
+        attendees.add(person);
+      }
+    }
+    return new Event("Event " + round, TimeRange.fromStartEnd(start, end, false), attendees);
+  }
+}
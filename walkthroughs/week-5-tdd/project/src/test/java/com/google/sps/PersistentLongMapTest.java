@@ -0,0 +1,84 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class PersistentLongMapTest {
+  @Test
+  public void oldVersionsDoNotChange() {
+    PersistentLongMap<String> empty = PersistentLongMap.empty();
+    PersistentLongMap<String> one = empty.put(1, "a");
+    PersistentLongMap<String> two = one.put(2, "b");
+    PersistentLongMap<String> changed = two.put(1, "c").remove(2);
+
+    Assert.assertTrue(empty.isEmpty());
+    Assert.assertEquals("a", one.get(1));
+    Assert.assertNull(one.get(2));
+    Assert.assertEquals(2, two.size());
+    Assert.assertEquals("a", two.get(1));
+    Assert.assertEquals("c", changed.get(1));
+    Assert.assertNull(changed.get(2));
+  }
+
+  @Test
+  public void matchesTreeMap() {
+    Random random = new Random(5);
+    List<TreeMap<Long, Integer>> expectedVersions = new ArrayList<>();
+    List<PersistentLongMap<Integer>> actualVersions = new ArrayList<>();
+    TreeMap<Long, Integer> expected = new TreeMap<>();
+    PersistentLongMap<Integer> actual = PersistentLongMap.empty();
+
+    for (int round = 0; round < 2000; round++) {
+      long key = random.nextInt(200) - 100;
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        actual = actual.remove(key);
+      } else {
+        expected.put(key, round);
+        actual = actual.put(key, round);
+      }
+      expectedVersions.add(new TreeMap<>(expected));
+      actualVersions.add(actual);
+    }
+
+    for (int i = 0; i < expectedVersions.size(); i++) {
+      Assert.assertEquals(expectedVersions.get(i), toTreeMap(actualVersions.get(i)));
+      Assert.assertEquals(expectedVersions.get(i).size(), actualVersions.get(i).size());
+    }
+  }
+
+  private static Map<Long, Integer> toTreeMap(PersistentLongMap<Integer> map) {
+    Map<Long, Integer> entries = new TreeMap<>();
+    PersistentLongMap.Cursor<Integer> cursor = map.cursor();
+    long previous = Long.MIN_VALUE;
+    while (cursor.next()) {
+      Assert.assertTrue(entries.isEmpty() || cursor.key() > previous);
+      previous = cursor.key();
+      entries.put(cursor.key(), cursor.value());
+    }
+    return entries;
+  }
+}
@@ -0,0 +1,154 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class RecurringCalendarTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final int DAY = EpochRange.MINUTES_PER_DAY;
+  private static final int WEEK = 7 * DAY;
+
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_0930AM = TimeRange.getTimeInMinutes(9, 30);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+  private static final int TIME_1100PM = TimeRange.getTimeInMinutes(23, 0);
+
+  @Test
+  public void occurrencesComeInOrderOfStart() {
+    RecurringEvent standup =
+        new RecurringEvent.Builder(
+                "Standup", Arrays.asList(PERSON_A, PERSON_B), TIME_0930AM, 30, DAY)
+            .build();
+    RecurringEvent oneOnOne =
+        new RecurringEvent.Builder("1:1", Arrays.asList(PERSON_A), TIME_0900AM, 60, WEEK)
+            .addException(WEEK + TIME_0900AM)
+            .build();
+    RecurringCalendar calendar = new RecurringCalendar(Arrays.asList(standup, oneOnOne));
+
+    List<Event> expected =
+        Arrays.asList(
+            new Event(
+                "1:1",
+                TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+                Arrays.asList(PERSON_A)),
+            new Event(
+                "Standup",
+                TimeRange.fromStartEnd(TIME_0930AM, TIME_1000AM, false),
+                Arrays.asList(PERSON_A, PERSON_B)));
+    Assert.assertEquals(expected, new ArrayList<>(calendar.eventsOn(14)));
+    Assert.assertEquals(2, calendar.eventsOn(14).size());
+    // The 1:1 of the second week is left out, and there is none on other days of the week.
+    Assert.assertEquals(expected.subList(1, 2), new ArrayList<>(calendar.eventsOn(7)));
+    Assert.assertEquals(expected.subList(1, 2), new ArrayList<>(calendar.eventsOn(15)));
+    Assert.assertTrue(calendar.eventsOn(-1).isEmpty());
+  }
+
+  @Test
+  public void seriesEndsAfterItsCountOrBeforeItsEnd() {
+    RecurringEvent counted =
+        new RecurringEvent.Builder("Counted", Arrays.asList(PERSON_A), TIME_0900AM, 30, DAY)
+            .setCount(3)
+            .build();
+    RecurringEvent until =
+        new RecurringEvent.Builder("Until", Arrays.asList(PERSON_B), TIME_0900AM, 30, DAY)
+            .setUntil(5 * DAY + TIME_0900AM)
+            .build();
+    RecurringCalendar calendar = new RecurringCalendar(Arrays.asList(counted, until));
+
+    Assert.assertEquals(2, calendar.eventsOn(2).size());
+    Assert.assertEquals(1, calendar.eventsOn(3).size());
+    Assert.assertEquals(1, calendar.eventsOn(4).size());
+    Assert.assertEquals(0, calendar.eventsOn(5).size());
+  }
+
+  @Test
+  public void occurrenceIsCutAtMidnight() {
+    RecurringEvent late =
+        new RecurringEvent.Builder("Late", Arrays.asList(PERSON_A), TIME_1100PM, 120, DAY)
+            .build();
+    RecurringCalendar calendar = new RecurringCalendar(Arrays.asList(late));
+
+    List<Event> expected =
+        Arrays.asList(
+            new Event("Late", TimeRange.fromStartEnd(0, 60, false), Arrays.asList(PERSON_A)),
+            new Event(
+                "Late", TimeRange.fromStartEnd(TIME_1100PM, DAY, false), Arrays.asList(PERSON_A)));
+    Assert.assertEquals(expected, new ArrayList<>(calendar.eventsOn(1)));
+  }
+
+  @Test
+  public void horizonQueryMatchesExpandedEvents() {
+    Random random = new Random(23);
+    List<String> people = Arrays.asList("A", "B", "C", "D", "E", "F");
+    List<RecurringEvent> series = new ArrayList<>();
+    List<long[]> parts = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      long firstStart = random.nextInt(3 * DAY);
+      int duration = 15 + random.nextInt(180);
+      long period = random.nextBoolean() ? DAY : (1 + random.nextInt(14)) * DAY / 2;
+      long count = 1 + random.nextInt(30);
+      List<String> attendees = Arrays.asList(people.get(i % 6), people.get((i * 5 + 1) % 6));
+      series.add(
+          new RecurringEvent.Builder("Series " + i, attendees, firstStart, duration, period)
+              .setCount(count)
+              .addException(firstStart + period)
+              .build());
+      parts.add(new long[] {firstStart, duration, period, count});
+    }
+    // Every occurrence made into an event of its own, as a calendar without recurrence would.
+    EventsByDay expanded =
+        day -> {
+          List<Event> events = new ArrayList<>();
+          for (int i = 0; i < parts.size(); i++) {
+            long[] part = parts.get(i);
+            for (long k = 0; k < part[3]; k++) {
+              long start = part[0] + k * part[2] - EpochRange.startOfDay(day);
+              long end = start + part[1];
+              if (k != 1 && end > 0 && start < DAY) {
+                int from = (int) Math.max(0, start);
+                int to = (int) Math.min(DAY, end);
+                events.add(
+                    new Event(
+                        series.get(i).getTitle(),
+                        TimeRange.fromStartEnd(from, to, false),
+                        series.get(i).getAttendees()));
+              }
+            }
+          }
+          return events;
+        };
+
+    FindMeetingQuery query = new FindMeetingQuery();
+    EpochRange horizon = EpochRange.fromStartEnd(DAY / 2, 20 * DAY);
+    for (int i = 0; i + 3 <= people.size(); i++) {
+      MeetingRequest request = new MeetingRequest(people.subList(i, i + 3), 45);
+      Assert.assertEquals(
+          query.query(expanded, request, horizon, 100),
+          query.query(new RecurringCalendar(series), request, horizon, 100));
+    }
+  }
+}
@@ -0,0 +1,141 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class TimeRangeSetTest {
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_0930AM = TimeRange.getTimeInMinutes(9, 30);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  // Enough minutes for the random sets to overlap a lot.
+  private static final int NUM_MINUTES = 200;
+
+  @Test
+  public void overlappingAndTouchingRangesAreMerged() {
+    TimeRangeSet set =
+        TimeRangeSet.of(
+            Arrays.asList(
+                TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+                TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+                TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false),
+                TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false)));
+
+    Assert.assertEquals(TimeRangeSet.of(TIME_0800AM, TIME_1000AM), set);
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TIME_0800AM, TIME_1000AM, false)),
+        set.toTimeRanges());
+  }
+
+  @Test
+  public void setOperations() {
+    TimeRangeSet morning = TimeRangeSet.of(TIME_0800AM, TIME_0930AM);
+    TimeRangeSet later = TimeRangeSet.of(TIME_0900AM, TIME_1000AM);
+
+    Assert.assertEquals(TimeRangeSet.of(TIME_0800AM, TIME_1000AM), morning.union(later));
+    Assert.assertEquals(TimeRangeSet.of(TIME_0900AM, TIME_0930AM), morning.intersect(later));
+    Assert.assertEquals(TimeRangeSet.of(TIME_0800AM, TIME_0900AM), morning.subtract(later));
+    Assert.assertEquals(TimeRangeSet.EMPTY, morning.subtract(morning));
+  }
+
+  @Test
+  public void filterAndStartTimes() {
+    TimeRangeSet set =
+        new TimeRangeSet.Builder()
+            .add(TIME_0800AM, TIME_0830AM)
+            .add(TIME_0900AM, TIME_1000AM)
+            .build();
+
+    Assert.assertEquals(TimeRangeSet.of(TIME_0900AM, TIME_1000AM), set.filterByMinDuration(31));
+    // A 30 minute meeting can start at 8:00 exactly, or at any time from 9:00 to 9:30.
+    Assert.assertEquals(
+        new TimeRangeSet.Builder()
+            .add(TIME_0800AM, TIME_0800AM + 1)
+            .add(TIME_0900AM, TIME_0930AM + 1)
+            .build(),
+        set.startTimes(30));
+  }
+
+  @Test
+  public void containsUsesExclusiveEnds() {
+    TimeRangeSet set = TimeRangeSet.of(TIME_0800AM, TIME_0830AM);
+
+    Assert.assertFalse(set.contains(TIME_0800AM - 1));
+    Assert.assertTrue(set.contains(TIME_0800AM));
+    Assert.assertTrue(set.contains(TIME_0830AM - 1));
+    Assert.assertFalse(set.contains(TIME_0830AM));
+  }
+
+  @Test
+  public void matchesMinuteByMinuteSets() {
+    Random random = new Random(11);
+    for (int round = 0; round < 300; round++) {
+      boolean[] a = new boolean[NUM_MINUTES];
+      boolean[] b = new boolean[NUM_MINUTES];
+      TimeRangeSet setA = randomSet(random, a);
+      TimeRangeSet setB = randomSet(random, b);
+
+      boolean[] union = new boolean[NUM_MINUTES];
+      boolean[] intersection = new boolean[NUM_MINUTES];
+      boolean[] difference = new boolean[NUM_MINUTES];
+      for (int minute = 0; minute < NUM_MINUTES; minute++) {
+        union[minute] = a[minute] || b[minute];
+        intersection[minute] = a[minute] && b[minute];
+        difference[minute] = a[minute] && !b[minute];
+      }
+
+      Assert.assertEquals(toSet(union), setA.union(setB));
+      Assert.assertEquals(toSet(intersection), setA.intersect(setB));
+      Assert.assertEquals(toSet(difference), setA.subtract(setB));
+      for (int minute = 0; minute < NUM_MINUTES; minute++) {
+        Assert.assertEquals(a[minute], setA.contains(minute));
+      }
+    }
+  }
+
+  // Adds random ranges to a builder in any order, and marks their minutes in the array.
+  private static TimeRangeSet randomSet(Random random, boolean[] minutes) {
+    TimeRangeSet.Builder builder = new TimeRangeSet.Builder();
+    int numRanges = random.nextInt(8);
+    for (int i = 0; i < numRanges; i++) {
+      int start = random.nextInt(NUM_MINUTES);
+      int end = Math.min(NUM_MINUTES, start + random.nextInt(40));
+      builder.add(start, end);
+      Arrays.fill(minutes, start, end, true);
+    }
+    return builder.build();
+  }
+
+  // Builds a set from the runs of marked minutes, one minute at a time.
+  private static TimeRangeSet toSet(boolean[] minutes) {
+    TimeRangeSet.Builder builder = new TimeRangeSet.Builder();
+    for (int minute = 0; minute < minutes.length; minute++) {
+      if (minutes[minute]) {
+        builder.add(minute, minute + 1);
+      }
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,78 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.sps.Event;
+import com.google.sps.TimeRange;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventsServletTest {
+  private final EventsServlet servlet = new EventsServlet();
+
+  @Test
+  public void eventsOutsideTheDayAreRejected() throws IOException {
+    Map<Long, ?> before = SharedCalendar.EVENT_STORE.getEventsById();
+    String[] bodies = {
+      event(-30, 60), event(1380, 120), event(1440, 10), event(1441, 0), event(0, Integer.MAX_VALUE)
+    };
+    for (String body : bodies) {
+      ServletFakes.Response response = new ServletFakes.Response();
+      servlet.doPost(ServletFakes.request(body), response.servletResponse);
+      Assert.assertEquals(body, HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+    }
+
+    long id =
+        SharedCalendar.EVENT_STORE.add(
+            new Event("Event", TimeRange.fromStartDuration(0, 30), Collections.emptyList()));
+    try {
+      ServletFakes.Response response = new ServletFakes.Response();
+      servlet.doPut(
+          ServletFakes.request(event(1400, 60), "id", Long.toString(id)),
+          response.servletResponse);
+      Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+    } finally {
+      SharedCalendar.EVENT_STORE.remove(id);
+    }
+    Assert.assertEquals(before, SharedCalendar.EVENT_STORE.getEventsById());
+  }
+
+  @Test
+  public void eventThatFillsTheDayIsAdded() throws IOException {
+    ServletFakes.Response response = new ServletFakes.Response();
+    servlet.doPost(ServletFakes.request(event(0, 1440)), response.servletResponse);
+
+    Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    long id = new Gson().fromJson(response.getBody(), JsonObject.class).get("id").getAsLong();
+    Assert.assertTrue(SharedCalendar.EVENT_STORE.remove(id));
+  }
+
+  private static String event(int start, int duration) {
+    return String.format(
+        "{\"title\": \"Event\", \"when\": {\"start\": %d, \"duration\": %d},"
+            + " \"attendees\": [\"Person A\"]}",
+        start, duration);
+  }
+}
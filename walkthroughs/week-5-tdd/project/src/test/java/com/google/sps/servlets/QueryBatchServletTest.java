@@ -0,0 +1,129 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class QueryBatchServletTest {
+  private final QueryBatchServlet servlet = new QueryBatchServlet();
+
+  @Before
+  public void setUp() {
+    servlet.init();
+  }
+
+  @After
+  public void tearDown() {
+    servlet.destroy();
+  }
+
+  @Test
+  public void eachResultSaysWhetherItIsPartialOrWhatWasWrong() throws Exception {
+    String batch =
+        "[{\"attendees\": [\"Nobody\"], \"optional_attendees\": [], \"duration\": 30},"
+            + " {\"attendees\": [], \"optional_attendees\": [], \"duration\": 30,"
+            + " \"min_optional_attendees\": -1},"
+            + " {\"attendees\": [\"Nobody\"], \"optional_attendees\": [], \"duration\": 60}]";
+    ServletFakes.Response response = new ServletFakes.Response();
+    servlet.doPost(ServletFakes.request(batch), response.servletResponse);
+
+    Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    JsonArray results = new Gson().fromJson(response.getBody(), JsonArray.class);
+    Assert.assertEquals(3, results.size());
+    JsonObject first = results.get(0).getAsJsonObject();
+    Assert.assertEquals(
+        "[{\"start\":0,\"duration\":1440}]", first.get("times").getAsJsonArray().toString());
+    Assert.assertFalse(first.get("partial").getAsBoolean());
+    Assert.assertTrue(results.get(1).getAsJsonObject().has("error"));
+    Assert.assertFalse(results.get(2).getAsJsonObject().get("partial").getAsBoolean());
+  }
+
+  @Test
+  public void resultsComeInTheOrderOfTheRequests() throws Exception {
+    StringBuilder batch = new StringBuilder("[");
+    for (int i = 0; i < 200; i++) {
+      // Every third meeting is too long for the day, so it has no times.
+      int duration = i % 3 == 0 ? 2000 : 30;
+      batch.append(i == 0 ? "" : ",").append(request(duration));
+    }
+    ServletFakes.Response response = new ServletFakes.Response();
+    servlet.doPost(ServletFakes.request(batch.append("]").toString()), response.servletResponse);
+
+    JsonArray results = new Gson().fromJson(response.getBody(), JsonArray.class);
+    Assert.assertEquals(200, results.size());
+    for (int i = 0; i < 200; i++) {
+      JsonArray times = results.get(i).getAsJsonObject().get("times").getAsJsonArray();
+      Assert.assertEquals(Integer.toString(i), i % 3 == 0 ? 0 : 1, times.size());
+    }
+  }
+
+  @Test
+  public void resultsAreWrittenBeforeTheWholeBatchIsRead() throws Exception {
+    // Four times as many requests as may be waiting for their results at once.
+    int size = 4 * 16 * Runtime.getRuntime().availableProcessors();
+    StringBuilder batch = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      batch.append(i == 0 ? "" : ",").append(request(30));
+    }
+    ServletFakes.Response response = new ServletFakes.Response();
+    int[] writtenWhenRead = {-1};
+    Reader body =
+        new FilterReader(new StringReader(batch.append("]").toString())) {
+          @Override
+          public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read < 0 && writtenWhenRead[0] < 0) {
+              writtenWhenRead[0] = response.getBody().length();
+            }
+            return read;
+          }
+        };
+    servlet.doPost(ServletFakes.request(body), response.servletResponse);
+
+    Assert.assertEquals(size, new Gson().fromJson(response.getBody(), JsonArray.class).size());
+    Assert.assertTrue(writtenWhenRead[0] > 1);
+  }
+
+  @Test
+  public void badBodyIsRejected() throws Exception {
+    String[] bodies = {"", "{\"duration\": 30}", "[{\"duration\": ", "[1]", "[" + request(30)};
+    for (String body : bodies) {
+      ServletFakes.Response response = new ServletFakes.Response();
+      servlet.doPost(ServletFakes.request(body), response.servletResponse);
+      Assert.assertEquals(body, HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+    }
+  }
+
+  private static String request(int duration) {
+    return "{\"attendees\": [\"Nobody\"], \"optional_attendees\": [], \"duration\": "
+        + duration
+        + "}";
+  }
+}
@@ -0,0 +1,76 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class QueryServletTest {
+  private final QueryServlet servlet = new QueryServlet();
+
+  @Test
+  public void negativeMinimumOfOptionalAttendeesIsRejected() throws IOException {
+    ServletFakes.Response response = new ServletFakes.Response();
+    servlet.doPost(
+        ServletFakes.request(
+            "{\"attendees\": [\"Person A\"], \"optional_attendees\": [\"Person B\"],"
+                + " \"duration\": 30, \"min_optional_attendees\": -1}"),
+        response.servletResponse);
+
+    Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+  }
+
+  @Test
+  public void missingListsOfAttendeesAreRejected() throws IOException {
+    String[] bodies = {
+      "{\"attendees\": null, \"optional_attendees\": [], \"duration\": 30}",
+      "{\"attendees\": [\"Person A\"], \"optional_attendees\": null, \"duration\": 30}",
+      "{\"duration\": 30}"
+    };
+    for (String body : bodies) {
+      ServletFakes.Response response = new ServletFakes.Response();
+      servlet.doPost(ServletFakes.request(body), response.servletResponse);
+      Assert.assertEquals(body, HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+    }
+  }
+
+  @Test
+  public void emptyOrBadBodyIsRejected() throws IOException {
+    for (String body : new String[] {"", "{\"duration\": "}) {
+      ServletFakes.Response response = new ServletFakes.Response();
+      servlet.doPost(ServletFakes.request(body), response.servletResponse);
+      Assert.assertEquals(body, HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+    }
+  }
+
+  @Test
+  public void validRequestIsAnswered() throws IOException {
+    ServletFakes.Response response = new ServletFakes.Response();
+    servlet.doPost(
+        ServletFakes.request(
+            "{\"attendees\": [\"Nobody\"], \"optional_attendees\": [],"
+                + " \"duration\": 30, \"min_optional_attendees\": 0}"),
+        response.servletResponse);
+
+    Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    Assert.assertEquals("[{\"start\":0,\"duration\":1440}]", response.getBody().trim());
+  }
+}
@@ -0,0 +1,132 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Stand-ins for the request and response of a servlet, so that tests can call it directly. Only
+ * the methods that the servlets use do anything; the rest return nothing.
+ */
+final class ServletFakes {
+  private ServletFakes() {}
+
+  /** Returns a request with {@code body} and the query parameters given as name, value pairs. */
+  static HttpServletRequest request(String body, String... parameters) {
+    return request(new StringReader(body), parameters);
+  }
+
+  /** Returns a request whose body is read from {@code body}. */
+  static HttpServletRequest request(Reader body, String... parameters) {
+    BufferedReader reader = new BufferedReader(body);
+    Map<String, String> values = new HashMap<>();
+    for (int i = 0; i + 1 < parameters.length; i += 2) {
+      values.put(parameters[i], parameters[i + 1]);
+    }
+    return (HttpServletRequest)
+        Proxy.newProxyInstance(
+            ServletFakes.class.getClassLoader(),
+            new Class<?>[] {HttpServletRequest.class},
+            (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "getReader":
+                  return reader;
+                case "getParameter":
+                  return values.get((String) args[0]);
+                case "getParameterValues":
+                  String value = values.get((String) args[0]);
+                  return value == null ? null : new String[] {value};
+                default:
+                  return defaultValue(method);
+              }
+            });
+  }
+
+  /** Records what a servlet sends back. */
+  static final class Response {
+    private final StringWriter body = new StringWriter();
+    private final PrintWriter writer = new PrintWriter(body);
+    private final Map<String, String> headers = new HashMap<>();
+    private int status = HttpServletResponse.SC_OK;
+    private String errorMessage;
+
+    final HttpServletResponse servletResponse =
+        (HttpServletResponse)
+            Proxy.newProxyInstance(
+                ServletFakes.class.getClassLoader(),
+                new Class<?>[] {HttpServletResponse.class},
+                (proxy, method, args) -> {
+                  switch (method.getName()) {
+                    case "getWriter":
+                      return writer;
+                    case "setStatus":
+                      status = (Integer) args[0];
+                      return null;
+                    case "sendError":
+                      status = (Integer) args[0];
+                      errorMessage = args.length > 1 ? (String) args[1] : null;
+                      return null;
+                    case "setHeader":
+                      headers.put((String) args[0], (String) args[1]);
+                      return null;
+                    default:
+                      return defaultValue(method);
+                  }
+                });
+
+    int getStatus() {
+      return status;
+    }
+
+    /** Returns the message that came with an error, or null if there was none. */
+    String getErrorMessage() {
+      return errorMessage;
+    }
+
+    String getHeader(String name) {
+      return headers.get(name);
+    }
+
+    String getBody() {
+      writer.flush();
+      return body.toString();
+    }
+  }
+
+  // A proxy has to return a value of the right type even from the methods it leaves alone.
+  private static Object defaultValue(Method method) {
+    Class<?> type = method.getReturnType();
+    if (type == boolean.class) {
+      return false;
+    }
+    if (type == int.class) {
+      return 0;
+    }
+    if (type == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+}